@@ -1,5 +1,6 @@
 package com.subnex.email.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true) // payment-service also publishes paymentId/status for its own status streams
 public class PaymentEvent implements Serializable {
     private String eventType; // PAYMENT_SUCCESS or PAYMENT_FAILED
     private String subscriptionId;
@@ -0,0 +1,76 @@
+package com.subnex.payment.webhook;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.ApiResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing-field extraction from a webhook payload: the streaming reader against the previous
+ * path of parsing a full Stripe Event and falling back to a Gson tree of data.object.
+ * Run with {@code ./gradlew jmh}; add {@code -prof gc} to the JMH args to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WebhookPayloadBenchmark {
+
+    @Param({"charge.succeeded", "payment_intent.succeeded"})
+    public String fixture;
+
+    private String payload;
+    private final WebhookPayloadReader reader = new WebhookPayloadReader();
+
+    @Setup
+    public void load() throws IOException {
+        try (InputStream in = WebhookPayloadBenchmark.class.getResourceAsStream("/webhooks/" + fixture + ".json")) {
+            payload = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public String streamingReader() {
+        WebhookEnvelope envelope = reader.read(payload);
+        return envelope.type() + envelope.paymentIntentId();
+    }
+
+    @Benchmark
+    public String stripeEventWithGsonFallback() {
+        Event event = ApiResource.GSON.fromJson(payload, Event.class);
+        return event.getType() + legacyPaymentIntentId(event);
+    }
+
+    // The extraction WebhookController used before the streaming reader
+    private static String legacyPaymentIntentId(Event event) {
+        EventDataObjectDeserializer deserializer = event.getDataObjectDeserializer();
+        if (deserializer.getObject().isPresent() && deserializer.getObject().get() instanceof PaymentIntent intent) {
+            return intent.getId();
+        }
+        String rawJson = deserializer.getRawJson();
+        if (rawJson != null && !rawJson.isEmpty()) {
+            JsonObject json = JsonParser.parseString(rawJson).getAsJsonObject();
+            if (json.has("id") && json.get("id").getAsString().startsWith("pi_")) {
+                return json.get("id").getAsString();
+            }
+            if (json.has("payment_intent")) {
+                return json.get("payment_intent").getAsString();
+            }
+        }
+        return null;
+    }
+}
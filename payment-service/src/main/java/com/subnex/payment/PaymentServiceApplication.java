@@ -1,8 +1,12 @@
 package com.subnex.payment;
 
 import com.subnex.payment.config.DotenvInitializer;
+import com.subnex.payment.webhook.WebhookReplayRunner;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
@@ -12,6 +16,12 @@ public class PaymentServiceApplication {
     public static void main(String[] args) {
         SpringApplication app = new SpringApplication(PaymentServiceApplication.class);
         app.addInitializers(new DotenvInitializer());
+        // A webhook replay is a batch job: no web server, it exits once the file is applied
+        app.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event -> {
+            if (event.getEnvironment().containsProperty(WebhookReplayRunner.FILE_PROPERTY)) {
+                event.getSpringApplication().setWebApplicationType(WebApplicationType.NONE);
+            }
+        });
         app.run(args);
     }
 }
@@ -0,0 +1,34 @@
+package com.subnex.payment.config;
+
+import com.subnex.payment.kafka.BulkPaymentRequestConsumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    @Value("${payments.kafka.consumer.retry-initial-ms:1000}")
+    private long retryInitialMs;
+
+    @Value("${payments.kafka.consumer.retry-max-ms:60000}")
+    private long retryMaxMs;
+
+    // Payment requests that failed on a Stripe outage are redelivered with backoff until it clears
+    // rather than skipped; other listeners keep the default of ten immediate attempts
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler() {
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler();
+        errorHandler.setBackOffFunction((record, e) -> {
+            if (!BulkPaymentRequestConsumer.TOPIC.equals(record.topic())) {
+                return null;
+            }
+            ExponentialBackOff backOff = new ExponentialBackOff(retryInitialMs, 2.0);
+            backOff.setMaxInterval(retryMaxMs);
+            return backOff;
+        });
+        return errorHandler;
+    }
+}
@@ -1,11 +1,14 @@
 package com.subnex.payment.config;
 
 import com.subnex.payment.dto.PaymentEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.MicrometerProducerListener;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringSerializer;
 
@@ -15,14 +18,38 @@ import java.util.Map;
 @Configuration
 public class KafkaProducerConfig {
 
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    @Value("${payments.kafka.producer.linger-ms:10}")
+    private int lingerMs;
+
+    @Value("${payments.kafka.producer.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${payments.kafka.producer.compression-type:lz4}")
+    private String compressionType;
+
     @Bean
-    public KafkaTemplate<String, PaymentEvent> kafkaTemplate() {
+    public KafkaTemplate<String, PaymentEvent> kafkaTemplate(MeterRegistry meterRegistry) {
         Map<String, Object> configProps = new HashMap<>();
-        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
         configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
-        
-        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(configProps));
+        // The outbox relay retries unacknowledged batches; idempotence keeps broker retries from duplicating
+        // and, with at most 5 requests in flight, keeps each partition (one subscription's events) in order
+        configProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
+        configProps.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        // The relay sends whole batches at once, so a short linger fills large compressed batches
+        configProps.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        configProps.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        configProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+
+        DefaultKafkaProducerFactory<String, PaymentEvent> producerFactory = new DefaultKafkaProducerFactory<>(configProps);
+        // Binds the client's own metrics (record-send-rate, batch-size-avg, request-latency-avg, ...) as kafka.producer.*
+        producerFactory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return new KafkaTemplate<>(producerFactory);
     }
 }
@@ -0,0 +1,29 @@
+package com.subnex.payment.config;
+
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+// Multi-document transactions need Mongo running as a replica set; off by default for the standalone dev server
+@Configuration
+@ConditionalOnProperty(name = "payments.outbox.transactions-enabled", havingValue = "true")
+public class MongoTransactionConfig {
+
+    @Bean
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        requireReplicaSet(databaseFactory);
+        return new MongoTransactionManager(databaseFactory);
+    }
+
+    // Fails startup instead of the first transactional write
+    static void requireReplicaSet(MongoDatabaseFactory databaseFactory) {
+        Document hello = databaseFactory.getMongoDatabase("admin").runCommand(new Document("hello", 1));
+        if (hello.get("setName") == null && !"isdbgrid".equals(hello.get("msg"))) {
+            throw new IllegalStateException("payments.outbox.transactions-enabled=true needs MongoDB running as a replica set "
+                + "or sharded cluster, but the configured server is standalone; set MONGO_TRANSACTIONS_ENABLED=false for it");
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.subnex.payment.config;
 
 import com.stripe.Stripe;
+import com.subnex.payment.stripe.CircuitBreaker;
+import com.subnex.payment.stripe.StripeCallGuard;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
@@ -16,8 +20,28 @@ public class StripeConfig {
     @Value("${stripe.webhook-secret:}")
     private String webhookSecret;
 
+    @Value("${stripe.api-base:}")
+    private String apiBase;
+
+    @Value("${stripe.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    @Value("${stripe.read-timeout-ms:20000}")
+    private int readTimeoutMs;
+
+    @Value("${stripe.max-network-retries:1}")
+    private int maxNetworkRetries;
+
     @PostConstruct
     public void init() {
+        // The SDK defaults (30s connect, 80s read) would let a slow region hold a request thread for minutes
+        Stripe.setConnectTimeout(connectTimeoutMs);
+        Stripe.setReadTimeout(readTimeoutMs);
+        Stripe.setMaxNetworkRetries(maxNetworkRetries);
+        if (!apiBase.isEmpty()) {
+            Stripe.overrideApiBase(apiBase); // stripe-mock or a local stub
+        }
+
         if (stripeApiKey == null || stripeApiKey.isEmpty() || stripeApiKey.contains("your_")) {
             log.warn("⚠️  Stripe API key not configured - set STRIPE_API_KEY environment variable");
             log.warn("    stripeApiKey value: {}", stripeApiKey == null ? "null" : (stripeApiKey.length() > 10 ? stripeApiKey.substring(0, 10) + "..." : stripeApiKey));
@@ -32,5 +56,21 @@ public class StripeConfig {
             log.info("✓ Stripe webhook secret configured (length: {})", webhookSecret.length());
         }
     }
-}
 
+    @Bean
+    public StripeCallGuard stripeCallGuard(
+            MeterRegistry meterRegistry,
+            @Value("${stripe.bulkhead.max-concurrent:32}") int maxConcurrent,
+            @Value("${stripe.bulkhead.max-wait-ms:100}") long maxWaitMs,
+            @Value("${stripe.circuit.window-size:50}") int windowSize,
+            @Value("${stripe.circuit.minimum-calls:20}") int minimumCalls,
+            @Value("${stripe.circuit.failure-rate:0.5}") double failureRate,
+            @Value("${stripe.circuit.slow-call-rate:0.8}") double slowCallRate,
+            @Value("${stripe.circuit.slow-call-ms:5000}") long slowCallMs,
+            @Value("${stripe.circuit.open-ms:30000}") long openMs,
+            @Value("${stripe.circuit.half-open-calls:3}") int halfOpenCalls) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(windowSize, minimumCalls, failureRate, slowCallRate,
+            slowCallMs, openMs, halfOpenCalls, System::currentTimeMillis);
+        return new StripeCallGuard(maxConcurrent, maxWaitMs, circuitBreaker, meterRegistry);
+    }
+}
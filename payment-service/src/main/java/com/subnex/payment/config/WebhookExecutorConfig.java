@@ -0,0 +1,20 @@
+package com.subnex.payment.config;
+
+import com.subnex.payment.webhook.KeyedOrderedExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class WebhookExecutorConfig {
+
+    // Lanes keyed by PaymentIntent id, shared by inbox processing and webhook replays
+    @Bean
+    public KeyedOrderedExecutor webhookExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${webhook.lanes.count:8}") int laneCount,
+            @Value("${webhook.lanes.queue-capacity:256}") int queueCapacity) {
+        return new KeyedOrderedExecutor("webhook", laneCount, queueCapacity, meterRegistry);
+    }
+}
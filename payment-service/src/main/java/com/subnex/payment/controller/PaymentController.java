@@ -1,12 +1,29 @@
 package com.subnex.payment.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.payment.dto.PaymentHistoryPage;
+import com.subnex.payment.dto.PaymentInitiationResult;
 import com.subnex.payment.dto.PaymentRequest;
 import com.subnex.payment.dto.PaymentResponse;
+import com.subnex.payment.service.BulkPaymentInitiator;
+import com.subnex.payment.service.IdempotencyService;
+import com.subnex.payment.service.PaymentHistoryService;
 import com.subnex.payment.service.PaymentProcessorService;
+import com.subnex.payment.service.PaymentStatusNotifier;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -14,16 +31,74 @@ import org.springframework.web.bind.annotation.*;
 public class PaymentController {
 
     private final PaymentProcessorService paymentProcessorService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final PaymentHistoryService paymentHistoryService;
+    private final BulkPaymentInitiator bulkPaymentInitiator;
+    private final ObjectMapper objectMapper;
+
+    @Value("${payments.bulk.max-items:10000}")
+    private int maxBulkItems;
 
     @PostMapping("/initiate")
-    public ResponseEntity<PaymentResponse> initiatePayment(@RequestBody PaymentRequest request) {
-        PaymentResponse response = paymentProcessorService.initiatePayment(request);
+    public ResponseEntity<PaymentResponse> initiatePayment(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody PaymentRequest request) {
+        PaymentResponse response = idempotencyKey == null || idempotencyKey.isBlank()
+            ? paymentProcessorService.initiatePayment(request)
+            : idempotencyService.execute(idempotencyKey, request,
+                () -> paymentProcessorService.initiatePayment(request, idempotencyKey));
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    // Streams one NDJSON line per item as each chunk is stored; items carry their own idempotencyKey
+    @PostMapping(value = "/initiate/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> initiatePayments(@RequestBody List<PaymentRequest> requests) {
+        if (requests.size() > maxBulkItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Batch of " + requests.size() + " payments exceeds the limit of " + maxBulkItems);
+        }
+        StreamingResponseBody body = out -> bulkPaymentInitiator.initiate(requests, chunk -> writeLines(out, chunk));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @GetMapping("/{paymentId}")
     public ResponseEntity<PaymentResponse> getPayment(@PathVariable String paymentId) {
         PaymentResponse response = paymentProcessorService.getPaymentById(paymentId);
         return ResponseEntity.ok(response);
     }
+
+    // One open connection per checkout instead of polling GET /{paymentId}
+    @GetMapping(value = "/{paymentId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPaymentStatus(@PathVariable String paymentId) {
+        return paymentStatusNotifier.subscribe(paymentId, () -> paymentProcessorService.getPaymentById(paymentId));
+    }
+
+    @GetMapping("/users/{userId}/history")
+    public ResponseEntity<PaymentHistoryPage> getUserHistory(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(paymentHistoryService.forUser(userId, cursor, limit));
+    }
+
+    @GetMapping("/subscriptions/{subscriptionId}/history")
+    public ResponseEntity<PaymentHistoryPage> getSubscriptionHistory(
+            @PathVariable String subscriptionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(paymentHistoryService.forSubscription(subscriptionId, cursor, limit));
+    }
+
+    private void writeLines(OutputStream out, List<PaymentInitiationResult> results) {
+        try {
+            for (PaymentInitiationResult result : results) {
+                out.write(objectMapper.writeValueAsBytes(result));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
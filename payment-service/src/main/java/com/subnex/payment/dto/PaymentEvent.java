@@ -1,5 +1,6 @@
 package com.subnex.payment.dto;
 
+import com.subnex.payment.enums.PaymentStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,7 +14,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PaymentEvent implements Serializable {
-    private String eventType; // PAYMENT_SUCCESS or PAYMENT_FAILED
+    private String eventType; // PAYMENT_SUCCESS, PAYMENT_FAILED, PAYMENT_PROCESSING or PAYMENT_PENDING
+    private String paymentId;
+    private PaymentStatus status;
     private String subscriptionId;
     private String userId;
     private String userEmail; // Email to send notification to
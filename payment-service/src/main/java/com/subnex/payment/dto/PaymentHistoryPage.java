@@ -0,0 +1,17 @@
+package com.subnex.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentHistoryPage {
+    private List<PaymentSummary> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,20 @@
+package com.subnex.payment.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One line of the bulk initiation stream; chunks arrive as they complete, items within a chunk in submission order
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentInitiationResult {
+    private int index; // position in the submitted batch
+    private String idempotencyKey;
+    private boolean created;
+    private PaymentResponse payment;
+    private String error;
+    private boolean retryable; // failed on an outage or Stripe-side error, the same request may succeed later
+}
@@ -17,4 +17,5 @@ public class PaymentRequest {
     private Long amount;
     private String currency;
     private PaymentType type;
+    private String idempotencyKey; // bulk items only; single calls send the Idempotency-Key header
 }
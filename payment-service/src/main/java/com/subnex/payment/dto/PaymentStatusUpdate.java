@@ -0,0 +1,18 @@
+package com.subnex.payment.dto;
+
+import com.subnex.payment.enums.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Pushed on GET /api/payments/{paymentId}/events
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatusUpdate {
+    private String paymentId;
+    private PaymentStatus status;
+    private String failureReason;
+}
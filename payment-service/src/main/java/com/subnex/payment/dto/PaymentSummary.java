@@ -0,0 +1,27 @@
+package com.subnex.payment.dto;
+
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.enums.PaymentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// History entry; leaves out the client secret, email and Stripe ids of the full PaymentResponse
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentSummary {
+    private String id;
+    private String subscriptionId;
+    private Long amount;
+    private String currency;
+    private PaymentStatus status;
+    private PaymentType type;
+    private Integer attempt;
+    private String failureReason;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package com.subnex.payment.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT
+}
@@ -0,0 +1,8 @@
+package com.subnex.payment.enums;
+
+public enum WebhookInboxStatus {
+    PENDING,
+    PROCESSING,
+    DONE,
+    DEAD
+}
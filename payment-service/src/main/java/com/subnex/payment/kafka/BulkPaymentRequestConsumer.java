@@ -0,0 +1,76 @@
+package com.subnex.payment.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.payment.dto.PaymentInitiationResult;
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.service.BulkPaymentInitiator;
+import com.subnex.payment.webhook.WebhookReplayRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Renewal runs can publish their payment requests instead of calling the API one by one; each poll
+// is initiated as one bulk batch, keyed by partition and offset so a redelivered record is not charged twice.
+// Declines and other permanent failures are logged and skipped; a transient failure fails the batch from
+// that record on, so the error handler redelivers it instead of committing past it.
+@Component
+@ConditionalOnExpression(WebhookReplayRunner.NOT_REPLAYING)
+@RequiredArgsConstructor
+@Slf4j
+public class BulkPaymentRequestConsumer {
+
+    public static final String TOPIC = "payment-requests";
+
+    private final BulkPaymentInitiator bulkPaymentInitiator;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(topics = TOPIC, groupId = "payment-service-bulk", batch = "true")
+    public void consumePaymentRequests(List<ConsumerRecord<String, String>> records) {
+        List<PaymentRequest> requests = new ArrayList<>(records.size());
+        List<Integer> recordIndexes = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, String> record = records.get(i);
+            try {
+                PaymentRequest request = objectMapper.readValue(record.value(), PaymentRequest.class);
+                if (request.getIdempotencyKey() == null || request.getIdempotencyKey().isBlank()) {
+                    request.setIdempotencyKey("kafka:" + record.partition() + ":" + record.offset());
+                }
+                requests.add(request);
+                recordIndexes.add(i);
+            } catch (Exception e) {
+                log.error("❌ Skipping unreadable payment request at {}-{}@{}: {}",
+                    record.topic(), record.partition(), record.offset(), e.getMessage());
+            }
+        }
+
+        List<PaymentInitiationResult> retryable = new ArrayList<>();
+        bulkPaymentInitiator.initiate(requests, results -> results.stream()
+            .filter(result -> !result.isCreated())
+            .forEach(result -> {
+                if (result.isRetryable()) {
+                    retryable.add(result);
+                } else {
+                    log.error("❌ Bulk payment request {} failed: {}", result.getIdempotencyKey(), result.getError());
+                }
+            }));
+
+        if (!retryable.isEmpty()) {
+            PaymentInitiationResult first = retryable.stream()
+                .min(Comparator.comparingInt(PaymentInitiationResult::getIndex))
+                .orElseThrow();
+            log.warn("⏳ {} of {} payment requests failed transiently, redelivering from {}: {}",
+                retryable.size(), requests.size(), first.getIdempotencyKey(), first.getError());
+            throw new BatchListenerFailedException("Transient failure initiating payment request "
+                + first.getIdempotencyKey() + ": " + first.getError(), recordIndexes.get(first.getIndex()));
+        }
+        log.info("✅ Initiated {} payment requests from {}", requests.size(), TOPIC);
+    }
+}
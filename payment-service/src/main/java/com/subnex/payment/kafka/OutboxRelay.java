@@ -0,0 +1,163 @@
+package com.subnex.payment.kafka;
+
+import com.subnex.payment.model.OutboxEvent;
+import com.subnex.payment.webhook.WebhookReplayRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes {@link PaymentEventOutbox} rows to Kafka in batches. A whole batch is handed to the
+ * producer before waiting on any acknowledgement, then the acknowledged rows are marked sent in
+ * one update. A crash between send and mark re-sends the batch, so delivery is at least once.
+ */
+@Component
+@ConditionalOnExpression(WebhookReplayRunner.NOT_REPLAYING)
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final PaymentEventOutbox outbox;
+    private final PaymentEventProducer producer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payments.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${payments.outbox.poll-ms:500}")
+    private long pollMs;
+
+    @Value("${payments.outbox.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    @Value("${payments.outbox.lock-seconds:60}")
+    private long lockSeconds;
+
+    private final AtomicLong depth = new AtomicLong();
+    private Thread relay;
+    private volatile boolean running = true;
+    private Counter sent;
+    private Counter failed;
+    private Timer lag;
+
+    @PostConstruct
+    public void init() {
+        // A lock that expires while the relay still waits on acks lets another relay re-send the batch
+        if (sendTimeoutMs >= TimeUnit.SECONDS.toMillis(lockSeconds)) {
+            throw new IllegalStateException("payments.outbox.lock-seconds (" + lockSeconds
+                + "s) must be longer than payments.outbox.send-timeout-ms (" + sendTimeoutMs + "ms)");
+        }
+        sent = Counter.builder("outbox.relay.events").tag("outcome", "sent").register(meterRegistry);
+        failed = Counter.builder("outbox.relay.events").tag("outcome", "failed").register(meterRegistry);
+        lag = Timer.builder("outbox.relay.lag").description("Time from commit to broker ack").register(meterRegistry);
+        Gauge.builder("outbox.depth", depth, AtomicLong::get).register(meterRegistry);
+
+        relay = new Thread(this::run, "payment-outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        relay.interrupt();
+        relay.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Scheduled(fixedDelayString = "${payments.outbox.metrics-ms:5000}")
+    public void refreshMetrics() {
+        try {
+            depth.set(outbox.depth());
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to refresh outbox metrics: {}", e.getMessage());
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<OutboxEvent> batch = outbox.claimBatch(batchSize);
+                if (batch.isEmpty()) {
+                    outbox.awaitArrival(pollMs);
+                    continue;
+                }
+                publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Outbox relay error: {}", e.getMessage(), e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    void publish(List<OutboxEvent> batch) throws InterruptedException {
+        List<CompletableFuture<?>> acks = new ArrayList<>(batch.size());
+        for (OutboxEvent row : batch) {
+            acks.add(producer.send(row.getTopic(), row.getMessageKey(), row.getEvent()));
+        }
+
+        List<String> delivered = new ArrayList<>(batch.size());
+        List<String> undelivered = new ArrayList<>();
+        Set<String> failedKeys = new HashSet<>();
+        String lastError = null;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < batch.size(); i++) {
+            OutboxEvent row = batch.get(i);
+            // Once a key has an unacknowledged row, its later rows are retried behind it to keep key order
+            if (failedKeys.contains(row.getMessageKey())) {
+                undelivered.add(row.getId());
+                continue;
+            }
+            try {
+                acks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                delivered.add(row.getId());
+                lag.record(Duration.between(row.getCreatedAt(), Instant.now()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                undelivered.add(row.getId());
+                failedKeys.add(row.getMessageKey());
+                lastError = e.getMessage();
+            }
+        }
+
+        outbox.markSent(delivered);
+        sent.increment(delivered.size());
+        if (!undelivered.isEmpty()) {
+            outbox.release(undelivered, lastError);
+            failed.increment(undelivered.size());
+            log.warn("🔁 {} of {} outbox events not acknowledged, will retry: {}", undelivered.size(), batch.size(), lastError);
+        } else {
+            log.debug("📤 Relayed {} payment events", delivered.size());
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.subnex.payment.kafka;
+
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.OutboxStatus;
+import com.subnex.payment.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mongo-backed outbox for payment events. Callers append inside the transaction that changes the
+ * payment, so an event exists exactly when its state change was committed; {@link OutboxRelay}
+ * publishes it afterwards. Without transactions, keyed appends let a retried caller fill the gap
+ * left by an attempt that changed the payment but died before appending. Relays on any replica claim batches with a time-limited lock, which
+ * must outlast {@code payments.outbox.send-timeout-ms} so a row is never claimed twice at once.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentEventOutbox {
+
+    static final String TOPIC = "payment-events";
+
+    private static final Comparator<OutboxEvent> APPEND_ORDER =
+        Comparator.comparing(OutboxEvent::getCreatedAt).thenComparing(OutboxEvent::getId);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${payments.outbox.lock-seconds:60}")
+    private long lockSeconds;
+
+    @Value("${payments.outbox.backoff-seconds:5}")
+    private long backoffSeconds;
+
+    @Value("${payments.outbox.retention-days:3}")
+    private long retentionDays;
+
+    // Wakes the local relay once the appending transaction has committed
+    private final Semaphore arrivals = new Semaphore(0);
+
+    public void append(PaymentEvent event) {
+        append(event, null);
+    }
+
+    // At most one row per eventKey, so a caller that cannot tell whether an earlier attempt got as far
+    // as appending can simply append again. Returns false when the key was already queued.
+    public boolean append(PaymentEvent event, String eventKey) {
+        if (eventKey != null && mongoTemplate.exists(new Query(Criteria.where("eventKey").is(eventKey)), OutboxEvent.class)) {
+            return false;
+        }
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(OutboxEvent.builder()
+                .topic(TOPIC)
+                .messageKey(event.getSubscriptionId())
+                .event(event)
+                .eventKey(eventKey)
+                .status(OutboxStatus.PENDING)
+                .createdAt(now)
+                .availableAt(now)
+                .build());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    arrivals.release();
+                }
+            });
+        } else {
+            arrivals.release();
+        }
+        return true;
+    }
+
+    // Oldest due rows first; the conditional update makes the claim exclusive across relays.
+    // A row is only claimed while no earlier row with the same messageKey is still pending, so
+    // one subscription's events reach Kafka in the order they were appended.
+    public List<OutboxEvent> claimBatch(int limit) {
+        Instant now = Instant.now();
+        List<String> blockedKeys = mongoTemplate.findDistinct(
+            new Query(Criteria.where("status").is(OutboxStatus.PENDING).and("availableAt").gt(now)),
+            "messageKey", OutboxEvent.class, String.class);
+        Criteria due = Criteria.where("status").is(OutboxStatus.PENDING).and("availableAt").lte(now);
+        if (!blockedKeys.isEmpty()) {
+            due = due.and("messageKey").nin(blockedKeys);
+        }
+
+        Query candidates = new Query(due).with(Sort.by(Sort.Direction.ASC, "createdAt", "_id")).limit(limit);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream().map(OutboxEvent::getId).toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        String claimToken = UUID.randomUUID().toString();
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(ids).and("status").is(OutboxStatus.PENDING).and("availableAt").lte(now)),
+            new Update()
+                .set("claimToken", claimToken)
+                .set("availableAt", now.plusSeconds(lockSeconds))
+                .inc("attempts", 1),
+            OutboxEvent.class);
+        List<OutboxEvent> claimed = mongoTemplate.find(new Query(Criteria.where("claimToken").is(claimToken))
+            .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id")), OutboxEvent.class);
+        return yieldToEarlierRows(claimed, claimToken, now);
+    }
+
+    // Another relay may have claimed an earlier row of the same key between our candidate read
+    // and our claim; hand back every row we hold behind it so that relay publishes first.
+    private List<OutboxEvent> yieldToEarlierRows(List<OutboxEvent> claimed, String claimToken, Instant now) {
+        if (claimed.isEmpty()) {
+            return claimed;
+        }
+        List<String> keys = claimed.stream().map(OutboxEvent::getMessageKey).distinct().toList();
+        Map<String, OutboxEvent> earliestForeign = new HashMap<>();
+        mongoTemplate.find(new Query(Criteria.where("messageKey").in(keys)
+                .and("status").is(OutboxStatus.PENDING)
+                .and("claimToken").ne(claimToken))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt", "_id")), OutboxEvent.class)
+            .forEach(row -> earliestForeign.putIfAbsent(row.getMessageKey(), row));
+        if (earliestForeign.isEmpty()) {
+            return claimed;
+        }
+
+        List<OutboxEvent> kept = new ArrayList<>(claimed.size());
+        List<String> yielded = new ArrayList<>();
+        for (OutboxEvent row : claimed) {
+            OutboxEvent foreign = earliestForeign.get(row.getMessageKey());
+            if (foreign != null && APPEND_ORDER.compare(foreign, row) < 0) {
+                yielded.add(row.getId());
+            } else {
+                kept.add(row);
+            }
+        }
+        if (!yielded.isEmpty()) {
+            mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(yielded).and("claimToken").is(claimToken)),
+                new Update()
+                    .set("availableAt", now)
+                    .inc("attempts", -1)
+                    .unset("claimToken"),
+                OutboxEvent.class);
+            log.debug("↩️ Yielded {} outbox events queued behind rows claimed by another relay", yielded.size());
+        }
+        return kept;
+    }
+
+    public void awaitArrival(long timeoutMs) throws InterruptedException {
+        arrivals.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void markSent(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(ids).and("status").is(OutboxStatus.PENDING)),
+            new Update()
+                .set("status", OutboxStatus.SENT)
+                .set("sentAt", now)
+                .set("expireAt", now.plus(Duration.ofDays(retentionDays)))
+                .unset("claimToken")
+                .unset("lastError"),
+            OutboxEvent.class);
+    }
+
+    // Leaves the rows pending with a short delay so the next claim retries them
+    public void release(Collection<String> ids, String error) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        mongoTemplate.updateMulti(
+            new Query(Criteria.where("_id").in(ids).and("status").is(OutboxStatus.PENDING)),
+            new Update()
+                .set("availableAt", Instant.now().plusSeconds(backoffSeconds))
+                .set("lastError", error)
+                .unset("claimToken"),
+            OutboxEvent.class);
+    }
+
+    public long depth() {
+        return mongoTemplate.count(new Query(Criteria.where("status").is(OutboxStatus.PENDING)), OutboxEvent.class);
+    }
+}
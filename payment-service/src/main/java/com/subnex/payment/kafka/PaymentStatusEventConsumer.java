@@ -0,0 +1,38 @@
+package com.subnex.payment.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.service.PaymentStatusNotifier;
+import com.subnex.payment.webhook.WebhookReplayRunner;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+// Every replica reads payment-events in its own group, from the latest offset, so each one can
+// push status changes to the streams it holds no matter which replica handled the webhook
+@Component
+@ConditionalOnExpression(WebhookReplayRunner.NOT_REPLAYING)
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatusEventConsumer {
+
+    private final PaymentStatusNotifier paymentStatusNotifier;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(topics = PaymentEventOutbox.TOPIC,
+        groupId = "payment-status-#{T(java.util.UUID).randomUUID()}",
+        properties = "auto.offset.reset=latest")
+    public void consumePaymentEvent(@Payload String message) {
+        try {
+            PaymentEvent event = objectMapper.readValue(message, PaymentEvent.class);
+            if (event.getPaymentId() != null && event.getStatus() != null) {
+                paymentStatusNotifier.publish(event.getPaymentId(), event.getStatus(), event.getReason());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to read payment event for status streams: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.subnex.payment.model;
+
+import com.subnex.payment.dto.PaymentResponse;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Outcome of a POST /api/payments/initiate call, keyed by the client's Idempotency-Key
+@Document(collection = "idempotency_keys")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String COMPLETED = "COMPLETED";
+
+    @Id
+    private String key;
+
+    private String requestHash; // a reused key with a different body is rejected
+    private String status;      // IN_PROGRESS, COMPLETED
+    private PaymentResponse response;
+    private Instant lockedUntil; // an IN_PROGRESS record past this is taken over by the next retry
+    private Instant createdAt;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt;
+}
@@ -0,0 +1,47 @@
+package com.subnex.payment.model;
+
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.OutboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// A PaymentEvent written in the same transaction as the payment change it describes,
+// waiting for the relay to publish it to Kafka
+@Document(collection = "payment_outbox")
+@CompoundIndex(name = "outbox_relay", def = "{'status': 1, 'availableAt': 1}")
+@CompoundIndex(name = "outbox_order", def = "{'status': 1, 'createdAt': 1, '_id': 1}")
+@CompoundIndex(name = "outbox_key", def = "{'messageKey': 1, 'status': 1, 'createdAt': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    private String id;
+
+    private String topic;
+    private String messageKey; // subscriptionId, keeps one subscription's events on one partition
+    private PaymentEvent event;
+
+    @Indexed(unique = true, sparse = true)
+    private String eventKey; // paymentId:status:transition, lets a redelivered webhook re-append without duplicating
+    private OutboxStatus status;
+    private int attempts;
+    private String claimToken;
+    private Instant createdAt;
+    private Instant availableAt; // earliest time a relay may claim it: lock expiry or retry backoff
+    private Instant sentAt;
+    private String lastError;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt; // set once sent, the row is purged after the retention period
+}
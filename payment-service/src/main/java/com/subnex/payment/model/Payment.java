@@ -7,11 +7,20 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 
 @Document(collection = "payments")
+// Keyset history pages: equality on the owner, then (createdAt, _id) walked backwards for newest first
+@CompoundIndex(name = "subscription_history_keyset", def = "{'subscriptionId': 1, 'createdAt': 1, '_id': 1}")
+@CompoundIndex(name = "user_history_keyset", def = "{'userId': 1, 'createdAt': 1, '_id': 1}")
+// Reconciliation sweep: payments stuck in a status, oldest update first
+@CompoundIndex(name = "reconcile_stuck", def = "{'status': 1, 'updatedAt': 1, '_id': 1}")
+@CompoundIndex(name = "reconcile_recheck", def = "{'status': 1, 'reconciledAt': 1}")
 @Data
 @Builder
 @NoArgsConstructor
@@ -22,9 +31,14 @@ public class Payment {
     private String id;
     
     private String subscriptionId;
+
     private String userId;
+
     private String userEmail; // Email for notifications
+
+    @Indexed(unique = true, sparse = true)
     private String stripePaymentIntentId;
+
     private String clientSecret;
     private Long amount;
     private String currency;
@@ -34,5 +48,10 @@ public class Payment {
     private String failureReason;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private LocalDateTime reconciledAt; // last reconciliation lookup, due again while the payment stays stuck
+    private Long transitions; // webhook status changes applied so far, part of each outbox event's key
+
+    @Version
+    private Long version;
 }
 
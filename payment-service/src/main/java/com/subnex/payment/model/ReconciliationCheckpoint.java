@@ -0,0 +1,28 @@
+package com.subnex.payment.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+// Where the reconciliation sweep stopped in (updatedAt, _id) order, plus the lock that keeps it to one replica
+@Document(collection = "payment_reconciliation")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationCheckpoint {
+
+    @Id
+    private String id;
+    private LocalDateTime lastUpdatedAt;
+    private String lastPaymentId;
+    private String owner;
+    private Instant lockedUntil;
+    private Instant lastRunAt;
+}
@@ -0,0 +1,26 @@
+package com.subnex.payment.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// The Stripe Customer created for a user, so their saved card can be charged off-session
+@Document(collection = "stripe_customers")
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StripeCustomer {
+
+    @Id
+    private String userId;
+    private String customerId;
+    private String paymentMethodId; // card saved for off-session renewals, null until one is known
+    private Instant createdAt;
+    private Instant updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.subnex.payment.model;
+
+import com.subnex.payment.enums.WebhookInboxStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// A verified Stripe webhook waiting for, or done with, processing. The unique eventId doubles as
+// the durable record of events already seen, kept for the retention period.
+@Document(collection = "webhook_inbox")
+@CompoundIndex(name = "inbox_drain", def = "{'status': 1, 'availableAt': 1}")
+@CompoundIndex(name = "inbox_key", def = "{'orderingKey': 1, 'status': 1, 'receivedAt': 1}")
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookInboxEntry {
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String eventId;
+    private String eventType;
+    private String orderingKey; // PaymentIntent id, events sharing it are applied in order
+    private String payload; // raw body as signed by Stripe
+    private WebhookInboxStatus status;
+    private int attempts;
+    private Instant receivedAt;
+    private Instant availableAt; // earliest time a worker may claim it: lock expiry or retry backoff
+    private Instant processedAt;
+    private String lastError;
+
+    @Indexed(expireAfterSeconds = 0)
+    private Instant expireAt; // set once processed, the entry is purged after the retention period
+}
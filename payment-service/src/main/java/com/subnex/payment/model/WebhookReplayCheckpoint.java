@@ -0,0 +1,25 @@
+package com.subnex.payment.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// How far a webhook replay got through an event dump; every line before offset has been applied
+@Document(collection = "webhook_replay_checkpoints")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebhookReplayCheckpoint {
+
+    @Id
+    private String id; // absolute path of the dump
+    private long offset; // byte offset of the first line not yet known to be applied
+    private long lines;
+    private Instant updatedAt;
+}
@@ -0,0 +1,188 @@
+package com.subnex.payment.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.subnex.payment.dto.PaymentInitiationResult;
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.model.Payment;
+import com.subnex.payment.repository.PaymentRepository;
+import com.subnex.payment.stripe.StripeUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Initiates many payments at once. Each chunk creates its PaymentIntents on a bounded pool, so a
+ * burst never takes more than its share of the Stripe bulkhead, then stores every created payment
+ * with one unordered bulk insert. A failing item only fails itself; results are handed back per
+ * chunk as soon as it is stored.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkPaymentInitiator {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final PaymentProcessorService paymentProcessorService;
+    private final PaymentRepository paymentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payments.bulk.concurrency:8}")
+    private int concurrency;
+
+    @Value("${payments.bulk.chunk-size:200}")
+    private int chunkSize;
+
+    private ExecutorService stripeCalls;
+    private Counter created;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        stripeCalls = Executors.newFixedThreadPool(concurrency);
+        created = Counter.builder("payments.bulk.items").tag("outcome", "created").register(meterRegistry);
+        failed = Counter.builder("payments.bulk.items").tag("outcome", "failed").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stripeCalls.shutdown();
+    }
+
+    public void initiate(List<PaymentRequest> requests, Consumer<List<PaymentInitiationResult>> onChunk) {
+        for (int from = 0; from < requests.size(); from += chunkSize) {
+            onChunk.accept(initiateChunk(requests, from, Math.min(from + chunkSize, requests.size())));
+        }
+    }
+
+    private List<PaymentInitiationResult> initiateChunk(List<PaymentRequest> requests, int from, int to) {
+        List<CompletableFuture<Object>> intents = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            PaymentRequest request = requests.get(i);
+            intents.add(CompletableFuture.supplyAsync(() -> createIntent(request), stripeCalls));
+        }
+
+        PaymentInitiationResult[] results = new PaymentInitiationResult[to - from];
+        List<Payment> payments = new ArrayList<>();
+        List<Integer> paymentSlots = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Object outcome = intents.get(i - from).join();
+            if (outcome instanceof PaymentIntent paymentIntent) {
+                Payment payment = PaymentProcessorService.newPayment(requests.get(i), paymentIntent);
+                // Bulk inserts do not write generated ids back, so assign them up front
+                payment.setId(new ObjectId().toHexString());
+                payments.add(payment);
+                paymentSlots.add(i - from);
+            } else {
+                Exception error = (Exception) outcome;
+                results[i - from] = failure(i, requests.get(i), messageOf(error), isTransient(error));
+            }
+        }
+
+        List<Integer> rejected = insert(payments);
+        for (int p = 0; p < payments.size(); p++) {
+            int slot = paymentSlots.get(p);
+            int index = from + slot;
+            PaymentRequest request = requests.get(index);
+            if (rejected.contains(p)) {
+                // Same intent recorded earlier: Stripe returned it again for a repeated idempotency key
+                results[slot] = paymentRepository.findByStripePaymentIntentId(payments.get(p).getStripePaymentIntentId())
+                    .map(existing -> success(index, request, existing))
+                    .orElseGet(() -> failure(index, request, "Failed to store payment", true));
+            } else {
+                results[slot] = success(index, request, payments.get(p));
+            }
+        }
+        return List.of(results);
+    }
+
+    // Returns the PaymentIntent, or the exception so one bad item cannot fail the chunk
+    private Object createIntent(PaymentRequest request) {
+        try {
+            return paymentProcessorService.createPaymentIntent(request, request.getIdempotencyKey());
+        } catch (Exception e) {
+            log.warn("❌ Bulk PaymentIntent creation failed for subscription {}: {}", request.getSubscriptionId(), e.getMessage());
+            return e;
+        }
+    }
+
+    // Outages, throttling and Stripe-side errors may clear up on a later attempt; declines and other 4xx will not
+    static boolean isTransient(Exception e) {
+        if (e instanceof StripeUnavailableException || e instanceof ApiConnectionException
+                || e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException) {
+            return true;
+        }
+        if (e instanceof StripeException stripeException && stripeException.getStatusCode() != null) {
+            int status = stripeException.getStatusCode();
+            return status == 409 || status == 429 || status >= 500;
+        }
+        return false;
+    }
+
+    private static String messageOf(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    // Positions within payments that hit a duplicate key; any other write error fails the call
+    private List<Integer> insert(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return List.of();
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Payment.class).insert(payments).execute();
+            return List.of();
+        } catch (BulkOperationException e) {
+            List<Integer> duplicates = new ArrayList<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                duplicates.add(error.getIndex());
+            }
+            return duplicates;
+        }
+    }
+
+    private PaymentInitiationResult success(int index, PaymentRequest request, Payment payment) {
+        created.increment();
+        return PaymentInitiationResult.builder()
+            .index(index)
+            .idempotencyKey(request.getIdempotencyKey())
+            .created(true)
+            .payment(PaymentProcessorService.mapToResponse(payment))
+            .build();
+    }
+
+    private PaymentInitiationResult failure(int index, PaymentRequest request, String error, boolean retryable) {
+        failed.increment();
+        return PaymentInitiationResult.builder()
+            .index(index)
+            .idempotencyKey(request.getIdempotencyKey())
+            .created(false)
+            .error(error)
+            .retryable(retryable)
+            .build();
+    }
+}
@@ -0,0 +1,239 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.dto.PaymentResponse;
+import com.subnex.payment.model.IdempotencyRecord;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs a payment initiation at most once per Idempotency-Key. Completed responses are kept in a
+ * TTL collection with a small in-memory cache in front; a duplicate arriving while the first call
+ * is still running waits for its result, in process through a shared future and across replicas
+ * by polling the record.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final long POLL_MS = 100;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${payments.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${payments.idempotency.lock-seconds:60}")
+    private long lockSeconds;
+
+    @Value("${payments.idempotency.wait-ms:10000}")
+    private long waitMs;
+
+    @Value("${payments.idempotency.cache-size:10000}")
+    private int cacheSize;
+
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private Map<String, IdempotencyRecord> recent;
+
+    @PostConstruct
+    public void init() {
+        recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public PaymentResponse execute(String key, PaymentRequest request, Supplier<PaymentResponse> action) {
+        String requestHash = hash(request);
+
+        IdempotencyRecord cached = cached(key);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (!running.requestHash().equals(requestHash)) {
+                throw mismatch(key);
+            }
+            log.info("⏳ Waiting for in-flight request with Idempotency-Key {}", key);
+            return await(key, running.response());
+        }
+
+        try {
+            IdempotencyRecord completed = claim(key, requestHash);
+            if (completed != null) {
+                PaymentResponse replayed = replay(completed, requestHash);
+                mine.response().complete(replayed);
+                return replayed;
+            }
+
+            PaymentResponse response;
+            try {
+                response = action.get();
+            } catch (RuntimeException e) {
+                // Nothing to replay; the next retry runs again and Stripe dedups on the same key
+                mongoTemplate.remove(new Query(Criteria.where("_id").is(key).and("status").is(IdempotencyRecord.IN_PROGRESS)),
+                    IdempotencyRecord.class);
+                throw e;
+            }
+
+            IdempotencyRecord record = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(key)),
+                new Update().set("status", IdempotencyRecord.COMPLETED).set("response", response).unset("lockedUntil"),
+                FindAndModifyOptions.options().returnNew(true),
+                IdempotencyRecord.class);
+            if (record != null) {
+                remember(record);
+            }
+            mine.response().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            mine.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // Returns the completed record when another call already finished, null once this call owns the key
+    private IdempotencyRecord claim(String key, String requestHash) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(IdempotencyRecord.builder()
+                .key(key)
+                .requestHash(requestHash)
+                .status(IdempotencyRecord.IN_PROGRESS)
+                .lockedUntil(now.plusSeconds(lockSeconds))
+                .createdAt(now)
+                .expireAt(now.plus(Duration.ofHours(ttlHours)))
+                .build());
+            return null;
+        } catch (DuplicateKeyException e) {
+            // Held by another replica, or finished earlier and evicted from the local cache
+        }
+
+        long deadline = System.currentTimeMillis() + waitMs;
+        while (System.currentTimeMillis() < deadline) {
+            IdempotencyRecord existing = mongoTemplate.findById(key, IdempotencyRecord.class);
+            if (existing == null) {
+                return claim(key, requestHash);
+            }
+            if (!Objects.equals(existing.getRequestHash(), requestHash)) {
+                throw mismatch(key);
+            }
+            if (IdempotencyRecord.COMPLETED.equals(existing.getStatus())) {
+                remember(existing);
+                return existing;
+            }
+            // The previous owner died mid-call; take over, Stripe returns the same intent for the same key
+            IdempotencyRecord takenOver = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(key)
+                    .and("status").is(IdempotencyRecord.IN_PROGRESS)
+                    .and("lockedUntil").lt(Instant.now())),
+                new Update().set("lockedUntil", Instant.now().plusSeconds(lockSeconds)),
+                IdempotencyRecord.class);
+            if (takenOver != null) {
+                return null;
+            }
+            sleep();
+        }
+        throw new ResponseStatusException(HttpStatus.CONFLICT,
+            "A request with Idempotency-Key " + key + " is still in progress");
+    }
+
+    private PaymentResponse await(String key, CompletableFuture<PaymentResponse> running) {
+        try {
+            return running.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                "A request with Idempotency-Key " + key + " is still in progress");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for Idempotency-Key " + key, e);
+        }
+    }
+
+    private PaymentResponse replay(IdempotencyRecord record, String requestHash) {
+        if (!Objects.equals(record.getRequestHash(), requestHash)) {
+            throw mismatch(record.getKey());
+        }
+        log.info("♻️ Replaying stored response for Idempotency-Key {}", record.getKey());
+        return record.getResponse();
+    }
+
+    private synchronized IdempotencyRecord cached(String key) {
+        return recent.get(key);
+    }
+
+    private synchronized void remember(IdempotencyRecord record) {
+        recent.put(record.getKey(), record);
+    }
+
+    private static ResponseStatusException mismatch(String key) {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+            "Idempotency-Key " + key + " was already used with a different request");
+    }
+
+    private static String hash(PaymentRequest request) {
+        String canonical = String.join("|",
+            String.valueOf(request.getSubscriptionId()),
+            String.valueOf(request.getUserId()),
+            String.valueOf(request.getUserEmail()),
+            String.valueOf(request.getAmount()),
+            String.valueOf(request.getCurrency()),
+            String.valueOf(request.getType()));
+        try {
+            return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Local duplicates compare hashes against this before waiting on the shared response
+    private record InFlight(String requestHash, CompletableFuture<PaymentResponse> response) {
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for idempotent request", e);
+        }
+    }
+}
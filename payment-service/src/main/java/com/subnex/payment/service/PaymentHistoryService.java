@@ -0,0 +1,112 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.dto.PaymentHistoryPage;
+import com.subnex.payment.dto.PaymentSummary;
+import com.subnex.payment.model.Payment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Newest-first payment history for a user or subscription. Pages continue strictly after the
+ * (createdAt, _id) of the previous page's last entry, so every page is one bounded range scan on
+ * the owner's history index regardless of how deep the client has paged.
+ */
+@Service
+@RequiredArgsConstructor
+public class PaymentHistoryService {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${payments.history.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${payments.history.max-page-size:100}")
+    private int maxPageSize;
+
+    public PaymentHistoryPage forUser(String userId, String cursor, Integer limit) {
+        return page(Criteria.where("userId").is(userId), cursor, limit);
+    }
+
+    public PaymentHistoryPage forSubscription(String subscriptionId, String cursor, Integer limit) {
+        return page(Criteria.where("subscriptionId").is(subscriptionId), cursor, limit);
+    }
+
+    private PaymentHistoryPage page(Criteria owner, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        Criteria criteria = owner;
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor after = Cursor.decode(cursor);
+            criteria = new Criteria().andOperator(owner, new Criteria().orOperator(
+                Criteria.where("createdAt").lt(after.createdAt()),
+                Criteria.where("createdAt").is(after.createdAt()).and("_id").lt(after.id())));
+        }
+
+        // One extra row tells us whether another page exists without a count
+        Query query = new Query(criteria)
+            .with(Sort.by(Sort.Direction.DESC, "createdAt", "_id"))
+            .limit(pageSize + 1);
+        query.fields().include("subscriptionId", "amount", "currency", "status", "type", "attempt",
+            "failureReason", "createdAt");
+
+        List<Payment> payments = mongoTemplate.find(query, Payment.class);
+        boolean more = payments.size() > pageSize;
+        List<Payment> page = more ? payments.subList(0, pageSize) : payments;
+
+        String nextCursor = null;
+        if (more) {
+            Payment last = page.get(page.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return PaymentHistoryPage.builder()
+            .items(page.stream().map(PaymentHistoryService::toSummary).toList())
+            .nextCursor(nextCursor)
+            .build();
+    }
+
+    private static PaymentSummary toSummary(Payment payment) {
+        return PaymentSummary.builder()
+            .id(payment.getId())
+            .subscriptionId(payment.getSubscriptionId())
+            .amount(payment.getAmount())
+            .currency(payment.getCurrency())
+            .status(payment.getStatus())
+            .type(payment.getType())
+            .attempt(payment.getAttempt())
+            .failureReason(payment.getFailureReason())
+            .createdAt(payment.getCreatedAt())
+            .build();
+    }
+
+    // Opaque to clients: base64url of "createdAt|id"
+    private record Cursor(LocalDateTime createdAt, String id) {
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf('|');
+                return new Cursor(LocalDateTime.parse(decoded.substring(0, separator)), decoded.substring(separator + 1));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid history cursor");
+            }
+        }
+    }
+}
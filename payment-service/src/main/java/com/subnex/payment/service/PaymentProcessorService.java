@@ -6,54 +6,74 @@ import com.subnex.payment.dto.PaymentEvent;
 import com.subnex.payment.dto.PaymentRequest;
 import com.subnex.payment.dto.PaymentResponse;
 import com.subnex.payment.enums.PaymentStatus;
-import com.subnex.payment.kafka.PaymentEventProducer;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.kafka.PaymentEventOutbox;
 import com.subnex.payment.model.Payment;
 import com.subnex.payment.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentProcessorService {
 
+    // States each webhook-driven transition may start from. SUCCESS and CANCELLED are final;
+    // a FAILED intent can still succeed when the customer retries with another payment method.
+    private static final Map<PaymentStatus, Set<PaymentStatus>> ALLOWED_FROM = Map.of(
+        PaymentStatus.SUCCESS, EnumSet.of(PaymentStatus.INITIATED, PaymentStatus.PROCESSING,
+            PaymentStatus.PENDING, PaymentStatus.RETRYING, PaymentStatus.FAILED),
+        PaymentStatus.PROCESSING, EnumSet.of(PaymentStatus.INITIATED, PaymentStatus.PENDING,
+            PaymentStatus.RETRYING, PaymentStatus.FAILED),
+        PaymentStatus.PENDING, EnumSet.of(PaymentStatus.INITIATED, PaymentStatus.PROCESSING,
+            PaymentStatus.RETRYING, PaymentStatus.FAILED),
+        PaymentStatus.FAILED, EnumSet.of(PaymentStatus.INITIATED, PaymentStatus.PROCESSING,
+            PaymentStatus.PENDING, PaymentStatus.RETRYING)
+    );
+
     private final PaymentRepository paymentRepository;
-    private final PaymentEventProducer paymentEventProducer;
+    private final MongoTemplate mongoTemplate;
+    private final PaymentEventOutbox paymentEventOutbox;
     private final StripePaymentService stripePaymentService;
+    private final StripeCustomerService stripeCustomerService;
 
     public PaymentResponse initiatePayment(PaymentRequest request) {
+        return initiatePayment(request, null);
+    }
+
+    public PaymentResponse initiatePayment(PaymentRequest request, String idempotencyKey) {
         log.info("Initiating payment for subscription: {}, user: {}, amount: {}", 
             request.getSubscriptionId(), request.getUserId(), request.getAmount());
 
         try {
             // Create Stripe PaymentIntent
-            PaymentIntent paymentIntent = stripePaymentService.createPaymentIntent(
-                request.getAmount(),
-                request.getCurrency() != null ? request.getCurrency() : "INR",
-                request.getSubscriptionId(),
-                request.getUserEmail()
-            );
+            PaymentIntent paymentIntent = createPaymentIntent(request, idempotencyKey);
 
             // Create payment record with Stripe intent ID and client secret
-            Payment payment = Payment.builder()
-                .subscriptionId(request.getSubscriptionId())
-                .userId(request.getUserId())
-                .userEmail(request.getUserEmail())
-                .amount(request.getAmount())
-                .currency(request.getCurrency() != null ? request.getCurrency() : "INR")
-                .status(PaymentStatus.INITIATED)
-                .type(request.getType())
-                .attempt(1)
-                .stripePaymentIntentId(paymentIntent.getId())
-                .clientSecret(paymentIntent.getClientSecret())
-                .createdAt(LocalDateTime.now())
-                .updatedAt(LocalDateTime.now())
-                .build();
-
-            payment = paymentRepository.save(payment);
+            Payment payment = newPayment(request, paymentIntent);
+
+            try {
+                payment = paymentRepository.save(payment);
+            } catch (DuplicateKeyException e) {
+                // A retry under the same idempotency key got the original intent back from Stripe
+                log.info("Payment for Stripe Intent ID {} already recorded", paymentIntent.getId());
+                return paymentRepository.findByStripePaymentIntentId(paymentIntent.getId())
+                    .map(PaymentProcessorService::mapToResponse)
+                    .orElseThrow(() -> e);
+            }
             log.info("Payment record created with Stripe Intent ID: {}", paymentIntent.getId());
 
             return mapToResponse(payment);
@@ -64,72 +84,154 @@ public class PaymentProcessorService {
         }
     }
 
+    // Renewals charge the user's saved card off-session when there is one; everything else is paid
+    // on-session against the user's Customer, which saves the card for the next renewal
+    public PaymentIntent createPaymentIntent(PaymentRequest request, String idempotencyKey) throws StripeException {
+        String currency = request.getCurrency() != null ? request.getCurrency() : "INR";
+        if (request.getUserId() == null) {
+            return stripePaymentService.createPaymentIntent(request.getAmount(), currency,
+                request.getSubscriptionId(), request.getUserEmail(), idempotencyKey);
+        }
+
+        String customerId = stripeCustomerService.customerIdFor(request.getUserId(), request.getUserEmail());
+        if (request.getType() == PaymentType.RENEWAL) {
+            String paymentMethodId = stripeCustomerService.savedPaymentMethod(request.getUserId());
+            if (paymentMethodId != null) {
+                PaymentIntent paymentIntent = stripePaymentService.createOffSessionPaymentIntent(request.getAmount(),
+                    currency, request.getSubscriptionId(), request.getUserEmail(), idempotencyKey, customerId, paymentMethodId);
+                if ("requires_payment_method".equals(paymentIntent.getStatus())) {
+                    stripeCustomerService.forgetPaymentMethod(request.getUserId());
+                }
+                return paymentIntent;
+            }
+        }
+        return stripePaymentService.createPaymentIntent(request.getAmount(), currency,
+            request.getSubscriptionId(), request.getUserEmail(), idempotencyKey, customerId);
+    }
+
+    // The status change and its outbox event commit together or not at all
+    @Transactional
     public void processPaymentWebhook(String paymentIntentId, String status) {
         log.info("🔔 Processing payment webhook: intentId={}, status={}", paymentIntentId, status);
+        stripePaymentService.invalidate(paymentIntentId);
+
+        PaymentStatus target = toPaymentStatus(status);
+        Update update = new Update()
+            .set("status", target)
+            .set("updatedAt", LocalDateTime.now())
+            .inc("transitions", 1);
+        if (target == PaymentStatus.FAILED) {
+            update.set("failureReason", "Payment failed via webhook status: " + status);
+        }
 
-        Payment payment = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
-            .orElseThrow(() -> {
-                log.error("❌ Payment not found for Stripe Intent: {}", paymentIntentId);
-                return new RuntimeException("Payment not found for intent: " + paymentIntentId);
-            });
-
-        log.info("✓ Found payment record: {}", payment.getId());
+        // One guarded round trip: duplicate and out-of-order webhooks match nothing and change nothing
+        Payment payment = mongoTemplate.findAndModify(
+            new Query(Criteria.where("stripePaymentIntentId").is(paymentIntentId)
+                .and("status").in(ALLOWED_FROM.get(target))),
+            update,
+            FindAndModifyOptions.options().returnNew(true),
+            Payment.class);
+
+        if (payment == null) {
+            Payment current = paymentRepository.findByStripePaymentIntentId(paymentIntentId)
+                .orElseThrow(() -> {
+                    log.error("❌ Payment not found for Stripe Intent: {}", paymentIntentId);
+                    return new RuntimeException("Payment not found for intent: " + paymentIntentId);
+                });
+            // Without a transaction an earlier attempt may have moved the payment and died before
+            // appending; the event key makes re-appending a no-op when it did get that far
+            if (current.getStatus() == target && current.getTransitions() != null
+                    && paymentEventOutbox.append(toEvent(current, target, status), eventKey(current))) {
+                log.warn("📤 Re-queued {} event for payment {} missing from the outbox", target, current.getId());
+                return;
+            }
+            log.info("⏭️ Ignoring webhook status {} for payment {} already in {}", status, current.getId(), current.getStatus());
+            return;
+        }
 
-        if ("succeeded".equals(status)) {
-            payment.setStatus(PaymentStatus.SUCCESS);
+        log.info("💾 Payment {} moved to {}", payment.getId(), target);
+        if (target == PaymentStatus.SUCCESS) {
             log.info("✅ Payment SUCCESS for subscription: {}, user: {}", payment.getSubscriptionId(), payment.getUserEmail());
-            
-            PaymentEvent event = PaymentEvent.builder()
-                .eventType("PAYMENT_SUCCESS")
-                .subscriptionId(payment.getSubscriptionId())
-                .userId(payment.getUserId())
-                .userEmail(payment.getUserEmail())
-                .amount(payment.getAmount())
-                .currency(payment.getCurrency())
-                .timestamp(LocalDateTime.now())
-                .build();
-
-            paymentEventProducer.publishPaymentEvent(event);
-            log.info("📤 Published PAYMENT_SUCCESS event to Kafka");
-        } else if ("processing".equals(status)) {
-            payment.setStatus(PaymentStatus.PROCESSING);
+        } else if (target == PaymentStatus.PROCESSING) {
             log.info("⏳ Payment PROCESSING for subscription: {}", payment.getSubscriptionId());
-        } else if ("requires_action".equals(status) || "requires_payment_method".equals(status)) {
-            payment.setStatus(PaymentStatus.PENDING);
+        } else if (target == PaymentStatus.PENDING) {
             log.info("🔐 Payment PENDING for subscription: {}", payment.getSubscriptionId());
         } else {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setFailureReason("Payment failed via webhook status: " + status);
             log.warn("❌ Payment FAILED for subscription: {}, reason: {}", payment.getSubscriptionId(), status);
+        }
+
+        // Every transition goes out, so status streams on any replica can push it
+        PaymentEvent event = toEvent(payment, target, status);
+        paymentEventOutbox.append(event, eventKey(payment));
+        log.info("📤 Queued {} event in outbox", event.getEventType());
+    }
 
-            PaymentEvent event = PaymentEvent.builder()
-                .eventType("PAYMENT_FAILED")
-                .subscriptionId(payment.getSubscriptionId())
-                .userId(payment.getUserId())
-                .userEmail(payment.getUserEmail())
-                .amount(payment.getAmount())
-                .currency(payment.getCurrency())
-                .reason("Webhook status: " + status)
-                .timestamp(LocalDateTime.now())
-                .build();
-
-            paymentEventProducer.publishPaymentEvent(event);
-            log.info("📤 Published PAYMENT_FAILED event to Kafka");
+    private static PaymentEvent toEvent(Payment payment, PaymentStatus target, String status) {
+        PaymentEvent event = PaymentEvent.builder()
+            .paymentId(payment.getId())
+            .status(target)
+            .subscriptionId(payment.getSubscriptionId())
+            .userId(payment.getUserId())
+            .userEmail(payment.getUserEmail())
+            .amount(payment.getAmount())
+            .currency(payment.getCurrency())
+            .timestamp(LocalDateTime.now())
+            .build();
+
+        if (target == PaymentStatus.SUCCESS) {
+            event.setEventType("PAYMENT_SUCCESS");
+        } else if (target == PaymentStatus.PROCESSING) {
+            event.setEventType("PAYMENT_PROCESSING");
+        } else if (target == PaymentStatus.PENDING) {
+            event.setEventType("PAYMENT_PENDING");
+        } else {
+            event.setEventType("PAYMENT_FAILED");
+            event.setReason("Webhook status: " + status);
         }
+        return event;
+    }
 
-        payment.setUpdatedAt(LocalDateTime.now());
-        paymentRepository.save(payment);
-        log.info("💾 Payment record updated in MongoDB");
+    // A payment can re-enter a status (PENDING -> PROCESSING -> PENDING), so the transition count is part of the key
+    private static String eventKey(Payment payment) {
+        return payment.getId() + ":" + payment.getStatus() + ":" + payment.getTransitions();
+    }
+
+    static PaymentStatus toPaymentStatus(String status) {
+        if ("succeeded".equals(status)) {
+            return PaymentStatus.SUCCESS;
+        } else if ("processing".equals(status)) {
+            return PaymentStatus.PROCESSING;
+        } else if ("requires_action".equals(status) || "requires_payment_method".equals(status)) {
+            return PaymentStatus.PENDING;
+        }
+        return PaymentStatus.FAILED;
     }
 
     public PaymentResponse getPaymentById(String paymentId) {
         log.info("Fetching payment: {}", paymentId);
         return paymentRepository.findById(paymentId)
-            .map(this::mapToResponse)
+            .map(PaymentProcessorService::mapToResponse)
             .orElseThrow(() -> new RuntimeException("Payment not found: " + paymentId));
     }
 
-    private PaymentResponse mapToResponse(Payment payment) {
+    static Payment newPayment(PaymentRequest request, PaymentIntent paymentIntent) {
+        return Payment.builder()
+            .subscriptionId(request.getSubscriptionId())
+            .userId(request.getUserId())
+            .userEmail(request.getUserEmail())
+            .amount(request.getAmount())
+            .currency(request.getCurrency() != null ? request.getCurrency() : "INR")
+            .status(PaymentStatus.INITIATED)
+            .type(request.getType())
+            .attempt(1)
+            .stripePaymentIntentId(paymentIntent.getId())
+            .clientSecret(paymentIntent.getClientSecret())
+            .createdAt(LocalDateTime.now())
+            .updatedAt(LocalDateTime.now())
+            .build();
+    }
+
+    static PaymentResponse mapToResponse(Payment payment) {
         return PaymentResponse.builder()
             .id(payment.getId())
             .subscriptionId(payment.getSubscriptionId())
@@ -0,0 +1,369 @@
+package com.subnex.payment.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.model.Payment;
+import com.subnex.payment.model.ReconciliationCheckpoint;
+import com.subnex.payment.stripe.RateBudget;
+import com.subnex.payment.stripe.StripeCallGuard;
+import com.subnex.payment.stripe.StripeUnavailableException;
+import com.subnex.payment.webhook.WebhookReplayRunner;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Repairs payments whose webhook never arrived. Payments left in INITIATED, PROCESSING or PENDING
+ * longer than the threshold are walked in (updatedAt, _id) order, their intents are fetched from
+ * Stripe within a rate budget and any difference is applied through the same transition as a
+ * webhook. The position is checkpointed, so each run only walks payments that became stuck since
+ * the last one; a payment that changes status gets a new updatedAt and is walked again if it gets
+ * stuck there too. A payment Stripe still had unsettled is stamped with reconciledAt and looked at
+ * again every recheck-after-minutes until it settles or is older than recheck-for-hours.
+ */
+@Service
+@ConditionalOnExpression(WebhookReplayRunner.NOT_REPLAYING)
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentReconciler {
+
+    static final String CHECKPOINT_ID = "payments";
+    private static final List<PaymentStatus> STUCK = List.of(PaymentStatus.INITIATED, PaymentStatus.PROCESSING, PaymentStatus.PENDING);
+
+    private enum Outcome { UNCHANGED, CORRECTED, FAILED, INTERRUPTED }
+
+    public record Result(int checked, int corrected, int failed, boolean completed) {
+        static final Result SKIPPED = new Result(0, 0, 0, false);
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final StripePaymentService stripePaymentService;
+    private final PaymentProcessorService paymentProcessorService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payments.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${payments.reconciliation.stuck-after-minutes:30}")
+    private long stuckAfterMinutes;
+
+    @Value("${payments.reconciliation.page-size:100}")
+    private int pageSize;
+
+    @Value("${payments.reconciliation.max-per-run:5000}")
+    private int maxPerRun;
+
+    @Value("${payments.reconciliation.rate-per-second:10}")
+    private double ratePerSecond;
+
+    @Value("${payments.reconciliation.burst:5}")
+    private int burst;
+
+    @Value("${payments.reconciliation.concurrency:4}")
+    private int concurrency;
+
+    @Value("${payments.reconciliation.lock-seconds:600}")
+    private long lockSeconds;
+
+    @Value("${payments.reconciliation.recheck-after-minutes:60}")
+    private long recheckAfterMinutes;
+
+    @Value("${payments.reconciliation.recheck-for-hours:72}")
+    private long recheckForHours;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private ExecutorService lookups;
+    private RateBudget rateBudget;
+    private Counter unchanged;
+    private Counter corrected;
+    private Counter failed;
+
+    @PostConstruct
+    public void init() {
+        lookups = Executors.newFixedThreadPool(concurrency);
+        rateBudget = new RateBudget(ratePerSecond, burst);
+        unchanged = Counter.builder("payments.reconciliation.checked").tag("outcome", "unchanged").register(meterRegistry);
+        corrected = Counter.builder("payments.reconciliation.checked").tag("outcome", "corrected").register(meterRegistry);
+        failed = Counter.builder("payments.reconciliation.checked").tag("outcome", "failed").register(meterRegistry);
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(CHECKPOINT_ID)),
+            new Update().setOnInsert("lockedUntil", Instant.EPOCH), ReconciliationCheckpoint.class);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lookups.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${payments.reconciliation.interval-ms:300000}",
+        initialDelayString = "${payments.reconciliation.interval-ms:300000}")
+    public void scheduledRun() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("❌ Payment reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public Result reconcile() {
+        ReconciliationCheckpoint checkpoint = lock();
+        if (checkpoint == null) {
+            log.debug("Payment reconciliation already running on another replica");
+            return Result.SKIPPED;
+        }
+        try {
+            return run(checkpoint);
+        } finally {
+            mongoTemplate.updateFirst(owned(), new Update()
+                .set("lockedUntil", Instant.EPOCH)
+                .set("lastRunAt", Instant.now()), ReconciliationCheckpoint.class);
+        }
+    }
+
+    private Result run(ReconciliationCheckpoint checkpoint) {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(stuckAfterMinutes);
+        Tally tally = new Tally();
+
+        while (tally.checked < maxPerRun) {
+            List<Payment> page = nextPage(checkpoint, cutoff, Math.min(pageSize, maxPerRun - tally.checked));
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Outcome> outcomes = checkAll(page);
+
+            // Advance only over the leading run of payments that were looked up one way or the other
+            Payment settledUpTo = null;
+            boolean blocked = false;
+            for (int i = 0; i < page.size(); i++) {
+                blocked |= !tally.add(outcomes.get(i));
+                if (!blocked) {
+                    settledUpTo = page.get(i);
+                }
+            }
+            markChecked(page, outcomes);
+            if (settledUpTo != null) {
+                saveCheckpoint(checkpoint, settledUpTo);
+            }
+            if (blocked) {
+                return tally.interrupted();
+            }
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        // Payments Stripe still had unsettled are behind the checkpoint now; look at them again
+        while (tally.checked < maxPerRun && checkpoint.getLastUpdatedAt() != null) {
+            int limit = Math.min(pageSize, maxPerRun - tally.checked);
+            List<Payment> page = dueForRecheck(checkpoint, limit);
+            if (page.isEmpty()) {
+                break;
+            }
+            List<Outcome> outcomes = checkAll(page);
+            boolean blocked = false;
+            for (Outcome outcome : outcomes) {
+                blocked |= !tally.add(outcome);
+            }
+            markChecked(page, outcomes);
+            if (blocked) {
+                return tally.interrupted();
+            }
+            if (page.size() < limit) {
+                break;
+            }
+        }
+
+        if (tally.checked > 0) {
+            log.info("🧾 Payment reconciliation checked {} stuck payments: {} corrected, {} failed", tally.checked, tally.corrected, tally.failed);
+        }
+        return new Result(tally.checked, tally.corrected, tally.failed, tally.checked < maxPerRun);
+    }
+
+    private List<Outcome> checkAll(List<Payment> page) {
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(page.size());
+        for (Payment payment : page) {
+            outcomes.add(CompletableFuture.supplyAsync(() -> check(payment), lookups));
+        }
+        return outcomes.stream().map(CompletableFuture::join).toList();
+    }
+
+    private List<Payment> nextPage(ReconciliationCheckpoint checkpoint, LocalDateTime cutoff, int limit) {
+        Criteria criteria = Criteria.where("status").in(STUCK);
+        if (checkpoint.getLastUpdatedAt() == null) {
+            criteria = criteria.and("updatedAt").lt(cutoff);
+        } else {
+            // Keyset on (updatedAt, _id): resume strictly after the last settled payment
+            criteria = criteria.and("updatedAt").gte(checkpoint.getLastUpdatedAt()).lt(cutoff)
+                .norOperator(Criteria.where("updatedAt").is(checkpoint.getLastUpdatedAt())
+                    .and("_id").lte(checkpoint.getLastPaymentId()));
+        }
+        Query query = new Query(criteria)
+            .with(Sort.by(Sort.Direction.ASC, "updatedAt", "_id"))
+            .limit(limit);
+        query.fields().include("stripePaymentIntentId", "status", "updatedAt");
+        return mongoTemplate.find(query, Payment.class);
+    }
+
+    // Unsettled payments that were looked at earlier, oldest look first, until they are too old to chase
+    private List<Payment> dueForRecheck(ReconciliationCheckpoint checkpoint, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = new Query(Criteria.where("status").in(STUCK)
+                .and("reconciledAt").lt(now.minusMinutes(recheckAfterMinutes))
+                .and("updatedAt").gt(now.minusHours(recheckForHours)).lte(checkpoint.getLastUpdatedAt()))
+            .with(Sort.by(Sort.Direction.ASC, "reconciledAt"))
+            .limit(limit);
+        query.fields().include("stripePaymentIntentId", "status", "updatedAt");
+        return mongoTemplate.find(query, Payment.class);
+    }
+
+    // Stamps every looked-up payment so it is due again after recheck-after-minutes if it is still
+    // stuck; payments that cannot be reconciled are taken out of the rechecks instead
+    private void markChecked(List<Payment> page, List<Outcome> outcomes) {
+        List<String> recheck = new ArrayList<>();
+        List<String> drop = new ArrayList<>();
+        for (int i = 0; i < page.size(); i++) {
+            Outcome outcome = outcomes.get(i);
+            if (outcome == Outcome.INTERRUPTED) {
+                continue;
+            }
+            Payment payment = page.get(i);
+            if (outcome == Outcome.FAILED || payment.getStripePaymentIntentId() == null) {
+                drop.add(payment.getId());
+            } else {
+                recheck.add(payment.getId());
+            }
+        }
+        if (!recheck.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(recheck)),
+                new Update().set("reconciledAt", LocalDateTime.now()), Payment.class);
+        }
+        if (!drop.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(drop)),
+                new Update().unset("reconciledAt"), Payment.class);
+        }
+    }
+
+    // INTERRUPTED means Stripe or Mongo was unavailable and the payment must be looked at again
+    private Outcome check(Payment payment) {
+        String paymentIntentId = payment.getStripePaymentIntentId();
+        if (paymentIntentId == null) {
+            unchanged.increment();
+            return Outcome.UNCHANGED;
+        }
+        try {
+            rateBudget.acquire();
+            PaymentIntent paymentIntent = stripePaymentService.retrievePaymentIntent(paymentIntentId);
+            String status = webhookStatus(paymentIntent);
+            if (status == null || PaymentProcessorService.toPaymentStatus(status) == payment.getStatus()) {
+                unchanged.increment();
+                return Outcome.UNCHANGED;
+            }
+            log.info("🧾 Reconciling payment {}: {} in Mongo, {} in Stripe", payment.getId(), payment.getStatus(), paymentIntent.getStatus());
+            paymentProcessorService.processPaymentWebhook(paymentIntentId, status);
+            corrected.increment();
+            return Outcome.CORRECTED;
+        } catch (StripeException e) {
+            if (StripeCallGuard.isStripeSideFailure(e)) {
+                return Outcome.INTERRUPTED;
+            }
+            // Unknown intent and the like: retrying will not help, so it is passed over
+            log.error("❌ Cannot reconcile payment {} with intent {}: {}", payment.getId(), paymentIntentId, e.getMessage());
+            failed.increment();
+            return Outcome.FAILED;
+        } catch (StripeUnavailableException e) {
+            return Outcome.INTERRUPTED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.INTERRUPTED;
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Reconciling payment {} failed, will retry: {}", payment.getId(), e.getMessage());
+            return Outcome.INTERRUPTED;
+        }
+    }
+
+    // The webhook status Stripe would have sent for this intent, or null when there is nothing to apply
+    static String webhookStatus(PaymentIntent paymentIntent) {
+        String status = paymentIntent.getStatus();
+        if (status == null) {
+            return null;
+        }
+        return switch (status) {
+            case "succeeded", "processing", "requires_action" -> status;
+            case "canceled" -> "canceled";
+            // Without a last error the customer simply has not paid yet
+            case "requires_payment_method" -> paymentIntent.getLastPaymentError() != null ? "payment_failed" : null;
+            default -> null;
+        };
+    }
+
+    private ReconciliationCheckpoint lock() {
+        Instant now = Instant.now();
+        return mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(CHECKPOINT_ID).and("lockedUntil").lt(now)),
+            new Update().set("owner", instanceId).set("lockedUntil", now.plusSeconds(lockSeconds)),
+            FindAndModifyOptions.options().returnNew(true),
+            ReconciliationCheckpoint.class);
+    }
+
+    private void saveCheckpoint(ReconciliationCheckpoint checkpoint, Payment settledUpTo) {
+        checkpoint.setLastUpdatedAt(settledUpTo.getUpdatedAt());
+        checkpoint.setLastPaymentId(settledUpTo.getId());
+        mongoTemplate.updateFirst(owned(), new Update()
+            .set("lastUpdatedAt", settledUpTo.getUpdatedAt())
+            .set("lastPaymentId", settledUpTo.getId()), ReconciliationCheckpoint.class);
+    }
+
+    private static final class Tally {
+        int checked;
+        int corrected;
+        int failed;
+
+        // False when the payment was not looked up and the run has to stop
+        boolean add(Outcome outcome) {
+            if (outcome == Outcome.INTERRUPTED) {
+                return false;
+            }
+            checked++;
+            if (outcome == Outcome.CORRECTED) {
+                corrected++;
+            } else if (outcome == Outcome.FAILED) {
+                failed++;
+            }
+            return true;
+        }
+
+        Result interrupted() {
+            log.warn("⏸️ Payment reconciliation stopped at a Stripe outage after {} payments, will resume from the checkpoint", checked);
+            return new Result(checked, corrected, failed, false);
+        }
+    }
+
+    private Query owned() {
+        return new Query(Criteria.where("_id").is(CHECKPOINT_ID).and("owner").is(instanceId));
+    }
+}
@@ -0,0 +1,122 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.dto.PaymentResponse;
+import com.subnex.payment.dto.PaymentStatusUpdate;
+import com.subnex.payment.enums.PaymentStatus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Open payment status streams on this replica, keyed by payment id. A stream gets the current
+ * status on connect and every change after it, fed from the payment-events topic that each
+ * replica reads in full, and is closed once the payment can no longer change.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentStatusNotifier {
+
+    // FAILED stays open: the customer can still retry the intent with another payment method
+    private static final Set<PaymentStatus> FINAL = EnumSet.of(PaymentStatus.SUCCESS, PaymentStatus.CANCELLED);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${payments.status.stream-timeout-ms:300000}")
+    private long streamTimeoutMs;
+
+    private final Map<String, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger open = new AtomicInteger();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("payments.status.streams", open, AtomicInteger::get).register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String paymentId, Supplier<PaymentResponse> snapshot) {
+        return subscribe(paymentId, snapshot, new SseEmitter(streamTimeoutMs));
+    }
+
+    SseEmitter subscribe(String paymentId, Supplier<PaymentResponse> snapshot, SseEmitter emitter) {
+        // Registered before the snapshot is read, so a change committed in between is still pushed
+        streams.compute(paymentId, (id, emitters) -> {
+            Set<SseEmitter> registered = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            registered.add(emitter);
+            return registered;
+        });
+        open.incrementAndGet();
+        emitter.onCompletion(() -> remove(paymentId, emitter));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(paymentId, emitter));
+
+        PaymentResponse current;
+        try {
+            current = snapshot.get();
+        } catch (RuntimeException e) {
+            remove(paymentId, emitter);
+            throw e;
+        }
+        push(paymentId, emitter, PaymentStatusUpdate.builder()
+            .paymentId(paymentId)
+            .status(current.getStatus())
+            .failureReason(current.getFailureReason())
+            .build());
+        return emitter;
+    }
+
+    public void publish(String paymentId, PaymentStatus status, String failureReason) {
+        Set<SseEmitter> emitters = streams.get(paymentId);
+        if (emitters == null) {
+            return;
+        }
+        PaymentStatusUpdate update = PaymentStatusUpdate.builder()
+            .paymentId(paymentId)
+            .status(status)
+            .failureReason(failureReason)
+            .build();
+        for (SseEmitter emitter : emitters) {
+            push(paymentId, emitter, update);
+        }
+    }
+
+    public int streamCount(String paymentId) {
+        Set<SseEmitter> emitters = streams.get(paymentId);
+        return emitters != null ? emitters.size() : 0;
+    }
+
+    private void push(String paymentId, SseEmitter emitter, PaymentStatusUpdate update) {
+        try {
+            emitter.send(SseEmitter.event().name("status").data(update));
+            if (FINAL.contains(update.getStatus())) {
+                emitter.complete();
+                remove(paymentId, emitter);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the container reports it through onError as well
+            log.debug("Dropping status stream for payment {}: {}", paymentId, e.getMessage());
+            remove(paymentId, emitter);
+        }
+    }
+
+    private void remove(String paymentId, SseEmitter emitter) {
+        streams.computeIfPresent(paymentId, (id, emitters) -> {
+            if (emitters.remove(emitter)) {
+                open.decrementAndGet();
+            }
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,187 @@
+package com.subnex.payment.service;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Customer;
+import com.stripe.model.PaymentMethod;
+import com.stripe.model.PaymentMethodCollection;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.CustomerCreateParams;
+import com.stripe.param.PaymentMethodListParams;
+import com.subnex.payment.model.StripeCustomer;
+import com.subnex.payment.stripe.StripeCallGuard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Maps each user to one Stripe Customer. The Customer is created the first time the user pays and
+ * the mapping is kept in Mongo behind an LRU cache, so later payments neither look it up in Stripe
+ * nor create a duplicate. Concurrent first payments of a user share one creation.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripeCustomerService {
+
+    private final MongoTemplate mongoTemplate;
+    private final StripeCallGuard stripeCallGuard;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${stripe.customers.cache-size:10000}")
+    private int cacheSize;
+
+    private final Map<String, CompletableFuture<StripeCustomer>> creating = new ConcurrentHashMap<>();
+    private Map<String, StripeCustomer> recent;
+    private Counter cached;
+    private Counter stored;
+    private Counter created;
+
+    @PostConstruct
+    public void init() {
+        recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StripeCustomer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        cached = Counter.builder("stripe.customers.lookups").tag("result", "cached").register(meterRegistry);
+        stored = Counter.builder("stripe.customers.lookups").tag("result", "stored").register(meterRegistry);
+        created = Counter.builder("stripe.customers.lookups").tag("result", "created").register(meterRegistry);
+    }
+
+    public String customerIdFor(String userId, String email) throws StripeException {
+        StripeCustomer customer = find(userId);
+        return (customer != null ? customer : create(userId, email)).getCustomerId();
+    }
+
+    // The card to charge off-session, asked from Stripe only until one is known
+    public String savedPaymentMethod(String userId) throws StripeException {
+        StripeCustomer customer = find(userId);
+        if (customer == null) {
+            return null;
+        }
+        if (customer.getPaymentMethodId() != null) {
+            return customer.getPaymentMethodId();
+        }
+
+        PaymentMethodListParams params = PaymentMethodListParams.builder()
+            .setCustomer(customer.getCustomerId())
+            .setType(PaymentMethodListParams.Type.CARD)
+            .setLimit(1L)
+            .build();
+        PaymentMethodCollection methods = stripeCallGuard.call("list_payment_methods", () -> PaymentMethod.list(params));
+        if (methods.getData().isEmpty()) {
+            return null;
+        }
+        String paymentMethodId = methods.getData().get(0).getId();
+        update(customer.toBuilder().paymentMethodId(paymentMethodId).updatedAt(Instant.now()).build());
+        return paymentMethodId;
+    }
+
+    // After an off-session decline, so the next renewal asks Stripe for the customer's current card
+    public void forgetPaymentMethod(String userId) {
+        StripeCustomer customer = find(userId);
+        if (customer != null && customer.getPaymentMethodId() != null) {
+            update(customer.toBuilder().paymentMethodId(null).updatedAt(Instant.now()).build());
+        }
+    }
+
+    private StripeCustomer find(String userId) {
+        StripeCustomer customer = cachedCustomer(userId);
+        if (customer != null) {
+            cached.increment();
+            return customer;
+        }
+        customer = mongoTemplate.findById(userId, StripeCustomer.class);
+        if (customer != null) {
+            stored.increment();
+            cache(customer);
+        }
+        return customer;
+    }
+
+    private StripeCustomer create(String userId, String email) throws StripeException {
+        CompletableFuture<StripeCustomer> mine = new CompletableFuture<>();
+        CompletableFuture<StripeCustomer> running = creating.putIfAbsent(userId, mine);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            // The idempotency key also covers a replica creating the same user's Customer at the same time
+            CustomerCreateParams params = CustomerCreateParams.builder()
+                .setEmail(email)
+                .putMetadata("userId", userId)
+                .build();
+            RequestOptions options = RequestOptions.builder().setIdempotencyKey("customer:" + userId).build();
+            Customer customer = stripeCallGuard.call("create_customer", () -> Customer.create(params, options));
+            created.increment();
+            log.info("👤 Created Stripe Customer {} for user {}", customer.getId(), userId);
+
+            Instant now = Instant.now();
+            StripeCustomer mapping = StripeCustomer.builder()
+                .userId(userId)
+                .customerId(customer.getId())
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+            try {
+                mongoTemplate.insert(mapping);
+            } catch (DuplicateKeyException e) {
+                mapping = mongoTemplate.findById(userId, StripeCustomer.class);
+            }
+            cache(mapping);
+            mine.complete(mapping);
+            return mapping;
+        } catch (StripeException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            creating.remove(userId, mine);
+        }
+    }
+
+    private void update(StripeCustomer customer) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(customer.getUserId())),
+            new Update().set("paymentMethodId", customer.getPaymentMethodId()).set("updatedAt", customer.getUpdatedAt()),
+            StripeCustomer.class);
+        cache(customer);
+    }
+
+    private synchronized StripeCustomer cachedCustomer(String userId) {
+        return recent.get(userId);
+    }
+
+    private synchronized void cache(StripeCustomer customer) {
+        recent.put(customer.getUserId(), customer);
+    }
+
+    private static StripeCustomer join(CompletableFuture<StripeCustomer> running) throws StripeException {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for Stripe Customer creation", e);
+        }
+    }
+}
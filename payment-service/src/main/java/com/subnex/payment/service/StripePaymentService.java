@@ -1,23 +1,81 @@
 package com.subnex.payment.service;
 
+import com.stripe.exception.CardException;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
+import com.subnex.payment.stripe.StripeCallGuard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class StripePaymentService {
 
+    private final StripeCallGuard stripeCallGuard;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${stripe.retrieve.cache-ttl-ms:2000}")
+    private long retrieveCacheTtlMs;
+
+    @Value("${stripe.retrieve.cache-size:10000}")
+    private int retrieveCacheSize;
+
+    // Concurrent retrievals of one intent share a single Stripe call, and its result is reused
+    // briefly; webhooks for the intent drop both so the next read sees the new state
+    private final Map<String, CompletableFuture<PaymentIntent>> retrievalsInFlight = new ConcurrentHashMap<>();
+    private Map<String, CachedIntent> recentIntents;
+    private Counter retrievalsCalled;
+    private Counter retrievalsCoalesced;
+    private Counter retrievalsCached;
+
+    private record CachedIntent(PaymentIntent intent, long fetchedAt) {
+    }
+
+    @PostConstruct
+    public void init() {
+        recentIntents = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedIntent> eldest) {
+                return size() > retrieveCacheSize;
+            }
+        };
+        retrievalsCalled = Counter.builder("stripe.retrieve.requests").tag("result", "called").register(meterRegistry);
+        retrievalsCoalesced = Counter.builder("stripe.retrieve.requests").tag("result", "coalesced").register(meterRegistry);
+        retrievalsCached = Counter.builder("stripe.retrieve.requests").tag("result", "cached").register(meterRegistry);
+    }
+
     public PaymentIntent createPaymentIntent(Long amount, String currency, String subscriptionId, String userEmail) throws StripeException {
+        return createPaymentIntent(amount, currency, subscriptionId, userEmail, null);
+    }
+
+    // With an idempotency key Stripe returns the original intent when the same create is retried
+    public PaymentIntent createPaymentIntent(Long amount, String currency, String subscriptionId, String userEmail,
+                                             String idempotencyKey) throws StripeException {
+        return createPaymentIntent(amount, currency, subscriptionId, userEmail, idempotencyKey, null);
+    }
+
+    // Attached to a Customer, the card entered for this intent is saved for off-session renewals
+    public PaymentIntent createPaymentIntent(Long amount, String currency, String subscriptionId, String userEmail,
+                                             String idempotencyKey, String customerId) throws StripeException {
         log.info("Creating Stripe PaymentIntent: amount={}, currency={}, subscription={}, email={}", 
             amount, currency, subscriptionId, userEmail);
 
-        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+        PaymentIntentCreateParams.Builder params = PaymentIntentCreateParams.builder()
             .setAmount(amount) // Amount in smallest currency unit (cents for USD, paise for INR)
             .setCurrency(currency.toLowerCase())
             .setDescription("Payment for subscription: " + subscriptionId)
@@ -28,17 +86,97 @@ public class StripePaymentService {
                 PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
                     .setEnabled(true)
                     .build()
-            )
-            .build();
+            );
+        if (customerId != null) {
+            params.setCustomer(customerId)
+                .setSetupFutureUsage(PaymentIntentCreateParams.SetupFutureUsage.OFF_SESSION);
+        }
 
-        PaymentIntent paymentIntent = PaymentIntent.create(params);
+        PaymentIntent paymentIntent = stripeCallGuard.call("create_payment_intent",
+            () -> PaymentIntent.create(params.build(), requestOptions(idempotencyKey)));
         log.info("PaymentIntent created successfully: {}", paymentIntent.getId());
         return paymentIntent;
     }
 
+    // Charges a saved card with nobody at the checkout. A decline or a bank asking for authentication
+    // still returns the intent, left for the customer to complete like any on-session payment
+    public PaymentIntent createOffSessionPaymentIntent(Long amount, String currency, String subscriptionId, String userEmail,
+                                                       String idempotencyKey, String customerId,
+                                                       String paymentMethodId) throws StripeException {
+        log.info("Charging saved card off-session: amount={}, currency={}, subscription={}, customer={}",
+            amount, currency, subscriptionId, customerId);
+
+        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+            .setAmount(amount)
+            .setCurrency(currency.toLowerCase())
+            .setDescription("Payment for subscription: " + subscriptionId)
+            .putMetadata("subscriptionId", subscriptionId)
+            .putMetadata("userEmail", userEmail)
+            .setReceiptEmail(userEmail)
+            .setCustomer(customerId)
+            .setPaymentMethod(paymentMethodId)
+            .setOffSession(true)
+            .setConfirm(true)
+            .setAutomaticPaymentMethods(
+                PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
+                    .setEnabled(true)
+                    .setAllowRedirects(PaymentIntentCreateParams.AutomaticPaymentMethods.AllowRedirects.NEVER)
+                    .build()
+            )
+            .build();
+
+        try {
+            PaymentIntent paymentIntent = stripeCallGuard.call("create_off_session_payment_intent",
+                () -> PaymentIntent.create(params, requestOptions(idempotencyKey)));
+            log.info("Off-session PaymentIntent {} created in status {}", paymentIntent.getId(), paymentIntent.getStatus());
+            return paymentIntent;
+        } catch (CardException e) {
+            PaymentIntent declined = e.getStripeError() != null ? e.getStripeError().getPaymentIntent() : null;
+            if (declined == null) {
+                throw e;
+            }
+            log.warn("Off-session charge {} not completed ({}), left for the customer", declined.getId(), e.getCode());
+            return declined;
+        }
+    }
+
     public PaymentIntent retrievePaymentIntent(String paymentIntentId) throws StripeException {
+        PaymentIntent cached = cachedIntent(paymentIntentId);
+        if (cached != null) {
+            retrievalsCached.increment();
+            return cached;
+        }
+
+        CompletableFuture<PaymentIntent> mine = new CompletableFuture<>();
+        CompletableFuture<PaymentIntent> running = retrievalsInFlight.putIfAbsent(paymentIntentId, mine);
+        if (running != null) {
+            retrievalsCoalesced.increment();
+            return join(running);
+        }
+
         log.info("Retrieving PaymentIntent: {}", paymentIntentId);
-        return PaymentIntent.retrieve(paymentIntentId);
+        retrievalsCalled.increment();
+        try {
+            PaymentIntent paymentIntent = stripeCallGuard.call("retrieve_payment_intent", () -> PaymentIntent.retrieve(paymentIntentId));
+            // Still mapped only if no webhook invalidated the intent while we were fetching it
+            if (retrievalsInFlight.remove(paymentIntentId, mine)) {
+                cacheIntent(paymentIntentId, paymentIntent);
+            }
+            mine.complete(paymentIntent);
+            return paymentIntent;
+        } catch (StripeException | RuntimeException e) {
+            retrievalsInFlight.remove(paymentIntentId, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Called when a webhook reports a change to the intent
+    public void invalidate(String paymentIntentId) {
+        retrievalsInFlight.remove(paymentIntentId);
+        synchronized (this) {
+            recentIntents.remove(paymentIntentId);
+        }
     }
 
     public PaymentIntent confirmPaymentIntent(String paymentIntentId, String paymentMethodId) throws StripeException {
@@ -47,8 +185,12 @@ public class StripePaymentService {
         Map<String, Object> params = new HashMap<>();
         params.put("payment_method", paymentMethodId);
         
-        PaymentIntent paymentIntent = PaymentIntent.retrieve(paymentIntentId);
-        return paymentIntent.confirm(params);
+        PaymentIntent paymentIntent = retrievePaymentIntent(paymentIntentId);
+        try {
+            return stripeCallGuard.call("confirm_payment_intent", () -> paymentIntent.confirm(params));
+        } finally {
+            invalidate(paymentIntentId);
+        }
     }
 
     public boolean isPaymentSuccessful(PaymentIntent paymentIntent) {
@@ -59,4 +201,42 @@ public class StripePaymentService {
         return "requires_payment_method".equals(paymentIntent.getStatus()) || 
                "requires_action".equals(paymentIntent.getStatus());
     }
+
+    private static RequestOptions requestOptions(String idempotencyKey) {
+        return idempotencyKey != null
+            ? RequestOptions.builder().setIdempotencyKey(idempotencyKey).build()
+            : RequestOptions.getDefault();
+    }
+
+    private synchronized PaymentIntent cachedIntent(String paymentIntentId) {
+        CachedIntent cached = recentIntents.get(paymentIntentId);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.fetchedAt() >= retrieveCacheTtlMs) {
+            recentIntents.remove(paymentIntentId);
+            return null;
+        }
+        return cached.intent();
+    }
+
+    private synchronized void cacheIntent(String paymentIntentId, PaymentIntent paymentIntent) {
+        if (retrieveCacheTtlMs > 0) {
+            recentIntents.put(paymentIntentId, new CachedIntent(paymentIntent, System.currentTimeMillis()));
+        }
+    }
+
+    private static PaymentIntent join(CompletableFuture<PaymentIntent> running) throws StripeException {
+        try {
+            return running.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for PaymentIntent retrieval", e);
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.webhook.WebhookEnvelope;
+import com.subnex.payment.webhook.WebhookPayloadReader;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Applies a verified Stripe webhook to the matching payment. Errors propagate so the inbox
+ * can retry the event.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripeWebhookHandler {
+
+    private final PaymentProcessorService paymentProcessorService;
+    private final WebhookPayloadReader payloadReader;
+
+    // The payload was verified when it entered the inbox, so it is only read here
+    public void handle(String payload) {
+        processWebhookEvent(payloadReader.read(payload));
+    }
+
+    private void processWebhookEvent(WebhookEnvelope event) {
+        log.info("🔔 Processing Stripe webhook event ID: {}, Type: {}", event.eventId(), event.type());
+
+        String type = event.type() != null ? event.type() : "";
+        String paymentIntentId = null;
+
+        // 🎯 Handle payment_intent.* events
+        if (type.startsWith("payment_intent.")) {
+            paymentIntentId = event.paymentIntentId();
+            
+            if (paymentIntentId == null) {
+                log.warn("⚠️ Could not extract PaymentIntent ID from {}", type);
+                return;
+            }
+
+            if ("payment_intent.succeeded".equals(type)) {
+                log.info("✅ Payment succeeded event - PaymentIntent ID: {}", paymentIntentId);
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "succeeded");
+            } 
+            else if ("payment_intent.payment_failed".equals(type)) {
+                log.info("❌ Payment failed event - PaymentIntent ID: {}", paymentIntentId);
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "failed");
+            }
+            else if ("payment_intent.processing".equals(type)) {
+                log.info("⏳ Payment processing event - PaymentIntent ID: {}", paymentIntentId);
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "processing");
+            }
+            else if ("payment_intent.requires_action".equals(type)) {
+                log.info("🔐 Payment requires action event - PaymentIntent ID: {}", paymentIntentId);
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "requires_action");
+            }
+            else {
+                log.debug("ℹ️ Received payment_intent event: {}", type);
+            }
+        }
+        // 🎯 Handle charge.* events (nested PaymentIntent)
+        else if (type.startsWith("charge.")) {
+            paymentIntentId = event.paymentIntentId();
+            
+            if (paymentIntentId == null) {
+                log.debug("ℹ️ Charge event with no PaymentIntent: {}", type);
+                return;
+            }
+
+            if ("charge.succeeded".equals(type)) {
+                log.info("✅ Charge succeeded for PaymentIntent: {}", paymentIntentId);
+                // Update payment status based on charge success
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "succeeded");
+            }
+            else if ("charge.failed".equals(type)) {
+                log.info("❌ Charge failed for PaymentIntent: {}", paymentIntentId);
+                paymentProcessorService.processPaymentWebhook(paymentIntentId, "failed");
+            }
+            else {
+                log.debug("ℹ️ Ignoring charge event: {}", type);
+            }
+        }
+        else {
+            log.debug("ℹ️ Ignoring event type: {}", type);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.subnex.payment.stripe;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker over the last {@code windowSize} calls. Opens when the failure or
+ * slow-call rate crosses its threshold, rejects everything for {@code openMs}, then lets a few
+ * trial calls through and closes again only if all of them are healthy.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final byte[] window;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowRateThreshold;
+    private final long slowCallMs;
+    private final long openMs;
+    private final int halfOpenCalls;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int calls;
+    private int failures;
+    private int slowCalls;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowRateThreshold,
+                          long slowCallMs, long openMs, int halfOpenCalls, LongSupplier clock) {
+        this.window = new byte[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowRateThreshold = slowRateThreshold;
+        this.slowCallMs = slowCallMs;
+        this.openMs = openMs;
+        this.halfOpenCalls = halfOpenCalls;
+        this.clock = clock;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void onResult(boolean failed, long durationMs) {
+        boolean slow = durationMs >= slowCallMs;
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            } else if (++halfOpenSuccesses >= halfOpenCalls) {
+                reset(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return; // admitted before the breaker opened
+        }
+
+        byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        if (calls == window.length) {
+            byte evicted = window[next];
+            failures -= evicted & FAILED;
+            slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            calls++;
+        }
+        window[next] = outcome;
+        next = (next + 1) % window.length;
+        failures += outcome & FAILED;
+        slowCalls += (outcome & SLOW) >> 1;
+
+        if (calls >= minimumCalls
+                && ((double) failures / calls >= failureRateThreshold || (double) slowCalls / calls >= slowRateThreshold)) {
+            open();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = clock.getAsLong();
+    }
+
+    private void reset(State to) {
+        state = to;
+        next = 0;
+        calls = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,35 @@
+package com.subnex.payment.stripe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spaces calls at a steady rate with room for a small burst. Each caller reserves the next free
+ * slot and sleeps until it comes round, so background jobs share Stripe's rate limit with live
+ * traffic instead of starving it.
+ */
+public class RateBudget {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private long nextFreeNanos;
+
+    public RateBudget(double permitsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+        this.nextFreeNanos = System.nanoTime() - burstNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // Unused capacity carries over, but never more than one burst
+            long slot = Math.max(nextFreeNanos, now - burstNanos);
+            nextFreeNanos = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
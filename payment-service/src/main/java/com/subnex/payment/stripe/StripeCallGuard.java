@@ -0,0 +1,110 @@
+package com.subnex.payment.stripe;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.ApiException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs every Stripe API call through a bulkhead and a circuit breaker and times it. The bulkhead
+ * caps how many request threads can be parked on Stripe at once; the breaker fails fast while
+ * Stripe is erroring or slow, so a bad region costs callers a 503 instead of a thread each.
+ * Card declines and other client errors are Stripe working normally and do not trip the breaker.
+ */
+@Slf4j
+public class StripeCallGuard {
+
+    @FunctionalInterface
+    public interface StripeCall<T> {
+        T execute() throws StripeException;
+    }
+
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMs;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final Counter bulkheadRejected;
+    private final Counter circuitRejected;
+
+    public StripeCallGuard(int maxConcurrentCalls, long bulkheadWaitMs, CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMs = bulkheadWaitMs;
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+        this.bulkheadRejected = Counter.builder("stripe.rejected").tag("reason", "bulkhead").register(meterRegistry);
+        this.circuitRejected = Counter.builder("stripe.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        Gauge.builder("stripe.bulkhead.available", bulkhead, Semaphore::availablePermits).register(meterRegistry);
+        Gauge.builder("stripe.circuit.open", circuitBreaker, breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+            .register(meterRegistry);
+    }
+
+    public <T> T call(String operation, StripeCall<T> call) throws StripeException {
+        if (!acquireBulkhead()) {
+            bulkheadRejected.increment();
+            throw new StripeUnavailableException("Too many concurrent Stripe calls, rejected " + operation);
+        }
+        try {
+            if (!circuitBreaker.tryAcquire()) {
+                circuitRejected.increment();
+                throw new StripeUnavailableException("Stripe circuit open, failing fast on " + operation);
+            }
+
+            long started = System.nanoTime();
+            String outcome = "success";
+            boolean failed = false;
+            try {
+                return call.execute();
+            } catch (StripeException e) {
+                failed = isStripeSideFailure(e);
+                outcome = failed ? "error" : "client_error";
+                throw e;
+            } catch (RuntimeException e) {
+                failed = true;
+                outcome = "error";
+                throw e;
+            } finally {
+                long elapsedNanos = System.nanoTime() - started;
+                circuitBreaker.onResult(failed, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+                Timer.builder("stripe.requests")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+                if (circuitBreaker.state() == CircuitBreaker.State.OPEN && failed) {
+                    log.warn("🔌 Stripe circuit open after {} failed: {}", operation, outcome);
+                }
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Network errors, timeouts, throttling and 5xx; a declined card or bad request is a healthy Stripe
+    public static boolean isStripeSideFailure(StripeException e) {
+        if (e instanceof ApiConnectionException || e instanceof RateLimitException || e instanceof ApiException) {
+            return true;
+        }
+        return e.getStatusCode() != null && e.getStatusCode() >= 500;
+    }
+}
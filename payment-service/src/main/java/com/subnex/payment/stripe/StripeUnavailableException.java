@@ -0,0 +1,13 @@
+package com.subnex.payment.stripe;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Raised without calling Stripe when the circuit is open or the bulkhead is full
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class StripeUnavailableException extends RuntimeException {
+
+    public StripeUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,94 @@
+package com.subnex.payment.webhook;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed set of single-threaded lanes chosen by key hash: tasks with the same key
+ * run one after another in submission order, different keys run in parallel. Each lane has a
+ * bounded queue and {@link #execute} blocks while it is full, pushing back on the submitter.
+ */
+@Slf4j
+public class KeyedOrderedExecutor {
+
+    private final String name;
+    private final List<BlockingQueue<Runnable>> lanes;
+    private final List<Thread> threads;
+    private volatile boolean running = true;
+
+    public KeyedOrderedExecutor(String name, int laneCount, int queueCapacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.lanes = new ArrayList<>(laneCount);
+        this.threads = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(queueCapacity);
+            lanes.add(queue);
+            Gauge.builder(name + ".lane.depth", queue, BlockingQueue::size)
+                .tag("lane", String.valueOf(i))
+                .register(meterRegistry);
+
+            Thread thread = new Thread(() -> runLane(queue), name + "-lane-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    public void execute(String key, Runnable task) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException(name + " executor is shut down");
+        }
+        lanes.get(laneOf(key)).put(task);
+    }
+
+    public boolean tryExecute(String key, Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        return running && lanes.get(laneOf(key)).offer(task, timeout, unit);
+    }
+
+    public int laneOf(String key) {
+        int hash = key == null ? 0 : key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.size());
+    }
+
+    public int laneCount() {
+        return lanes.size();
+    }
+
+    // Inferred as the destroy method when registered as a bean
+    public void shutdown() throws InterruptedException {
+        shutdown(10, TimeUnit.SECONDS);
+    }
+
+    // Lets queued tasks finish for up to the timeout, then interrupts whatever is still running
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        running = false;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        threads.forEach(Thread::interrupt);
+    }
+
+    private void runLane(BlockingQueue<Runnable> queue) {
+        while (running || !queue.isEmpty()) {
+            try {
+                Runnable task = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (task != null) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Task failed on {} lane {}: {}", name, Thread.currentThread().getName(), e.getMessage(), e);
+            }
+        }
+    }
+}
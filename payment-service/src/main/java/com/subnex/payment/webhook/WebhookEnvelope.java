@@ -0,0 +1,17 @@
+package com.subnex.payment.webhook;
+
+/**
+ * The few fields of a Stripe event needed to route it: event id and type, plus the id, object
+ * type and payment_intent reference of {@code data.object}.
+ */
+public record WebhookEnvelope(String eventId, String type, String objectType, String objectId,
+                              String objectPaymentIntent) {
+
+    // The object itself for payment_intent.* events, the referenced intent for charge.* events
+    public String paymentIntentId() {
+        if ("payment_intent".equals(objectType) || (objectId != null && objectId.startsWith("pi_"))) {
+            return objectId;
+        }
+        return objectPaymentIntent;
+    }
+}
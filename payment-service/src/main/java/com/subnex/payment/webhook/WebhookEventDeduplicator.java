@@ -0,0 +1,68 @@
+package com.subnex.payment.webhook;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Drops redelivered Stripe events by event id. A bounded set of recently seen ids answers most
+ * redeliveries without I/O; anything older falls through to the unique eventId index of the
+ * inbox.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebhookEventDeduplicator {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.dedup.recent-capacity:100000}")
+    private int recentCapacity;
+
+    private Map<String, Boolean> recent;
+    private Counter received;
+    private Counter memoryDuplicates;
+    private Counter storeDuplicates;
+
+    @PostConstruct
+    public void init() {
+        recent = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+        received = Counter.builder("webhook.events.received").register(meterRegistry);
+        memoryDuplicates = Counter.builder("webhook.events.duplicate").tag("tier", "memory").register(meterRegistry);
+        storeDuplicates = Counter.builder("webhook.events.duplicate").tag("tier", "store").register(meterRegistry);
+    }
+
+    // Runs store for an event id not seen before; returns whether it stored a new event
+    public boolean accept(String eventId, BooleanSupplier store) {
+        received.increment();
+        if (seenRecently(eventId)) {
+            memoryDuplicates.increment();
+            return false;
+        }
+        boolean stored = store.getAsBoolean();
+        if (!stored) {
+            storeDuplicates.increment();
+        }
+        remember(eventId);
+        return stored;
+    }
+
+    private synchronized boolean seenRecently(String eventId) {
+        return recent.containsKey(eventId);
+    }
+
+    private synchronized void remember(String eventId) {
+        recent.put(eventId, Boolean.TRUE);
+    }
+}
@@ -0,0 +1,215 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.enums.WebhookInboxStatus;
+import com.subnex.payment.model.WebhookInboxEntry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of verified Stripe webhooks in Mongo. The webhook endpoint appends and returns;
+ * workers on any replica claim entries with a time-limited lock, so an entry whose worker died
+ * is picked up again once its lock expires.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookInbox {
+
+    private static final List<WebhookInboxStatus> CLAIMABLE =
+        List.of(WebhookInboxStatus.PENDING, WebhookInboxStatus.PROCESSING);
+
+    // Candidates tried per claim before the caller falls back to polling
+    private static final int CLAIM_TRIES = 3;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${webhook.inbox.lock-seconds:60}")
+    private long lockSeconds;
+
+    @Value("${webhook.inbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${webhook.inbox.backoff-seconds:30}")
+    private long backoffSeconds;
+
+    @Value("${webhook.inbox.retention-days:7}")
+    private long retentionDays;
+
+    // Wakes local workers as soon as something is appended instead of waiting for the next poll
+    private final Semaphore arrivals = new Semaphore(0);
+
+    // False when an event with this id was already received
+    public boolean append(String eventId, String eventType, String orderingKey, String payload) {
+        Instant now = Instant.now();
+        try {
+            mongoTemplate.insert(WebhookInboxEntry.builder()
+                .eventId(eventId)
+                .eventType(eventType)
+                .orderingKey(orderingKey)
+                .payload(payload)
+                .status(WebhookInboxStatus.PENDING)
+                .receivedAt(now)
+                .availableAt(now)
+                .build());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        arrivals.release();
+        return true;
+    }
+
+    // Oldest due entry first, but never ahead of an earlier entry for the same PaymentIntent that is
+    // still backing off or held by another worker, so one intent's events are applied in arrival order
+    public WebhookInboxEntry claimNext() {
+        Instant now = Instant.now();
+        List<String> blockedKeys = new ArrayList<>(mongoTemplate.findDistinct(
+            new Query(Criteria.where("status").in(CLAIMABLE).and("availableAt").gt(now)),
+            "orderingKey", WebhookInboxEntry.class, String.class));
+
+        for (int i = 0; i < CLAIM_TRIES; i++) {
+            Criteria due = Criteria.where("status").in(CLAIMABLE).and("availableAt").lte(now);
+            if (!blockedKeys.isEmpty()) {
+                due = due.and("orderingKey").nin(blockedKeys);
+            }
+            WebhookInboxEntry candidate = mongoTemplate.findOne(new Query(due)
+                .with(Sort.by(Sort.Direction.ASC, "availableAt", "_id")), WebhookInboxEntry.class);
+            if (candidate == null) {
+                return null;
+            }
+
+            // A retry can come due after a later event of its intent; the intent's earliest entry goes first
+            WebhookInboxEntry earliest = candidate.getOrderingKey() == null ? candidate : mongoTemplate.findOne(
+                new Query(Criteria.where("orderingKey").is(candidate.getOrderingKey()).and("status").in(CLAIMABLE))
+                    .with(Sort.by(Sort.Direction.ASC, "receivedAt", "_id")),
+                WebhookInboxEntry.class);
+            if (earliest == null || earliest.getAvailableAt().isAfter(now)) {
+                blockedKeys.add(candidate.getOrderingKey());
+                continue;
+            }
+
+            WebhookInboxEntry claimed = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(earliest.getId())
+                    .and("status").in(CLAIMABLE)
+                    .and("availableAt").lte(now)),
+                new Update()
+                    .set("status", WebhookInboxStatus.PROCESSING)
+                    .set("availableAt", now.plusSeconds(lockSeconds))
+                    .inc("attempts", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                WebhookInboxEntry.class);
+            if (claimed != null) {
+                return claimed;
+            }
+            // Another worker claimed it between our read and our claim
+            if (earliest.getOrderingKey() != null) {
+                blockedKeys.add(earliest.getOrderingKey());
+            }
+        }
+        return null;
+    }
+
+    // Re-arms the lock when a lane starts the entry; false when it expired while queued and another worker took it
+    public boolean extendLock(WebhookInboxEntry entry) {
+        return mongoTemplate.updateFirst(owned(entry),
+            new Update().set("availableAt", Instant.now().plusSeconds(lockSeconds)),
+            WebhookInboxEntry.class).getModifiedCount() == 1;
+    }
+
+    // Hands back an entry no lane could take, without using up one of its attempts
+    public void release(WebhookInboxEntry entry) {
+        mongoTemplate.updateFirst(owned(entry),
+            new Update()
+                .set("status", WebhookInboxStatus.PENDING)
+                .set("availableAt", Instant.now())
+                .inc("attempts", -1),
+            WebhookInboxEntry.class);
+    }
+
+    public void awaitArrival(long timeoutMs) throws InterruptedException {
+        arrivals.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void complete(WebhookInboxEntry entry) {
+        Instant now = Instant.now();
+        mongoTemplate.updateFirst(owned(entry),
+            new Update()
+                .set("status", WebhookInboxStatus.DONE)
+                .set("processedAt", now)
+                .set("expireAt", now.plus(Duration.ofDays(retentionDays)))
+                .unset("lastError"),
+            WebhookInboxEntry.class);
+    }
+
+    // Returns true when the entry will be retried, false when it was given up on
+    public boolean fail(WebhookInboxEntry entry, String error) {
+        Instant now = Instant.now();
+        boolean retry = entry.getAttempts() < maxAttempts;
+        Update update = new Update().set("lastError", error);
+        if (retry) {
+            update.set("status", WebhookInboxStatus.PENDING)
+                .set("availableAt", now.plusSeconds(backoffSeconds * entry.getAttempts()));
+        } else {
+            update.set("status", WebhookInboxStatus.DEAD)
+                .set("processedAt", now);
+        }
+        mongoTemplate.updateFirst(owned(entry), update, WebhookInboxEntry.class);
+        return retry;
+    }
+
+    public boolean isDone(String eventId) {
+        return mongoTemplate.exists(
+            new Query(Criteria.where("eventId").is(eventId).and("status").is(WebhookInboxStatus.DONE)),
+            WebhookInboxEntry.class);
+    }
+
+    // Records an event applied by a replay, so later replays and Stripe redeliveries skip it
+    public void recordReplayed(String eventId, String eventType, String orderingKey) {
+        Instant now = Instant.now();
+        mongoTemplate.upsert(new Query(Criteria.where("eventId").is(eventId)),
+            new Update()
+                .setOnInsert("eventType", eventType)
+                .setOnInsert("orderingKey", orderingKey)
+                .setOnInsert("receivedAt", now)
+                .set("status", WebhookInboxStatus.DONE)
+                .set("processedAt", now)
+                .set("expireAt", now.plus(Duration.ofDays(retentionDays)))
+                .unset("lastError"),
+            WebhookInboxEntry.class);
+    }
+
+    public long depth() {
+        return mongoTemplate.count(new Query(Criteria.where("status").in(CLAIMABLE)), WebhookInboxEntry.class);
+    }
+
+    public Instant oldestPendingReceivedAt() {
+        Query oldest = new Query(Criteria.where("status").in(CLAIMABLE))
+            .with(Sort.by(Sort.Direction.ASC, "availableAt", "_id"))
+            .limit(1);
+        oldest.fields().include("receivedAt");
+        WebhookInboxEntry entry = mongoTemplate.findOne(oldest, WebhookInboxEntry.class);
+        return entry != null ? entry.getReceivedAt() : null;
+    }
+
+    // Guards against finishing an entry whose lock expired and was claimed by another worker meanwhile
+    private static Query owned(WebhookInboxEntry entry) {
+        return new Query(Criteria.where("_id").is(entry.getId())
+            .and("status").is(WebhookInboxStatus.PROCESSING)
+            .and("attempts").is(entry.getAttempts()));
+    }
+}
@@ -0,0 +1,146 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.model.WebhookInboxEntry;
+import com.subnex.payment.service.StripeWebhookHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the {@link WebhookInbox} into {@link StripeWebhookHandler}. A single claimer hands
+ * entries to the webhook {@link KeyedOrderedExecutor}, so events of one PaymentIntent are applied
+ * in arrival order while different intents run in parallel. An entry whose lane stays full is
+ * handed back to the inbox, and a lane re-arms the entry's lock before applying it, so an entry
+ * can never be applied by two workers. Failed entries go back to the inbox with a growing delay
+ * and are parked as DEAD after the last attempt.
+ */
+@Component
+@ConditionalOnExpression(WebhookReplayRunner.NOT_REPLAYING)
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookInboxProcessor {
+
+    private final WebhookInbox inbox;
+    private final StripeWebhookHandler webhookHandler;
+    private final MeterRegistry meterRegistry;
+    private final KeyedOrderedExecutor webhookExecutor;
+
+    @Value("${webhook.inbox.poll-ms:1000}")
+    private long pollMs;
+
+    // Kept well below webhook.inbox.lock-seconds so a claimed entry never waits out its lock
+    @Value("${webhook.inbox.handoff-timeout-ms:5000}")
+    private long handoffTimeoutMs;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong oldestAgeSeconds = new AtomicLong();
+    private Thread claimer;
+    private volatile boolean running = true;
+    private Timer lag;
+    private Counter done;
+    private Counter retried;
+    private Counter dead;
+    private Counter handedBack;
+
+    @PostConstruct
+    public void init() {
+        lag = Timer.builder("webhook.inbox.lag").description("Time from receipt to processed").register(meterRegistry);
+        done = Counter.builder("webhook.inbox.processed").tag("outcome", "done").register(meterRegistry);
+        retried = Counter.builder("webhook.inbox.processed").tag("outcome", "retry").register(meterRegistry);
+        dead = Counter.builder("webhook.inbox.processed").tag("outcome", "dead").register(meterRegistry);
+        handedBack = Counter.builder("webhook.inbox.handed.back").register(meterRegistry);
+        Gauge.builder("webhook.inbox.depth", depth, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("webhook.inbox.oldest.age.seconds", oldestAgeSeconds, AtomicLong::get).register(meterRegistry);
+
+        claimer = new Thread(this::drain, "webhook-inbox-claimer");
+        claimer.setDaemon(true);
+        claimer.start();
+        log.info("📥 Webhook inbox started with {} lanes", webhookExecutor.laneCount());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        claimer.interrupt();
+        claimer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Counting on every scrape would put the collection scan on the metrics path
+    @Scheduled(fixedDelayString = "${webhook.inbox.metrics-ms:5000}")
+    public void refreshMetrics() {
+        try {
+            depth.set(inbox.depth());
+            Instant oldest = inbox.oldestPendingReceivedAt();
+            oldestAgeSeconds.set(oldest != null ? Duration.between(oldest, Instant.now()).toSeconds() : 0);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to refresh webhook inbox metrics: {}", e.getMessage());
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                WebhookInboxEntry entry = inbox.claimNext();
+                if (entry == null) {
+                    inbox.awaitArrival(pollMs);
+                    continue;
+                }
+                String key = entry.getOrderingKey() != null ? entry.getOrderingKey() : entry.getEventId();
+                if (!webhookExecutor.tryExecute(key, () -> process(entry), handoffTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    inbox.release(entry);
+                    handedBack.increment();
+                    log.warn("⏳ Lane for webhook event {} stayed full, handed it back to the inbox", entry.getEventId());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("❌ Webhook inbox worker error: {}", e.getMessage(), e);
+                sleepQuietly();
+            }
+        }
+    }
+
+    void process(WebhookInboxEntry entry) {
+        if (!inbox.extendLock(entry)) {
+            log.warn("⏭️ Webhook event {} was reclaimed while queued, skipping", entry.getEventId());
+            return;
+        }
+        try {
+            webhookHandler.handle(entry.getPayload());
+            inbox.complete(entry);
+            done.increment();
+            lag.record(Duration.between(entry.getReceivedAt(), Instant.now()));
+        } catch (Exception e) {
+            if (inbox.fail(entry, e.getMessage())) {
+                retried.increment();
+                log.warn("🔁 Webhook event {} failed on attempt {}, will retry: {}", entry.getEventId(), entry.getAttempts(), e.getMessage());
+            } else {
+                dead.increment();
+                log.error("💀 Webhook event {} given up after {} attempts: {}", entry.getEventId(), entry.getAttempts(), e.getMessage());
+            }
+        }
+    }
+
+    private void sleepQuietly() {
+        try {
+            Thread.sleep(pollMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
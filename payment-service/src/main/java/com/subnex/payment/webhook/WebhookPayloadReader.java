@@ -0,0 +1,104 @@
+package com.subnex.payment.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads a {@link WebhookEnvelope} from a raw Stripe event in one streaming pass. Everything
+ * outside the handful of routing fields is skipped token by token, so no object tree or Stripe
+ * model is built for the (often large) charge and payment_intent bodies.
+ */
+@Component
+public class WebhookPayloadReader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public WebhookEnvelope read(String payload) {
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Webhook payload is not a JSON object");
+            }
+            Fields fields = new Fields();
+            String name;
+            while ((name = parser.nextFieldName()) != null) {
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "id" -> fields.eventId = text(parser, value);
+                    case "type" -> fields.type = text(parser, value);
+                    case "data" -> readData(parser, value, fields);
+                    default -> parser.skipChildren();
+                }
+            }
+            return new WebhookEnvelope(fields.eventId, fields.type, fields.objectType, fields.objectId,
+                fields.objectPaymentIntent);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed webhook payload: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readData(JsonParser parser, JsonToken value, Fields fields) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken next = parser.nextToken();
+            if ("object".equals(name) && next == JsonToken.START_OBJECT) {
+                readObject(parser, fields);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readObject(JsonParser parser, Fields fields) throws IOException {
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            switch (name) {
+                case "id" -> fields.objectId = text(parser, value);
+                case "object" -> fields.objectType = text(parser, value);
+                // A string id unless the webhook endpoint expands it into the full intent
+                case "payment_intent" -> fields.objectPaymentIntent = value == JsonToken.START_OBJECT
+                    ? expandedId(parser)
+                    : text(parser, value);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static String expandedId(JsonParser parser) throws IOException {
+        String id = null;
+        String name;
+        while ((name = parser.nextFieldName()) != null) {
+            JsonToken value = parser.nextToken();
+            if ("id".equals(name)) {
+                id = text(parser, value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        parser.skipChildren();
+        return null;
+    }
+
+    private static final class Fields {
+        private String eventId;
+        private String type;
+        private String objectType;
+        private String objectId;
+        private String objectPaymentIntent;
+    }
+}
@@ -0,0 +1,22 @@
+package com.subnex.payment.webhook;
+
+import java.time.Duration;
+
+/**
+ * Outcome of one pass over a webhook dump. {@code applied} and {@code failed} count events handed
+ * to the handler; {@code duplicates} were already applied earlier in the file, by a previous replay
+ * or by the live inbox; {@code unreadable} lines were not Stripe events.
+ */
+public record WebhookReplayReport(String file, long startOffset, long endOffset, long lines, long applied,
+                                  long duplicates, long unreadable, long failed, Duration elapsed) {
+
+    public double eventsPerSecond() {
+        long millis = Math.max(1, elapsed.toMillis());
+        return (applied + failed) * 1000.0 / millis;
+    }
+
+    public double megabytesPerSecond() {
+        long millis = Math.max(1, elapsed.toMillis());
+        return (endOffset - startOffset) / 1_048_576.0 * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,45 @@
+package com.subnex.payment.webhook;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Command-line entry point for {@link WebhookReplayer}: started with
+ * {@code --webhook.replay.file=/path/events.ndjson}, the service replays the dump and exits,
+ * with a non-zero status when any event failed. A replay runs without the web server, and the
+ * background workers marked {@link #NOT_REPLAYING} stay off so only the replay touches payments.
+ */
+@Component
+@ConditionalOnProperty(WebhookReplayRunner.FILE_PROPERTY)
+@RequiredArgsConstructor
+public class WebhookReplayRunner implements ApplicationRunner {
+
+    public static final String FILE_PROPERTY = "webhook.replay.file";
+
+    // Condition for beans that must not start during a replay: consumers, relays and schedulers
+    public static final String NOT_REPLAYING = "'${" + FILE_PROPERTY + ":}'.isEmpty()";
+
+    private final WebhookReplayer webhookReplayer;
+    private final ConfigurableApplicationContext context;
+
+    @Value("${webhook.replay.file}")
+    private String file;
+
+    @Value("${webhook.replay.resume:true}")
+    private boolean resume;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        WebhookReplayReport report = webhookReplayer.replay(Path.of(file), resume);
+        int status = report.failed() > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+}
@@ -0,0 +1,249 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.model.WebhookReplayCheckpoint;
+import com.subnex.payment.service.StripeWebhookHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-applies a dump of Stripe events, one JSON event per line, through the same
+ * {@link StripeWebhookHandler} the inbox uses. The file is streamed line by line and events go to
+ * the webhook {@link KeyedOrderedExecutor}, so memory stays flat however large the dump is, events
+ * of one PaymentIntent are applied in file order and different intents run in parallel.
+ *
+ * <p>Events already applied (earlier in the file, by a previous replay or by the live inbox) are
+ * skipped. The byte offset below which every line has been applied is checkpointed, so an
+ * interrupted replay resumes where it stopped. Failed events are logged and passed over by the
+ * checkpoint; replaying the file again without resuming retries exactly those.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebhookReplayer {
+
+    private final WebhookPayloadReader payloadReader;
+    private final StripeWebhookHandler webhookHandler;
+    private final WebhookInbox inbox;
+    private final KeyedOrderedExecutor webhookExecutor;
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${webhook.replay.checkpoint-every:1000}")
+    private int checkpointEvery;
+
+    @Value("${webhook.replay.recent-capacity:100000}")
+    private int recentCapacity;
+
+    @Value("${webhook.replay.max-line-bytes:4194304}")
+    private int maxLineBytes;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    public WebhookReplayReport replay(Path file, boolean resume) throws IOException, InterruptedException {
+        String id = file.toAbsolutePath().normalize().toString();
+        if (!running.add(id)) {
+            throw new IllegalStateException("A replay of " + id + " is already running");
+        }
+        try {
+            long startOffset = 0;
+            if (resume) {
+                WebhookReplayCheckpoint checkpoint = mongoTemplate.findById(id, WebhookReplayCheckpoint.class);
+                startOffset = checkpoint != null ? checkpoint.getOffset() : 0;
+            }
+            return new Run(id, startOffset).execute(file);
+        } finally {
+            running.remove(id);
+        }
+    }
+
+    private final class Run {
+
+        private final String id;
+        private final long startOffset;
+        private final Instant startedAt = Instant.now();
+        // Start offsets of lines handed to a lane and not yet finished; bounded by the lane queues
+        private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<>();
+        private final Map<String, Boolean> recent = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > recentCapacity;
+            }
+        };
+        private final AtomicLong applied = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private long lines;
+        private long duplicates;
+        private long unreadable;
+        private long offset;
+
+        private Run(String id, long startOffset) {
+            this.id = id;
+            this.startOffset = startOffset;
+            this.offset = startOffset;
+        }
+
+        private WebhookReplayReport execute(Path file) throws IOException, InterruptedException {
+            log.info("⏪ Replaying Stripe events from {} starting at byte {}", id, startOffset);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 InputStream in = Channels.newInputStream(channel.position(startOffset))) {
+                byte[] buffer = new byte[1 << 16];
+                ByteArrayOutputStream line = new ByteArrayOutputStream(8192);
+                long lineLength = 0; // bytes of the current line, including any dropped past maxLineBytes
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    int from = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (buffer[i] != '\n') {
+                            continue;
+                        }
+                        append(line, buffer, from, i - from);
+                        lineLength += i - from;
+                        endLine(line, lineLength, 1);
+                        lineLength = 0;
+                        from = i + 1;
+                    }
+                    append(line, buffer, from, read - from);
+                    lineLength += read - from;
+                }
+                if (lineLength > 0) {
+                    endLine(line, lineLength, 0);
+                }
+            }
+            awaitPending();
+            checkpoint();
+
+            WebhookReplayReport report = new WebhookReplayReport(id, startOffset, offset, lines, applied.get(),
+                duplicates, unreadable, failed.get(), Duration.between(startedAt, Instant.now()));
+            log.info("✅ Replayed {}: {} lines, {} applied, {} duplicates, {} unreadable, {} failed in {} ms ({} events/s, {} MB/s)",
+                id, report.lines(), report.applied(), report.duplicates(), report.unreadable(), report.failed(),
+                report.elapsed().toMillis(), Math.round(report.eventsPerSecond()),
+                String.format("%.1f", report.megabytesPerSecond()));
+            return report;
+        }
+
+        private void append(ByteArrayOutputStream line, byte[] buffer, int from, int length) {
+            line.write(buffer, from, Math.max(0, Math.min(length, maxLineBytes - line.size())));
+        }
+
+        private void endLine(ByteArrayOutputStream line, long lineLength, int terminator) throws InterruptedException {
+            long lineOffset = offset;
+            offset += lineLength + terminator;
+            lines++;
+            if (lineLength > maxLineBytes) {
+                log.warn("⚠️ Skipping line at byte {} of {}: longer than {} bytes", lineOffset, id, maxLineBytes);
+                unreadable++;
+                meterRegistry.counter("webhook.replay.events", "outcome", "unreadable").increment();
+            } else {
+                dispatch(line.toString(StandardCharsets.UTF_8), lineOffset);
+            }
+            line.reset();
+            if (lines % checkpointEvery == 0) {
+                checkpoint();
+            }
+        }
+
+        private void dispatch(String payload, long lineOffset) throws InterruptedException {
+            if (payload.isBlank()) {
+                return;
+            }
+            WebhookEnvelope envelope = readEnvelope(payload);
+            if (envelope == null || envelope.eventId() == null) {
+                log.warn("⚠️ Skipping unreadable line at byte {} of {}", lineOffset, id);
+                unreadable++;
+                meterRegistry.counter("webhook.replay.events", "outcome", "unreadable").increment();
+                return;
+            }
+            if (recent.put(envelope.eventId(), Boolean.TRUE) != null || inbox.isDone(envelope.eventId())) {
+                duplicates++;
+                meterRegistry.counter("webhook.replay.events", "outcome", "duplicate").increment();
+                return;
+            }
+
+            String key = envelope.paymentIntentId() != null ? envelope.paymentIntentId() : envelope.eventId();
+            pending.add(lineOffset);
+            try {
+                webhookExecutor.execute(key, () -> apply(envelope, payload, lineOffset));
+            } catch (RuntimeException | InterruptedException e) {
+                pending.remove(lineOffset);
+                throw e;
+            }
+        }
+
+        private WebhookEnvelope readEnvelope(String payload) {
+            try {
+                return payloadReader.read(payload);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private void apply(WebhookEnvelope envelope, String payload, long lineOffset) {
+            try {
+                webhookHandler.handle(payload);
+                inbox.recordReplayed(envelope.eventId(), envelope.type(), envelope.paymentIntentId());
+                applied.incrementAndGet();
+                meterRegistry.counter("webhook.replay.events", "outcome", "applied").increment();
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                meterRegistry.counter("webhook.replay.events", "outcome", "failed").increment();
+                log.error("❌ Replay of event {} at byte {} of {} failed: {}", envelope.eventId(), lineOffset, id, e.getMessage());
+            } finally {
+                finished(lineOffset);
+            }
+        }
+
+        private void finished(long lineOffset) {
+            pending.remove(lineOffset);
+            if (pending.isEmpty()) {
+                synchronized (pending) {
+                    pending.notifyAll();
+                }
+            }
+        }
+
+        private void awaitPending() throws InterruptedException {
+            synchronized (pending) {
+                while (!pending.isEmpty()) {
+                    pending.wait(100);
+                }
+            }
+        }
+
+        // Everything before the oldest line still in a lane has been applied
+        private void checkpoint() {
+            long safe = Objects.requireNonNullElse(pending.ceiling(Long.MIN_VALUE), offset);
+            mongoTemplate.save(WebhookReplayCheckpoint.builder()
+                .id(id)
+                .offset(safe)
+                .lines(lines)
+                .updatedAt(Instant.now())
+                .build());
+            if (lines % (checkpointEvery * 10L) == 0) {
+                long millis = Math.max(1, Duration.between(startedAt, Instant.now()).toMillis());
+                log.info("⏩ Replayed {} lines of {} ({} events/s)", lines, id, (applied.get() + failed.get()) * 1000 / millis);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.subnex.payment.config;
+
+import com.subnex.payment.model.Payment;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+class MongoIndexVerifierTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate.dropCollection(Payment.class);
+        // Two payments sharing a PaymentIntent id make the unique index impossible to build
+        mongoTemplate.getCollection("payments").insertMany(List.of(
+                new Document("stripePaymentIntentId", "pi_duplicate").append("userId", "user1"),
+                new Document("stripePaymentIntentId", "pi_duplicate").append("userId", "user2")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(Payment.class);
+    }
+
+    @Test
+    void testVerify_ReportsUnbuildableUniqueIndexAsMissing() {
+        // Given
+        MongoIndexVerifier verifier = verifier(false);
+
+        // When
+        assertDoesNotThrow(verifier::verify);
+
+        // Then: the other payment indexes were still created
+        List<IndexInfo> indexes = mongoTemplate.indexOps(Payment.class).getIndexInfo();
+        assertTrue(indexes.stream().anyMatch(info -> info.isIndexForFields(List.of("userId", "createdAt", "_id"))));
+        assertFalse(indexes.stream().anyMatch(info -> info.isIndexForFields(List.of("stripePaymentIntentId"))));
+    }
+
+    @Test
+    void testVerify_FailsStartupOnUnbuildableUniqueIndexWhenConfigured() {
+        // Given
+        MongoIndexVerifier verifier = verifier(true);
+
+        // When
+        IllegalStateException exception = assertThrows(IllegalStateException.class, verifier::verify);
+
+        // Then
+        assertTrue(exception.getMessage().contains("stripePaymentIntentId"), exception.getMessage());
+    }
+
+    private MongoIndexVerifier verifier(boolean failOnMissing) {
+        MongoIndexVerifier verifier = new MongoIndexVerifier(mongoTemplate);
+        ReflectionTestUtils.setField(verifier, "createMissing", true);
+        ReflectionTestUtils.setField(verifier, "failOnMissing", failOnMissing);
+        return verifier;
+    }
+}
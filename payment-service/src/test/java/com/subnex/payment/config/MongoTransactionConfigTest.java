@@ -0,0 +1,115 @@
+package com.subnex.payment.config;
+
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.kafka.PaymentEventOutbox;
+import com.subnex.payment.model.OutboxEvent;
+import com.subnex.payment.model.Payment;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@DataMongoTest
+@Import(PaymentEventOutbox.class)
+class MongoTransactionConfigTest {
+
+    @Autowired
+    private MongoDatabaseFactory databaseFactory;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PaymentEventOutbox outbox;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(Payment.class);
+        mongoTemplate.dropCollection(OutboxEvent.class);
+    }
+
+    @Test
+    void testTransactionManagerRejectsStandaloneServer() {
+        assumeFalse(replicaSet(), "needs a standalone server");
+
+        // When
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+            () -> new MongoTransactionConfig().transactionManager(databaseFactory));
+
+        // Then
+        assertTrue(exception.getMessage().contains("MONGO_TRANSACTIONS_ENABLED=false"));
+    }
+
+    @Test
+    void testOutboxEventCommitsAndRollsBackWithPaymentChange() {
+        assumeTrue(replicaSet(), "needs a replica set");
+
+        // Given: collections cannot be created inside a transaction on older servers
+        mongoTemplate.createCollection(Payment.class);
+        mongoTemplate.createCollection(OutboxEvent.class);
+        TransactionTemplate transaction = new TransactionTemplate(new MongoTransactionConfig().transactionManager(databaseFactory));
+
+        // When
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            mongoTemplate.insert(payment("pi_rolled_back"));
+            outbox.append(event("sub1"));
+            throw new IllegalStateException("webhook handler failed");
+        }));
+
+        // Then
+        assertEquals(0, mongoTemplate.count(new Query(), Payment.class));
+        assertEquals(0, outbox.depth());
+
+        // When
+        transaction.executeWithoutResult(status -> {
+            mongoTemplate.insert(payment("pi_committed"));
+            outbox.append(event("sub1"));
+        });
+
+        // Then
+        assertEquals(1, mongoTemplate.count(new Query(), Payment.class));
+        assertEquals(1, outbox.depth());
+        assertEquals(1, outbox.claimBatch(10).size());
+    }
+
+    private boolean replicaSet() {
+        Document hello = databaseFactory.getMongoDatabase("admin").runCommand(new Document("hello", 1));
+        return hello.get("setName") != null;
+    }
+
+    private static Payment payment(String paymentIntentId) {
+        return Payment.builder()
+            .userId("user1")
+            .subscriptionId("sub1")
+            .stripePaymentIntentId(paymentIntentId)
+            .amount(9999L)
+            .currency("USD")
+            .status(PaymentStatus.SUCCESS)
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+
+    private static PaymentEvent event(String subscriptionId) {
+        return PaymentEvent.builder()
+            .eventType("PAYMENT_SUCCESS")
+            .subscriptionId(subscriptionId)
+            .userId("user1")
+            .amount(9999L)
+            .currency("USD")
+            .timestamp(LocalDateTime.now())
+            .build();
+    }
+}
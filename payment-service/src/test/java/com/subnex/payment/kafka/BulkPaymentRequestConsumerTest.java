@@ -0,0 +1,91 @@
+package com.subnex.payment.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.payment.dto.PaymentInitiationResult;
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.service.BulkPaymentInitiator;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class BulkPaymentRequestConsumerTest {
+
+    @Mock
+    private BulkPaymentInitiator bulkPaymentInitiator;
+
+    private BulkPaymentRequestConsumer consumer;
+    private final List<PaymentInitiationResult> outcomes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        consumer = new BulkPaymentRequestConsumer(bulkPaymentInitiator, new ObjectMapper());
+        doAnswer(invocation -> {
+            List<PaymentRequest> requests = invocation.getArgument(0);
+            Consumer<List<PaymentInitiationResult>> onChunk = invocation.getArgument(1);
+            List<PaymentInitiationResult> results = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                PaymentInitiationResult outcome = i < outcomes.size() ? outcomes.get(i) : created();
+                outcome.setIndex(i);
+                outcome.setIdempotencyKey(requests.get(i).getIdempotencyKey());
+                results.add(outcome);
+            }
+            onChunk.accept(results);
+            return null;
+        }).when(bulkPaymentInitiator).initiate(anyList(), any());
+    }
+
+    @Test
+    void testDeclinedItemIsSkipped() {
+        // Given
+        outcomes.addAll(List.of(created(), failed("Your card was declined.", false), created()));
+
+        // When & Then
+        assertDoesNotThrow(() -> consumer.consumePaymentRequests(records(3)));
+    }
+
+    @Test
+    void testTransientFailureRedeliversFromThatRecord() {
+        // Given: the unreadable record at 1 shifts every later request down by one
+        outcomes.addAll(List.of(created(), created(), failed("Stripe is unavailable", true), failed("Stripe is unavailable", true)));
+        List<ConsumerRecord<String, String>> records = records(5);
+        records.set(1, new ConsumerRecord<>(BulkPaymentRequestConsumer.TOPIC, 0, 1, null, "not json"));
+
+        // When
+        BatchListenerFailedException failure = assertThrows(BatchListenerFailedException.class,
+            () -> consumer.consumePaymentRequests(records));
+
+        // Then
+        assertEquals(3, failure.getIndex());
+    }
+
+    private static List<ConsumerRecord<String, String>> records(int count) {
+        List<ConsumerRecord<String, String>> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new ConsumerRecord<>(BulkPaymentRequestConsumer.TOPIC, 0, i, null,
+                "{\"subscriptionId\":\"sub" + i + "\",\"amount\":49900}"));
+        }
+        return records;
+    }
+
+    private static PaymentInitiationResult created() {
+        return PaymentInitiationResult.builder().created(true).build();
+    }
+
+    private static PaymentInitiationResult failed(String error, boolean retryable) {
+        return PaymentInitiationResult.builder().error(error).retryable(retryable).build();
+    }
+}
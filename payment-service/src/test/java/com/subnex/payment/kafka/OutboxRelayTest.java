@@ -0,0 +1,143 @@
+package com.subnex.payment.kafka;
+
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.OutboxStatus;
+import com.subnex.payment.model.OutboxEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private PaymentEventOutbox outbox;
+
+    @Mock
+    private PaymentEventProducer producer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        // Keep the background loop idle; publish() is driven directly
+        lenient().when(outbox.claimBatch(anyInt())).thenReturn(List.of());
+        lenient().doAnswer(invocation -> {
+            Thread.sleep(50);
+            return null;
+        }).when(outbox).awaitArrival(anyLong());
+
+        relay = new OutboxRelay(outbox, producer, meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 200);
+        ReflectionTestUtils.setField(relay, "pollMs", 50L);
+        ReflectionTestUtils.setField(relay, "sendTimeoutMs", 200L);
+        ReflectionTestUtils.setField(relay, "lockSeconds", 60L);
+        relay.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        relay.shutdown();
+    }
+
+    @Test
+    void testPublish_MarksAllAcknowledgedRowsSent() throws Exception {
+        // Given
+        List<OutboxEvent> batch = List.of(row("o1", "sub1"), row("o2", "sub1"), row("o3", "sub2"));
+        when(producer.send(anyString(), anyString(), any(PaymentEvent.class))).thenReturn(acked());
+
+        // When
+        relay.publish(batch);
+
+        // Then: every row is handed to the producer, in order, before any ack is awaited
+        InOrder order = inOrder(producer, outbox);
+        order.verify(producer).send("payment-events", "sub1", batch.get(0).getEvent());
+        order.verify(producer).send("payment-events", "sub1", batch.get(1).getEvent());
+        order.verify(producer).send("payment-events", "sub2", batch.get(2).getEvent());
+        order.verify(outbox).markSent(List.of("o1", "o2", "o3"));
+        verify(outbox, never()).release(anyList(), any());
+        assertEquals(3.0, meterRegistry.counter("outbox.relay.events", "outcome", "sent").count());
+    }
+
+    @Test
+    void testPublish_ReleasesFailedAndUnacknowledgedRows() throws Exception {
+        // Given
+        List<OutboxEvent> batch = List.of(row("o1", "sub1"), row("o2", "sub2"), row("o3", "sub3"));
+        when(producer.send("payment-events", "sub1", batch.get(0).getEvent())).thenReturn(acked());
+        when(producer.send("payment-events", "sub2", batch.get(1).getEvent()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        when(producer.send("payment-events", "sub3", batch.get(2).getEvent())).thenReturn(new CompletableFuture<>());
+
+        // When
+        long started = System.nanoTime();
+        relay.publish(batch);
+
+        // Then: the never-acknowledged row times out instead of blocking the relay
+        assertTrue(System.nanoTime() - started < 5_000_000_000L);
+        verify(outbox).markSent(List.of("o1"));
+        verify(outbox).release(eq(List.of("o2", "o3")), any());
+        assertEquals(1.0, meterRegistry.counter("outbox.relay.events", "outcome", "sent").count());
+        assertEquals(2.0, meterRegistry.counter("outbox.relay.events", "outcome", "failed").count());
+    }
+
+    @Test
+    void testPublish_RetriesLaterRowsOfFailedKey() throws Exception {
+        // Given
+        List<OutboxEvent> batch = List.of(row("o1", "sub1"), row("o2", "sub2"), row("o3", "sub1"));
+        when(producer.send("payment-events", "sub1", batch.get(0).getEvent()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker unavailable")));
+        when(producer.send("payment-events", "sub2", batch.get(1).getEvent())).thenReturn(acked());
+        when(producer.send("payment-events", "sub1", batch.get(2).getEvent())).thenReturn(acked());
+
+        // When
+        relay.publish(batch);
+
+        // Then: o3 was acknowledged but must not overtake o1, so both go back to the outbox
+        verify(outbox).markSent(List.of("o2"));
+        verify(outbox).release(eq(List.of("o1", "o3")), anyString());
+    }
+
+    @Test
+    void testInit_RejectsLockShorterThanSendTimeout() {
+        // Given
+        OutboxRelay misconfigured = new OutboxRelay(outbox, producer, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(misconfigured, "sendTimeoutMs", 30_000L);
+        ReflectionTestUtils.setField(misconfigured, "lockSeconds", 30L);
+
+        // When & Then
+        assertThrows(IllegalStateException.class, misconfigured::init);
+    }
+
+    private static CompletableFuture<SendResult<String, PaymentEvent>> acked() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static OutboxEvent row(String id, String subscriptionId) {
+        return OutboxEvent.builder()
+            .id(id)
+            .topic("payment-events")
+            .messageKey(subscriptionId)
+            .event(PaymentEvent.builder().eventType("PAYMENT_SUCCESS").paymentId("pay_" + id).subscriptionId(subscriptionId).build())
+            .status(OutboxStatus.PENDING)
+            .attempts(1)
+            .createdAt(Instant.now())
+            .build();
+    }
+}
@@ -0,0 +1,206 @@
+package com.subnex.payment.kafka;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.OutboxStatus;
+import com.subnex.payment.model.OutboxEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@DataMongoTest
+@Import({PaymentEventOutbox.class, MongoIndexVerifier.class})
+@TestPropertySource(properties = "payments.outbox.backoff-seconds=0")
+class PaymentEventOutboxTest {
+
+    @Autowired
+    private PaymentEventOutbox outbox;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.remove(new Query(), OutboxEvent.class);
+    }
+
+    @Test
+    void testClaimedBatchIsNotClaimedAgain() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+        outbox.append(event("sub2", "PAYMENT_FAILED"));
+
+        // When
+        List<OutboxEvent> first = outbox.claimBatch(10);
+        List<OutboxEvent> second = outbox.claimBatch(10);
+
+        // Then
+        assertEquals(2, first.size());
+        assertEquals("sub1", first.get(0).getMessageKey());
+        assertEquals(1, first.get(0).getAttempts());
+        assertTrue(second.isEmpty());
+        assertEquals(2, outbox.depth());
+    }
+
+    @Test
+    void testKeyedAppendQueuesOnce() {
+        // When
+        boolean first = outbox.append(event("sub1", "PAYMENT_SUCCESS"), "pay1:SUCCESS:1");
+        boolean again = outbox.append(event("sub1", "PAYMENT_SUCCESS"), "pay1:SUCCESS:1");
+        boolean reentered = outbox.append(event("sub1", "PAYMENT_SUCCESS"), "pay1:SUCCESS:3");
+
+        // Then
+        assertTrue(first);
+        assertFalse(again);
+        assertTrue(reentered);
+        assertEquals(2, outbox.depth());
+    }
+
+    @Test
+    void testSentRowsLeaveTheOutbox() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+        List<OutboxEvent> batch = outbox.claimBatch(10);
+
+        // When
+        outbox.markSent(batch.stream().map(OutboxEvent::getId).toList());
+
+        // Then
+        OutboxEvent stored = mongoTemplate.findById(batch.get(0).getId(), OutboxEvent.class);
+        assertEquals(OutboxStatus.SENT, stored.getStatus());
+        assertNotNull(stored.getExpireAt());
+        assertEquals(0, outbox.depth());
+    }
+
+    @Test
+    void testReleasedRowsAreClaimedAgain() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+        List<OutboxEvent> batch = outbox.claimBatch(10);
+
+        // When
+        outbox.release(batch.stream().map(OutboxEvent::getId).toList(), "broker unavailable");
+        List<OutboxEvent> retried = outbox.claimBatch(10);
+
+        // Then
+        assertEquals(1, retried.size());
+        assertEquals(2, retried.get(0).getAttempts());
+        assertEquals("PAYMENT_SUCCESS", retried.get(0).getEvent().getEventType());
+    }
+
+    @Test
+    void testBatchSizeIsRespected() {
+        // Given
+        for (int i = 0; i < 5; i++) {
+            outbox.append(event("sub" + i, "PAYMENT_SUCCESS"));
+        }
+
+        // When
+        List<OutboxEvent> batch = outbox.claimBatch(3);
+
+        // Then
+        assertEquals(3, batch.size());
+        assertEquals(2, outbox.claimBatch(3).size());
+    }
+
+    @Test
+    void testLaterRowOfKeyWaitsForEarlierInFlightRow() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_PENDING"));
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+        outbox.append(event("sub2", "PAYMENT_FAILED"));
+        List<OutboxEvent> first = outbox.claimBatch(1);
+
+        // When
+        List<OutboxEvent> second = outbox.claimBatch(10);
+
+        // Then
+        assertEquals("PAYMENT_PENDING", first.get(0).getEvent().getEventType());
+        assertEquals(1, second.size());
+        assertEquals("sub2", second.get(0).getMessageKey());
+
+        // When
+        outbox.markSent(first.stream().map(OutboxEvent::getId).toList());
+        List<OutboxEvent> third = outbox.claimBatch(10);
+
+        // Then
+        assertEquals(1, third.size());
+        assertEquals("PAYMENT_SUCCESS", third.get(0).getEvent().getEventType());
+    }
+
+    @Test
+    void testBatchKeepsAppendOrderWithinKey() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_PENDING"));
+        outbox.append(event("sub2", "PAYMENT_PENDING"));
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+
+        // When
+        List<OutboxEvent> batch = outbox.claimBatch(10);
+
+        // Then
+        assertEquals(List.of("PAYMENT_PENDING", "PAYMENT_PENDING", "PAYMENT_SUCCESS"),
+            batch.stream().map(row -> row.getEvent().getEventType()).toList());
+        assertEquals(List.of("sub1", "sub2", "sub1"), batch.stream().map(OutboxEvent::getMessageKey).toList());
+    }
+
+    @Test
+    void testClaimYieldsRowsBehindAnotherRelaysClaim() {
+        // Given
+        outbox.append(event("sub1", "PAYMENT_PENDING"));
+        outbox.append(event("sub1", "PAYMENT_SUCCESS"));
+        String earlierId = outbox.claimBatch(10).get(0).getId();
+        mongoTemplate.updateMulti(new Query(), new Update().set("availableAt", Instant.now()).unset("claimToken")
+            .set("attempts", 0), OutboxEvent.class);
+
+        // Another relay claims the earlier row between this relay's candidate read and its claim
+        MongoTemplate template = spy(mongoTemplate);
+        doAnswer(invocation -> {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(earlierId)),
+                new Update().set("claimToken", "other-relay").set("availableAt", Instant.now().plusSeconds(60)),
+                OutboxEvent.class);
+            return invocation.callRealMethod();
+        }).doCallRealMethod().when(template).updateMulti(any(Query.class), any(Update.class), eq(OutboxEvent.class));
+        PaymentEventOutbox racing = new PaymentEventOutbox(template);
+        ReflectionTestUtils.setField(racing, "lockSeconds", 60L);
+
+        // When
+        List<OutboxEvent> claimed = racing.claimBatch(10);
+
+        // Then
+        assertTrue(claimed.isEmpty());
+        OutboxEvent later = mongoTemplate.findOne(new Query(Criteria.where("_id").ne(earlierId)), OutboxEvent.class);
+        assertNull(later.getClaimToken());
+        assertEquals(0, later.getAttempts());
+        assertEquals("other-relay", mongoTemplate.findById(earlierId, OutboxEvent.class).getClaimToken());
+    }
+
+    private static PaymentEvent event(String subscriptionId, String eventType) {
+        return PaymentEvent.builder()
+            .eventType(eventType)
+            .subscriptionId(subscriptionId)
+            .userId("user1")
+            .amount(9999L)
+            .currency("USD")
+            .timestamp(LocalDateTime.now())
+            .build();
+    }
+}
@@ -0,0 +1,99 @@
+package com.subnex.payment.kafka;
+
+import com.subnex.payment.config.KafkaProducerConfig;
+import com.subnex.payment.dto.PaymentEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringJUnitConfig({KafkaProducerConfig.class, PaymentEventProducer.class, PaymentEventProducerLoadTest.Metrics.class})
+@EmbeddedKafka(partitions = 6, topics = PaymentEventOutbox.TOPIC)
+@TestPropertySource(properties = {
+    "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+    "payments.kafka.producer.compression-type=zstd"
+})
+class PaymentEventProducerLoadTest {
+
+    private static final int EVENTS = 20_000;
+    private static final int SUBSCRIPTIONS = 500;
+
+    @Autowired
+    private PaymentEventProducer producer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testKeyedEventsStayOrderedPerSubscriptionUnderLoad(TestReporter reporter) throws Exception {
+        // Given
+        List<CompletableFuture<SendResult<String, PaymentEvent>>> acks = new ArrayList<>(EVENTS);
+        long started = System.nanoTime();
+
+        // When
+        for (int i = 0; i < EVENTS; i++) {
+            String subscriptionId = "sub" + (i % SUBSCRIPTIONS);
+            acks.add(producer.send(PaymentEventOutbox.TOPIC, subscriptionId, event(subscriptionId, i)));
+        }
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(60, TimeUnit.SECONDS);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        // Then: throughput depends on the machine, so it is reported rather than asserted
+        reporter.publishEntry("eventsPerSecond", String.valueOf(Math.round(EVENTS / seconds)));
+
+        // Every subscription stays on one partition and its events are appended in send order
+        Map<String, Integer> partitions = new HashMap<>();
+        Map<String, Long> lastOffsets = new HashMap<>();
+        for (CompletableFuture<SendResult<String, PaymentEvent>> ack : acks) {
+            SendResult<String, PaymentEvent> result = ack.get();
+            String key = result.getProducerRecord().key();
+            RecordMetadata metadata = result.getRecordMetadata();
+            assertEquals(partitions.computeIfAbsent(key, k -> metadata.partition()), metadata.partition());
+            Long previous = lastOffsets.put(key, metadata.offset());
+            assertTrue(previous == null || metadata.offset() > previous);
+        }
+        assertEquals(SUBSCRIPTIONS, partitions.size());
+
+        assertNotNull(meterRegistry.find("kafka.producer.record.send.rate").meter());
+        assertNotNull(meterRegistry.find("kafka.producer.batch.size.avg").meter());
+        assertNotNull(meterRegistry.find("kafka.producer.request.latency.avg").meter());
+    }
+
+    private static PaymentEvent event(String subscriptionId, long sequence) {
+        return PaymentEvent.builder()
+            .eventType(sequence % 2 == 0 ? "PAYMENT_FAILED" : "PAYMENT_SUCCESS")
+            .subscriptionId(subscriptionId)
+            .userId("user-" + subscriptionId)
+            .amount(sequence)
+            .currency("INR")
+            .timestamp(LocalDateTime.now())
+            .build();
+    }
+
+    @Configuration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.subnex.payment.repository;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.model.Payment;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import(MongoIndexVerifier.class)
+class PaymentIndexTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 50; i++) {
+            paymentRepository.save(Payment.builder()
+                    .userId("user" + (i % 5))
+                    .subscriptionId("sub" + (i % 10))
+                    .stripePaymentIntentId("pi_test" + i)
+                    .amount(9999L)
+                    .currency("USD")
+                    .status(PaymentStatus.INITIATED)
+                    .type(PaymentType.RENEWAL)
+                    .createdAt(LocalDateTime.now().minusDays(i))
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void testWebhookLookupUsesUniqueIndex() {
+        // When
+        Document explain = mongoTemplate.getCollection("payments")
+                .find(new Document("stripePaymentIntentId", "pi_test7")).explain();
+
+        // Then
+        List<String> stages = winningPlanStages(explain);
+        assertTrue(stages.contains("IXSCAN") || stages.contains("EXPRESS_IXSCAN"), "expected index scan but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"));
+    }
+
+    @Test
+    void testDuplicatePaymentIntentIdRejected() {
+        // Given
+        Payment duplicate = Payment.builder()
+                .userId("user1")
+                .subscriptionId("sub1")
+                .stripePaymentIntentId("pi_test3")
+                .build();
+
+        // When & Then
+        assertThrows(DuplicateKeyException.class, () -> paymentRepository.save(duplicate));
+    }
+
+    @Test
+    void testSubscriptionHistoryUsesCompoundIndex() {
+        // When
+        Document explain = mongoTemplate.getCollection("payments")
+                .find(new Document("subscriptionId", "sub3"))
+                .sort(new Document("createdAt", 1))
+                .explain();
+
+        // Then
+        List<String> stages = winningPlanStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected index scan but got " + stages);
+        assertFalse(stages.contains("SORT"), "sort should be provided by the index");
+    }
+
+    @Test
+    void testFindByUserIdUsesIndex() {
+        // When
+        Document explain = mongoTemplate.getCollection("payments")
+                .find(new Document("userId", "user2")).explain();
+
+        // Then
+        List<String> stages = winningPlanStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected index scan but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"));
+    }
+
+    private static List<String> winningPlanStages(Document explain) {
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages);
+        return stages;
+    }
+
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -30,10 +30,10 @@ class PaymentRepositoryTest {
                 .userId("user123")
                 .userEmail("test@example.com")
                 .subscriptionId("sub123")
-                .amount(99.99)
+                .amount(9999L)
                 .currency("USD")
                 .status(PaymentStatus.SUCCESS)
-                .paymentType(PaymentType.SUBSCRIPTION)
+                .type(PaymentType.RENEWAL)
                 .stripePaymentIntentId("pi_test123")
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -42,10 +42,10 @@ class PaymentRepositoryTest {
                 .userId("user123")
                 .userEmail("test@example.com")
                 .subscriptionId("sub124")
-                .amount(199.99)
+                .amount(19999L)
                 .currency("USD")
                 .status(PaymentStatus.FAILED)
-                .paymentType(PaymentType.SUBSCRIPTION)
+                .type(PaymentType.RENEWAL)
                 .stripePaymentIntentId("pi_test124")
                 .createdAt(LocalDateTime.now())
                 .build();
@@ -100,7 +100,7 @@ class PaymentRepositoryTest {
         // Then
         assertTrue(payment.isPresent());
         assertEquals("pi_test123", payment.get().getStripePaymentIntentId());
-        assertEquals(99.99, payment.get().getAmount());
+        assertEquals(9999L, payment.get().getAmount());
     }
 
     @Test
@@ -119,10 +119,10 @@ class PaymentRepositoryTest {
                 .userId("user456")
                 .userEmail("newuser@example.com")
                 .subscriptionId("sub456")
-                .amount(299.99)
+                .amount(29999L)
                 .currency("EUR")
                 .status(PaymentStatus.PENDING)
-                .paymentType(PaymentType.SUBSCRIPTION)
+                .type(PaymentType.RENEWAL)
                 .stripePaymentIntentId("pi_test456")
                 .createdAt(LocalDateTime.now())
                 .build();
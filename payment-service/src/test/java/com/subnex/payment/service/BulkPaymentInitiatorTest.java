@@ -0,0 +1,150 @@
+package com.subnex.payment.service;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.model.PaymentIntent;
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.dto.PaymentInitiationResult;
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@DataMongoTest
+@Import({BulkPaymentInitiator.class, MongoIndexVerifier.class, BulkPaymentInitiatorTest.Metrics.class})
+@TestPropertySource(properties = {"payments.bulk.chunk-size=10", "payments.bulk.concurrency=4"})
+class BulkPaymentInitiatorTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private BulkPaymentInitiator bulkPaymentInitiator;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private PaymentProcessorService paymentProcessorService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // Stripe hands back the same intent for a repeated idempotency key
+        when(paymentProcessorService.createPaymentIntent(any(PaymentRequest.class), anyString()))
+            .thenAnswer(invocation -> {
+                String key = invocation.getArgument(1);
+                if (key.equals("renewal:sub7")) {
+                    throw new ApiConnectionException("Connection reset");
+                }
+                PaymentIntent paymentIntent = mock(PaymentIntent.class);
+                when(paymentIntent.getId()).thenReturn("pi_" + key);
+                when(paymentIntent.getClientSecret()).thenReturn("secret_" + key);
+                return paymentIntent;
+            });
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void testFailedItemDoesNotFailItsChunk() {
+        // Given
+        List<PaymentRequest> requests = requests(25);
+
+        // When
+        List<List<PaymentInitiationResult>> chunks = initiate(requests);
+
+        // Then
+        assertEquals(List.of(10, 10, 5), chunks.stream().map(List::size).toList());
+        List<PaymentInitiationResult> results = chunks.stream().flatMap(List::stream)
+            .sorted(Comparator.comparingInt(PaymentInitiationResult::getIndex)).toList();
+        assertEquals(IntStream.range(0, 25).boxed().toList(), results.stream().map(PaymentInitiationResult::getIndex).toList());
+
+        PaymentInitiationResult failed = results.get(7);
+        assertFalse(failed.isCreated());
+        assertEquals("renewal:sub7", failed.getIdempotencyKey());
+        assertEquals("Connection reset", failed.getError());
+        assertTrue(failed.isRetryable());
+        assertNull(failed.getPayment());
+
+        assertEquals(24, results.stream().filter(PaymentInitiationResult::isCreated).count());
+        assertEquals(24, paymentRepository.count());
+        PaymentInitiationResult created = results.get(3);
+        assertEquals("sub3", created.getPayment().getSubscriptionId());
+        assertEquals("pi_renewal:sub3", created.getPayment().getStripePaymentIntentId());
+        assertTrue(paymentRepository.findById(created.getPayment().getId()).isPresent());
+        assertEquals(24.0, meterRegistry.counter("payments.bulk.items", "outcome", "created").count());
+        assertEquals(1.0, meterRegistry.counter("payments.bulk.items", "outcome", "failed").count());
+    }
+
+    @Test
+    void testRerunReportsAlreadyStoredPayments() {
+        // Given
+        List<PaymentRequest> requests = requests(12);
+        List<PaymentInitiationResult> first = initiate(requests).stream().flatMap(List::stream).toList();
+
+        // When
+        List<PaymentInitiationResult> second = initiate(requests).stream().flatMap(List::stream).toList();
+
+        // Then
+        assertEquals(11, paymentRepository.count());
+        assertEquals(11, second.stream().filter(PaymentInitiationResult::isCreated).count());
+        for (PaymentInitiationResult result : second) {
+            if (result.isCreated()) {
+                PaymentInitiationResult original = first.stream()
+                    .filter(candidate -> candidate.getIndex() == result.getIndex()).findFirst().orElseThrow();
+                assertEquals(original.getPayment().getId(), result.getPayment().getId());
+            }
+        }
+    }
+
+    private List<List<PaymentInitiationResult>> initiate(List<PaymentRequest> requests) {
+        List<List<PaymentInitiationResult>> chunks = new ArrayList<>();
+        bulkPaymentInitiator.initiate(requests, chunks::add);
+        return chunks;
+    }
+
+    private List<PaymentRequest> requests(int count) {
+        List<PaymentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PaymentRequest request = new PaymentRequest();
+            request.setSubscriptionId("sub" + i);
+            request.setUserId("user" + i);
+            request.setUserEmail("user" + i + "@example.com");
+            request.setAmount(49900L);
+            request.setType(PaymentType.RENEWAL);
+            request.setIdempotencyKey("renewal:sub" + i);
+            requests.add(request);
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,161 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.dto.PaymentRequest;
+import com.subnex.payment.dto.PaymentResponse;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.model.IdempotencyRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import({IdempotencyService.class, MongoIndexVerifier.class})
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.remove(new Query(), IdempotencyRecord.class);
+    }
+
+    @Test
+    void testRepeatReturnsStoredResponse() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        PaymentRequest request = request(799900L);
+
+        // When
+        PaymentResponse first = idempotencyService.execute("key-1", request, () -> response("pay_" + calls.incrementAndGet()));
+        PaymentResponse second = idempotencyService.execute("key-1", request, () -> response("pay_" + calls.incrementAndGet()));
+
+        // Then
+        assertEquals(1, calls.get());
+        assertEquals("pay_1", first.getId());
+        assertEquals("pay_1", second.getId());
+        IdempotencyRecord stored = mongoTemplate.findById("key-1", IdempotencyRecord.class);
+        assertEquals(IdempotencyRecord.COMPLETED, stored.getStatus());
+        assertNotNull(stored.getExpireAt());
+    }
+
+    @Test
+    void testConcurrentDuplicateWaitsForFirstCall() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PaymentRequest request = request(799900L);
+
+        CompletableFuture<PaymentResponse> first = CompletableFuture.supplyAsync(() ->
+            idempotencyService.execute("key-2", request, () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return response("pay_first");
+            }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        CompletableFuture<PaymentResponse> duplicate = CompletableFuture.supplyAsync(() ->
+            idempotencyService.execute("key-2", request, () -> response("pay_" + calls.incrementAndGet())));
+        release.countDown();
+
+        // Then
+        assertEquals("pay_first", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("pay_first", duplicate.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testKeyReusedWithDifferentRequestIsRejected() {
+        // Given
+        idempotencyService.execute("key-3", request(799900L), () -> response("pay_1"));
+
+        // When
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () ->
+            idempotencyService.execute("key-3", request(100L), () -> response("pay_2")));
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+    }
+
+    @Test
+    void testConcurrentDuplicateWithDifferentRequestIsRejected() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<PaymentResponse> first = CompletableFuture.supplyAsync(() ->
+            idempotencyService.execute("key-5", request(799900L), () -> {
+                started.countDown();
+                await(release);
+                return response("pay_first");
+            }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () ->
+            idempotencyService.execute("key-5", request(100L), () -> response("pay_second")));
+        release.countDown();
+
+        // Then
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        assertEquals("pay_first", first.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void testFailedCallReleasesKeyForRetry() {
+        // Given
+        PaymentRequest request = request(799900L);
+        assertThrows(RuntimeException.class, () ->
+            idempotencyService.execute("key-4", request, () -> {
+                throw new RuntimeException("Failed to create payment: card_declined");
+            }));
+
+        // When
+        PaymentResponse retried = idempotencyService.execute("key-4", request, () -> response("pay_retry"));
+
+        // Then
+        assertEquals("pay_retry", retried.getId());
+    }
+
+    private static PaymentRequest request(Long amount) {
+        PaymentRequest request = new PaymentRequest();
+        request.setSubscriptionId("sub123");
+        request.setUserId("user123");
+        request.setUserEmail("test@example.com");
+        request.setAmount(amount);
+        request.setCurrency("INR");
+        request.setType(PaymentType.RENEWAL);
+        return request;
+    }
+
+    private static PaymentResponse response(String id) {
+        return PaymentResponse.builder().id(id).subscriptionId("sub123").build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.dto.PaymentHistoryPage;
+import com.subnex.payment.dto.PaymentSummary;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.model.Payment;
+import com.subnex.payment.repository.PaymentRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import({PaymentHistoryService.class, MongoIndexVerifier.class})
+@TestPropertySource(properties = "payments.history.max-page-size=20")
+class PaymentHistoryServiceTest {
+
+    @Autowired
+    private PaymentHistoryService paymentHistoryService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 50; i++) {
+            paymentRepository.save(payment("user1", "sub" + (i % 2), "pi_" + i, now.minusDays(i)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void testPagesThroughUserHistoryNewestFirst() {
+        // When
+        List<PaymentSummary> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaymentHistoryPage page = paymentHistoryService.forUser("user1", cursor, 20);
+            seen.addAll(page.getItems());
+            pageSizes.add(page.getItems().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Then
+        assertEquals(List.of(20, 20, 10), pageSizes);
+        assertEquals(50, seen.stream().map(PaymentSummary::getId).distinct().count());
+        for (int i = 1; i < seen.size(); i++) {
+            assertTrue(seen.get(i - 1).getCreatedAt().isAfter(seen.get(i).getCreatedAt()));
+        }
+    }
+
+    @Test
+    void testEntriesSharingCreatedAtAreNotSkippedOrRepeated() {
+        // Given
+        LocalDateTime sameInstant = now.plusDays(1);
+        for (int i = 0; i < 5; i++) {
+            paymentRepository.save(payment("user2", "sub9", "pi_tie" + i, sameInstant));
+        }
+
+        // When
+        Set<String> ids = new HashSet<>();
+        int pages = 0;
+        String cursor = null;
+        do {
+            PaymentHistoryPage page = paymentHistoryService.forUser("user2", cursor, 2);
+            page.getItems().forEach(item -> assertTrue(ids.add(item.getId())));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Then
+        assertEquals(5, ids.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testSubscriptionHistoryAndPageSizeCap() {
+        // When
+        PaymentHistoryPage page = paymentHistoryService.forSubscription("sub0", null, 1000);
+
+        // Then
+        assertEquals(20, page.getItems().size());
+        assertTrue(page.getItems().stream().allMatch(item -> "sub0".equals(item.getSubscriptionId())));
+        assertNotNull(page.getNextCursor());
+        assertEquals(5, paymentHistoryService.forSubscription("sub0", page.getNextCursor(), 1000).getItems().size());
+    }
+
+    @Test
+    void testInvalidCursorRejected() {
+        // When & Then
+        assertThrows(ResponseStatusException.class, () -> paymentHistoryService.forUser("user1", "not-a-cursor", 10));
+    }
+
+    @Test
+    void testKeysetPageIsServedByIndexWithoutSort() {
+        // When
+        Document explain = mongoTemplate.getCollection("payments")
+            .find(new Document("userId", "user1").append("$or", List.of(
+                new Document("createdAt", new Document("$lt", now.minusDays(10))),
+                new Document("createdAt", now.minusDays(10)).append("_id", new Document("$lt", "ffffffffffffffffffffffff")))))
+            .sort(new Document("createdAt", -1).append("_id", -1))
+            .limit(21)
+            .explain();
+
+        // Then
+        String plan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(plan.contains("IXSCAN"), "expected index scan but got " + plan);
+        assertFalse(plan.contains("\"SORT\""), "sort should be provided by the index: " + plan);
+    }
+
+    private static Payment payment(String userId, String subscriptionId, String intentId, LocalDateTime createdAt) {
+        return Payment.builder()
+            .userId(userId)
+            .subscriptionId(subscriptionId)
+            .stripePaymentIntentId(intentId)
+            .clientSecret(intentId + "_secret")
+            .amount(9999L)
+            .currency("USD")
+            .status(PaymentStatus.SUCCESS)
+            .type(PaymentType.RENEWAL)
+            .attempt(1)
+            .createdAt(createdAt)
+            .build();
+    }
+}
@@ -6,7 +6,7 @@ import com.subnex.payment.dto.PaymentRequest;
 import com.subnex.payment.dto.PaymentResponse;
 import com.subnex.payment.enums.PaymentStatus;
 import com.subnex.payment.enums.PaymentType;
-import com.subnex.payment.kafka.PaymentEventProducer;
+import com.subnex.payment.kafka.PaymentEventOutbox;
 import com.subnex.payment.model.Payment;
 import com.subnex.payment.repository.PaymentRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,6 +15,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
 
 import java.time.LocalDateTime;
 
@@ -22,6 +23,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,11 +33,17 @@ class PaymentProcessorServiceTest {
     @Mock
     private StripePaymentService stripePaymentService;
 
+    @Mock
+    private StripeCustomerService stripeCustomerService;
+
     @Mock
     private PaymentRepository paymentRepository;
 
     @Mock
-    private PaymentEventProducer paymentEventProducer;
+    private PaymentEventOutbox paymentEventOutbox;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
 
     @InjectMocks
     private PaymentProcessorService paymentProcessorService;
@@ -44,32 +53,32 @@ class PaymentProcessorServiceTest {
     private Payment testPayment;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws StripeException {
         testRequest = new PaymentRequest();
         testRequest.setUserId("user123");
         testRequest.setUserEmail("test@example.com");
         testRequest.setSubscriptionId("sub123");
-        testRequest.setAmount(9999.0);
+        testRequest.setAmount(9999L);
         testRequest.setCurrency("USD");
-        testRequest.setPaymentType(PaymentType.SUBSCRIPTION);
+        testRequest.setType(PaymentType.INITIAL);
 
         mockPaymentIntent = mock(PaymentIntent.class);
-        when(mockPaymentIntent.getId()).thenReturn("pi_test123");
-        when(mockPaymentIntent.getClientSecret()).thenReturn("secret_test123");
-        when(mockPaymentIntent.getAmount()).thenReturn(9999L);
-        when(mockPaymentIntent.getCurrency()).thenReturn("usd");
-        when(mockPaymentIntent.getStatus()).thenReturn("requires_payment_method");
+        lenient().when(mockPaymentIntent.getId()).thenReturn("pi_test123");
+        lenient().when(mockPaymentIntent.getClientSecret()).thenReturn("secret_test123");
+        lenient().when(mockPaymentIntent.getStatus()).thenReturn("requires_payment_method");
+        lenient().when(stripeCustomerService.customerIdFor("user123", "test@example.com")).thenReturn("cus_user123");
 
         testPayment = Payment.builder()
                 .id("payment123")
                 .userId("user123")
                 .userEmail("test@example.com")
                 .subscriptionId("sub123")
-                .amount(99.99)
+                .amount(9999L)
                 .currency("USD")
                 .status(PaymentStatus.PENDING)
-                .paymentType(PaymentType.SUBSCRIPTION)
+                .type(PaymentType.INITIAL)
                 .stripePaymentIntentId("pi_test123")
+                .clientSecret("secret_test123")
                 .createdAt(LocalDateTime.now())
                 .build();
     }
@@ -77,33 +86,33 @@ class PaymentProcessorServiceTest {
     @Test
     void testCreatePaymentIntent_Success() throws StripeException {
         // Given
-        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString()))
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123")))
                 .thenReturn(mockPaymentIntent);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
         // When
-        PaymentResponse response = paymentProcessorService.createPaymentIntent(testRequest);
+        PaymentResponse response = paymentProcessorService.initiatePayment(testRequest);
 
         // Then
         assertNotNull(response);
-        assertEquals("pi_test123", response.getPaymentIntentId());
+        assertEquals("pi_test123", response.getStripePaymentIntentId());
         assertEquals("secret_test123", response.getClientSecret());
-        verify(stripePaymentService, times(1)).createPaymentIntent(anyLong(), anyString(), anyString(), anyString());
+        verify(stripePaymentService, times(1)).createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123"));
         verify(paymentRepository, times(1)).save(any(Payment.class));
     }
 
     @Test
     void testCreatePaymentIntent_StripeException() throws StripeException {
         // Given
-        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString()))
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123")))
                 .thenThrow(new StripeException("Stripe API error", "request_id", "code", 400) {});
 
         // When & Then
         assertThrows(RuntimeException.class, () -> {
-            paymentProcessorService.createPaymentIntent(testRequest);
+            paymentProcessorService.initiatePayment(testRequest);
         });
 
-        verify(stripePaymentService, times(1)).createPaymentIntent(anyLong(), anyString(), anyString(), anyString());
+        verify(stripePaymentService, times(1)).createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123"));
         verify(paymentRepository, never()).save(any(Payment.class));
     }
 
@@ -111,35 +120,34 @@ class PaymentProcessorServiceTest {
     void testCreatePaymentIntent_WithDifferentCurrency() throws StripeException {
         // Given
         testRequest.setCurrency("INR");
-        testRequest.setAmount(799900.0);
+        testRequest.setAmount(799900L);
 
-        when(mockPaymentIntent.getCurrency()).thenReturn("inr");
-        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString()))
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123")))
                 .thenReturn(mockPaymentIntent);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
         // When
-        PaymentResponse response = paymentProcessorService.createPaymentIntent(testRequest);
+        PaymentResponse response = paymentProcessorService.initiatePayment(testRequest);
 
         // Then
         assertNotNull(response);
-        assertEquals("pi_test123", response.getPaymentIntentId());
-        verify(stripePaymentService, times(1)).createPaymentIntent(799900L, "INR", "sub123", "test@example.com");
+        assertEquals("pi_test123", response.getStripePaymentIntentId());
+        verify(stripePaymentService, times(1)).createPaymentIntent(799900L, "INR", "sub123", "test@example.com", null, "cus_user123");
     }
 
     @Test
     void testCreatePaymentIntent_WithZeroAmount() throws StripeException {
         // Given
-        testRequest.setAmount(0.0);
+        testRequest.setAmount(0L);
 
         // When & Then - This should ideally validate and throw an exception
-        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString()))
+        when(stripePaymentService.createPaymentIntent(anyLong(), anyString(), anyString(), anyString(), isNull(), eq("cus_user123")))
                 .thenReturn(mockPaymentIntent);
         when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
 
-        PaymentResponse response = paymentProcessorService.createPaymentIntent(testRequest);
+        PaymentResponse response = paymentProcessorService.initiatePayment(testRequest);
         
         assertNotNull(response);
-        verify(stripePaymentService, times(1)).createPaymentIntent(0L, "USD", "sub123", "test@example.com");
+        verify(stripePaymentService, times(1)).createPaymentIntent(0L, "USD", "sub123", "test@example.com", null, "cus_user123");
     }
 }
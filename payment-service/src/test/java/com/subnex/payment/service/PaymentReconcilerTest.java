@@ -0,0 +1,264 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.kafka.PaymentEventOutbox;
+import com.subnex.payment.model.Payment;
+import com.subnex.payment.model.ReconciliationCheckpoint;
+import com.subnex.payment.repository.PaymentRepository;
+import com.subnex.payment.stripe.StripeStubServer;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the reconciler against Mongo and a local HTTP stub standing in for api.stripe.com.
+ */
+@DataMongoTest
+@Import({PaymentReconciler.class, PaymentProcessorService.class, MongoIndexVerifier.class, PaymentReconcilerTest.StripeStub.class})
+@TestPropertySource(properties = {
+    "stripe.retrieve.cache-ttl-ms=0",
+    "payments.reconciliation.page-size=2",
+    "payments.reconciliation.rate-per-second=20",
+    "payments.reconciliation.burst=1"
+})
+@ResourceLock(StripeStubServer.STRIPE_GLOBALS)
+class PaymentReconcilerTest {
+
+    @TestConfiguration
+    static class StripeStub {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        StripePaymentService stripePaymentService(MeterRegistry meterRegistry) {
+            return new StripePaymentService(StripeStubServer.guard(meterRegistry), meterRegistry);
+        }
+    }
+
+    @Autowired
+    private PaymentReconciler paymentReconciler;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @MockBean
+    private PaymentEventOutbox paymentEventOutbox;
+
+    @MockBean
+    private StripeCustomerService stripeCustomerService;
+
+    @RegisterExtension
+    final StripeStubServer stripe = new StripeStubServer().route("/v1/payment_intents/", this::handle);
+
+    // Stripe-side status per intent; "declined" stands for requires_payment_method after a failed attempt
+    private final Map<String, String> stripeStatus = new ConcurrentHashMap<>();
+    private final Set<String> outage = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final LocalDateTime stuckSince = LocalDateTime.now().minusHours(2);
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(PaymentReconciler.CHECKPOINT_ID)),
+            new Update().unset("lastUpdatedAt").unset("lastPaymentId").set("lockedUntil", Instant.EPOCH),
+            ReconciliationCheckpoint.class);
+    }
+
+    @Test
+    void testAppliesStripeStatusToStuckPayments() {
+        // Given
+        stuck("pi_paid", PaymentStatus.INITIATED, 0, "succeeded");
+        stuck("pi_declined", PaymentStatus.PROCESSING, 1, "declined");
+        stuck("pi_unpaid", PaymentStatus.INITIATED, 2, "requires_payment_method");
+        stuck("pi_settled", PaymentStatus.SUCCESS, 3, "succeeded");
+        payment("pi_recent", PaymentStatus.INITIATED, LocalDateTime.now(), "succeeded");
+
+        // When
+        PaymentReconciler.Result result = paymentReconciler.reconcile();
+
+        // Then
+        assertEquals(new PaymentReconciler.Result(3, 2, 0, true), result);
+        assertEquals(PaymentStatus.SUCCESS, status("pi_paid"));
+        assertEquals(PaymentStatus.FAILED, status("pi_declined"));
+        assertEquals(PaymentStatus.INITIATED, status("pi_unpaid"));
+        assertEquals(PaymentStatus.INITIATED, status("pi_recent"));
+        assertNull(hits.get("pi_settled"));
+        assertNull(hits.get("pi_recent"));
+    }
+
+    @Test
+    void testNextRunOnlyChecksNewlyStuckPayments() {
+        // Given
+        stuck("pi_1", PaymentStatus.INITIATED, 0, "requires_payment_method");
+        stuck("pi_2", PaymentStatus.PENDING, 1, "requires_action");
+        paymentReconciler.reconcile();
+
+        // When
+        PaymentReconciler.Result unchanged = paymentReconciler.reconcile();
+        stuck("pi_3", PaymentStatus.INITIATED, 2, "succeeded");
+        PaymentReconciler.Result next = paymentReconciler.reconcile();
+
+        // Then
+        assertEquals(0, unchanged.checked());
+        assertEquals(1, next.checked());
+        assertEquals(1, hits.get("pi_1").get());
+        assertEquals(1, hits.get("pi_2").get());
+        assertEquals(PaymentStatus.SUCCESS, status("pi_3"));
+    }
+
+    @Test
+    void testStripeOutageStopsRunAndLaterRunResumes() {
+        // Given
+        stuck("pi_a", PaymentStatus.INITIATED, 0, "succeeded");
+        stuck("pi_b", PaymentStatus.INITIATED, 1, "succeeded");
+        stuck("pi_c", PaymentStatus.INITIATED, 2, "requires_payment_method");
+        outage.add("pi_b");
+        PaymentReconciler.Result interrupted = paymentReconciler.reconcile();
+
+        // When
+        outage.clear();
+        PaymentReconciler.Result resumed = paymentReconciler.reconcile();
+
+        // Then
+        assertFalse(interrupted.completed());
+        assertEquals(PaymentStatus.SUCCESS, status("pi_a"));
+        assertEquals(2, resumed.checked());
+        assertEquals(PaymentStatus.SUCCESS, status("pi_b"));
+        assertEquals(1, hits.get("pi_a").get());
+    }
+
+    @Test
+    void testStripeLookupsStayWithinRateBudget() {
+        // Given
+        for (int i = 0; i < 10; i++) {
+            stuck("pi_" + i, PaymentStatus.INITIATED, i, "requires_payment_method");
+        }
+
+        // When
+        long started = System.nanoTime();
+        PaymentReconciler.Result result = paymentReconciler.reconcile();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        // Then
+        assertEquals(10, result.checked());
+        assertTrue(elapsedMs >= 400, "10 lookups at 20/s took only " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testUnsettledPaymentIsCheckedAgainAfterRecheckInterval() {
+        // Given
+        stuck("pi_slow", PaymentStatus.PROCESSING, 0, "processing");
+        PaymentReconciler.Result first = paymentReconciler.reconcile();
+        stripeStatus.put("pi_slow", "succeeded");
+
+        // When
+        PaymentReconciler.Result tooSoon = paymentReconciler.reconcile();
+        recheckIntervalPassed();
+        PaymentReconciler.Result later = paymentReconciler.reconcile();
+
+        // Then
+        assertEquals(new PaymentReconciler.Result(1, 0, 0, true), first);
+        assertEquals(0, tooSoon.checked());
+        assertEquals(new PaymentReconciler.Result(1, 1, 0, true), later);
+        assertEquals(PaymentStatus.SUCCESS, status("pi_slow"));
+        assertEquals(2, hits.get("pi_slow").get());
+    }
+
+    @Test
+    void testPaymentsStuckTooLongAreNotRechecked() {
+        // Given
+        payment("pi_abandoned", PaymentStatus.INITIATED, LocalDateTime.now().minusDays(4), "requires_payment_method");
+        paymentReconciler.reconcile();
+        recheckIntervalPassed();
+
+        // When
+        PaymentReconciler.Result result = paymentReconciler.reconcile();
+
+        // Then
+        assertEquals(0, result.checked());
+        assertEquals(1, hits.get("pi_abandoned").get());
+    }
+
+    private void recheckIntervalPassed() {
+        mongoTemplate.updateMulti(new Query(Criteria.where("reconciledAt").exists(true)),
+            new Update().set("reconciledAt", LocalDateTime.now().minusHours(2)), Payment.class);
+    }
+
+    private void stuck(String paymentIntentId, PaymentStatus status, int order, String stripe) {
+        payment(paymentIntentId, status, stuckSince.plusSeconds(order), stripe);
+    }
+
+    private void payment(String paymentIntentId, PaymentStatus status, LocalDateTime updatedAt, String stripe) {
+        stripeStatus.put(paymentIntentId, stripe);
+        paymentRepository.save(Payment.builder()
+            .userId("user1")
+            .subscriptionId("sub1")
+            .stripePaymentIntentId(paymentIntentId)
+            .amount(49900L)
+            .currency("INR")
+            .status(status)
+            .type(PaymentType.RENEWAL)
+            .createdAt(updatedAt)
+            .updatedAt(updatedAt)
+            .build());
+    }
+
+    private PaymentStatus status(String paymentIntentId) {
+        return paymentRepository.findByStripePaymentIntentId(paymentIntentId).orElseThrow().getStatus();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        hits.computeIfAbsent(id, key -> new AtomicInteger()).incrementAndGet();
+
+        int code = 200;
+        String body;
+        if (outage.contains(id)) {
+            code = 500;
+            body = "{\"error\":{\"type\":\"api_error\",\"message\":\"Something went wrong\"}}";
+        } else {
+            String status = stripeStatus.get(id);
+            String lastError = "null";
+            if ("declined".equals(status)) {
+                status = "requires_payment_method";
+                lastError = "{\"type\":\"card_error\",\"code\":\"card_declined\",\"message\":\"Your card was declined.\"}";
+            }
+            body = "{\"id\":\"" + id + "\",\"object\":\"payment_intent\",\"status\":\"" + status + "\","
+                + "\"last_payment_error\":" + lastError + "}";
+        }
+        StripeStubServer.respond(exchange, code, body);
+    }
+}
@@ -0,0 +1,155 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.dto.PaymentResponse;
+import com.subnex.payment.dto.PaymentStatusUpdate;
+import com.subnex.payment.enums.PaymentStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentStatusNotifierTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PaymentStatusNotifier notifier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        notifier = new PaymentStatusNotifier(meterRegistry);
+        notifier.init();
+    }
+
+    @Test
+    void testSubscriberGetsCurrentStatusThenChanges() {
+        // Given
+        RecordingEmitter emitter = new RecordingEmitter();
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.INITIATED), emitter);
+
+        // When
+        notifier.publish("pay1", PaymentStatus.PROCESSING, null);
+        notifier.publish("pay1", PaymentStatus.SUCCESS, null);
+
+        // Then
+        assertEquals(List.of(PaymentStatus.INITIATED, PaymentStatus.PROCESSING, PaymentStatus.SUCCESS), emitter.statuses);
+        assertEquals(0, notifier.streamCount("pay1"));
+        assertEquals(0, meterRegistry.get("payments.status.streams").gauge().value());
+    }
+
+    @Test
+    void testAlreadyFinalPaymentClosesImmediately() {
+        // Given
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        // When
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.SUCCESS), emitter);
+
+        // Then
+        assertEquals(List.of(PaymentStatus.SUCCESS), emitter.statuses);
+        assertEquals(0, notifier.streamCount("pay1"));
+    }
+
+    @Test
+    void testFailedPaymentKeepsStreamOpenForRetry() {
+        // Given
+        RecordingEmitter emitter = new RecordingEmitter();
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.INITIATED), emitter);
+
+        // When
+        notifier.publish("pay1", PaymentStatus.FAILED, "Webhook status: failed");
+
+        // Then
+        assertEquals(1, notifier.streamCount("pay1"));
+        assertEquals("Webhook status: failed", emitter.updates.get(1).getFailureReason());
+    }
+
+    @Test
+    void testUpdatesOnlyReachStreamsOfThatPayment() {
+        // Given
+        RecordingEmitter first = new RecordingEmitter();
+        RecordingEmitter second = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.INITIATED), first);
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.INITIATED), second);
+        notifier.subscribe("pay2", () -> payment("pay2", PaymentStatus.INITIATED), other);
+
+        // When
+        notifier.publish("pay1", PaymentStatus.PENDING, null);
+
+        // Then
+        assertEquals(2, first.statuses.size());
+        assertEquals(2, second.statuses.size());
+        assertEquals(1, other.statuses.size());
+    }
+
+    @Test
+    void testBrokenStreamIsDropped() {
+        // Given
+        RecordingEmitter emitter = new RecordingEmitter();
+        notifier.subscribe("pay1", () -> payment("pay1", PaymentStatus.INITIATED), emitter);
+        emitter.broken = true;
+
+        // When
+        notifier.publish("pay1", PaymentStatus.PROCESSING, null);
+
+        // Then
+        assertEquals(0, notifier.streamCount("pay1"));
+    }
+
+    @Test
+    void testChangeWhileSnapshotIsReadStillReachesStream() {
+        // Given
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        // When: the webhook lands after registration but before the snapshot read returns
+        notifier.subscribe("pay1", () -> {
+            notifier.publish("pay1", PaymentStatus.PROCESSING, null);
+            return payment("pay1", PaymentStatus.PROCESSING);
+        }, emitter);
+
+        // Then
+        assertEquals(List.of(PaymentStatus.PROCESSING, PaymentStatus.PROCESSING), emitter.statuses);
+        assertEquals(1, notifier.streamCount("pay1"));
+    }
+
+    @Test
+    void testUnknownPaymentLeavesNoStream() {
+        // When & Then
+        assertThrows(RuntimeException.class, () -> notifier.subscribe("missing", () -> {
+            throw new RuntimeException("Payment not found");
+        }, new RecordingEmitter()));
+        assertEquals(0, notifier.streamCount("missing"));
+        assertEquals(0, meterRegistry.get("payments.status.streams").gauge().value());
+    }
+
+    private static PaymentResponse payment(String id, PaymentStatus status) {
+        return PaymentResponse.builder().id(id).status(status).build();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<PaymentStatusUpdate> updates = new ArrayList<>();
+        private final List<PaymentStatus> statuses = new ArrayList<>();
+        private boolean broken;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            builder.build().stream()
+                .map(DataWithMediaType::getData)
+                .filter(PaymentStatusUpdate.class::isInstance)
+                .map(PaymentStatusUpdate.class::cast)
+                .forEach(update -> {
+                    updates.add(update);
+                    statuses.add(update.getStatus());
+                });
+        }
+    }
+}
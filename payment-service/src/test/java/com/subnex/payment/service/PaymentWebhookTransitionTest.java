@@ -0,0 +1,142 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.dto.PaymentEvent;
+import com.subnex.payment.enums.PaymentStatus;
+import com.subnex.payment.enums.PaymentType;
+import com.subnex.payment.kafka.PaymentEventOutbox;
+import com.subnex.payment.model.Payment;
+import com.subnex.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DataMongoTest
+@Import(PaymentProcessorService.class)
+class PaymentWebhookTransitionTest {
+
+    @Autowired
+    private PaymentProcessorService paymentProcessorService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @MockBean
+    private PaymentEventOutbox paymentEventOutbox;
+
+    @MockBean
+    private StripeCustomerService stripeCustomerService;
+
+    @MockBean
+    private StripePaymentService stripePaymentService;
+
+    @BeforeEach
+    void setUp() {
+        paymentRepository.save(Payment.builder()
+                .userId("user1")
+                .subscriptionId("sub1")
+                .stripePaymentIntentId("pi_test1")
+                .amount(9999L)
+                .currency("USD")
+                .status(PaymentStatus.INITIATED)
+                .type(PaymentType.RENEWAL)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        paymentRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentDuplicateWebhooksPublishOnce() {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When
+        CompletableFuture.allOf(IntStream.range(0, 32)
+                .mapToObj(i -> CompletableFuture.runAsync(
+                        () -> paymentProcessorService.processPaymentWebhook("pi_test1", "succeeded"), executor))
+                .toArray(CompletableFuture[]::new)).join();
+        executor.shutdown();
+
+        // Then
+        Payment payment = paymentRepository.findByStripePaymentIntentId("pi_test1").orElseThrow();
+        assertEquals(PaymentStatus.SUCCESS, payment.getStatus());
+        assertEquals(1L, payment.getVersion()); // 0 on insert, bumped once by the single winning update
+        ArgumentCaptor<String> eventKeys = ArgumentCaptor.forClass(String.class);
+        verify(paymentEventOutbox, atLeastOnce()).append(any(PaymentEvent.class), eventKeys.capture());
+        assertEquals(Set.of(payment.getId() + ":SUCCESS:1"), Set.copyOf(eventKeys.getAllValues()));
+    }
+
+    @Test
+    void testLateProcessingWebhookDoesNotOverwriteSuccess() {
+        // Given
+        paymentProcessorService.processPaymentWebhook("pi_test1", "succeeded");
+
+        // When
+        paymentProcessorService.processPaymentWebhook("pi_test1", "processing");
+
+        // Then
+        assertEquals(PaymentStatus.SUCCESS, paymentRepository.findByStripePaymentIntentId("pi_test1").orElseThrow().getStatus());
+    }
+
+    @Test
+    void testFailedPaymentCanStillSucceed() {
+        // Given
+        paymentProcessorService.processPaymentWebhook("pi_test1", "failed");
+
+        // When
+        paymentProcessorService.processPaymentWebhook("pi_test1", "succeeded");
+
+        // Then
+        Payment payment = paymentRepository.findByStripePaymentIntentId("pi_test1").orElseThrow();
+        assertEquals(PaymentStatus.SUCCESS, payment.getStatus());
+        verify(paymentEventOutbox).append(argThat(event -> "PAYMENT_FAILED".equals(event.getEventType())), eq(payment.getId() + ":FAILED:1"));
+        verify(paymentEventOutbox).append(argThat(event -> "PAYMENT_SUCCESS".equals(event.getEventType())), eq(payment.getId() + ":SUCCESS:2"));
+    }
+
+    @Test
+    void testRedeliveredWebhookRequeuesEventLostAfterTheUpdate() {
+        // Given: the first attempt moved the payment, then died before its event reached the outbox
+        when(paymentEventOutbox.append(any(PaymentEvent.class), anyString())).thenThrow(new IllegalStateException("crashed"));
+        assertThrows(IllegalStateException.class,
+                () -> paymentProcessorService.processPaymentWebhook("pi_test1", "succeeded"));
+        reset(paymentEventOutbox);
+        when(paymentEventOutbox.append(any(PaymentEvent.class), anyString())).thenReturn(true);
+
+        // When
+        paymentProcessorService.processPaymentWebhook("pi_test1", "succeeded");
+
+        // Then
+        Payment payment = paymentRepository.findByStripePaymentIntentId("pi_test1").orElseThrow();
+        assertEquals(1L, payment.getTransitions());
+        verify(paymentEventOutbox).append(argThat(event -> "PAYMENT_SUCCESS".equals(event.getEventType())), eq(payment.getId() + ":SUCCESS:1"));
+    }
+
+    @Test
+    void testUnknownIntentStillRejected() {
+        // When & Then
+        assertThrows(RuntimeException.class,
+                () -> paymentProcessorService.processPaymentWebhook("pi_unknown", "succeeded"));
+    }
+}
@@ -0,0 +1,171 @@
+package com.subnex.payment.service;
+
+import com.subnex.payment.model.StripeCustomer;
+import com.subnex.payment.stripe.StripeCallGuard;
+import com.subnex.payment.stripe.StripeStubServer;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the customer mapping against Mongo and a local HTTP stub standing in for api.stripe.com.
+ */
+@DataMongoTest
+@Import({StripeCustomerService.class, StripeCustomerServiceTest.Guard.class})
+@ResourceLock(StripeStubServer.STRIPE_GLOBALS)
+class StripeCustomerServiceTest {
+
+    @TestConfiguration
+    static class Guard {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        StripeCallGuard stripeCallGuard(MeterRegistry meterRegistry) {
+            return StripeStubServer.guard(meterRegistry);
+        }
+    }
+
+    @Autowired
+    private StripeCustomerService stripeCustomerService;
+
+    @Autowired
+    private StripeCallGuard stripeCallGuard;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @RegisterExtension
+    final StripeStubServer stripe = new StripeStubServer()
+        .route("/v1/customers", this::createCustomer)
+        .route("/v1/payment_methods", this::listPaymentMethods);
+
+    private final AtomicInteger customersCreated = new AtomicInteger();
+    private final AtomicInteger paymentMethodLists = new AtomicInteger();
+    private final CountDownLatch releaseCreate = new CountDownLatch(1);
+    private volatile String savedCard = "pm_card_1";
+
+    @AfterEach
+    void tearDown() {
+        releaseCreate.countDown();
+        mongoTemplate.remove(new Query(), StripeCustomer.class);
+    }
+
+    @Test
+    void testConcurrentFirstPaymentsCreateOneCustomer() {
+        // Given
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+
+        // When
+        List<CompletableFuture<String>> customerIds = IntStream.range(0, 8)
+            .mapToObj(i -> CompletableFuture.supplyAsync(() -> customerIdFor("user1"), callers))
+            .toList();
+        sleep(200); // let every caller queue up behind the creation in flight
+        releaseCreate.countDown();
+
+        // Then
+        customerIds.forEach(id -> assertEquals("cus_user1", id.join()));
+        callers.shutdown();
+        assertEquals(1, customersCreated.get());
+        StripeCustomer stored = mongoTemplate.findById("user1", StripeCustomer.class);
+        assertEquals("cus_user1", stored.getCustomerId());
+    }
+
+    @Test
+    void testStoredMappingIsReusedAfterRestart() throws Exception {
+        // Given
+        releaseCreate.countDown();
+        stripeCustomerService.customerIdFor("user2", "user2@example.com");
+        StripeCustomerService restarted = new StripeCustomerService(mongoTemplate, stripeCallGuard, new SimpleMeterRegistry());
+        restarted.init();
+
+        // When
+        String customerId = restarted.customerIdFor("user2", "user2@example.com");
+
+        // Then
+        assertEquals("cus_user2", customerId);
+        assertEquals(1, customersCreated.get());
+    }
+
+    @Test
+    void testSavedCardIsListedOnceUntilForgotten() throws Exception {
+        // Given
+        releaseCreate.countDown();
+        stripeCustomerService.customerIdFor("user3", "user3@example.com");
+
+        // When
+        String first = stripeCustomerService.savedPaymentMethod("user3");
+        String second = stripeCustomerService.savedPaymentMethod("user3");
+        savedCard = "pm_card_2";
+        stripeCustomerService.forgetPaymentMethod("user3");
+        String afterDecline = stripeCustomerService.savedPaymentMethod("user3");
+
+        // Then
+        assertEquals("pm_card_1", first);
+        assertEquals("pm_card_1", second);
+        assertEquals("pm_card_2", afterDecline);
+        assertEquals(2, paymentMethodLists.get());
+        assertEquals("pm_card_2", mongoTemplate.findById("user3", StripeCustomer.class).getPaymentMethodId());
+        assertNull(stripeCustomerService.savedPaymentMethod("unknown"));
+    }
+
+    private String customerIdFor(String userId) {
+        try {
+            return stripeCustomerService.customerIdFor(userId, userId + "@example.com");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void createCustomer(HttpExchange exchange) throws IOException {
+        String form = URLDecoder.decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        String userId = form.replaceAll(".*metadata\\[userId]=([^&]*).*", "$1");
+        customersCreated.incrementAndGet();
+        try {
+            releaseCreate.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        StripeStubServer.respond(exchange, 200, "{\"id\":\"cus_" + userId + "\",\"object\":\"customer\"}");
+    }
+
+    private void listPaymentMethods(HttpExchange exchange) throws IOException {
+        paymentMethodLists.incrementAndGet();
+        StripeStubServer.respond(exchange, 200, "{\"object\":\"list\",\"url\":\"/v1/payment_methods\",\"has_more\":false,"
+            + "\"data\":[{\"id\":\"" + savedCard + "\",\"object\":\"payment_method\",\"type\":\"card\"}]}");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
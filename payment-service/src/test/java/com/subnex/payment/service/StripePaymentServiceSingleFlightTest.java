@@ -0,0 +1,133 @@
+package com.subnex.payment.service;
+
+import com.stripe.Stripe;
+import com.stripe.model.PaymentIntent;
+import com.subnex.payment.stripe.StripeStubServer;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.ResourceLock;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ResourceLock(StripeStubServer.STRIPE_GLOBALS)
+class StripePaymentServiceSingleFlightTest {
+
+    @RegisterExtension
+    final StripeStubServer stripe = new StripeStubServer().route("/v1/payment_intents", this::handle);
+
+    private ExecutorService callers;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    private volatile String status = "processing";
+
+    private SimpleMeterRegistry meterRegistry;
+    private StripePaymentService stripePaymentService;
+
+    @BeforeEach
+    void setUp() {
+        callers = Executors.newFixedThreadPool(8);
+        Stripe.setReadTimeout(5000);
+
+        meterRegistry = new SimpleMeterRegistry();
+        stripePaymentService = new StripePaymentService(StripeStubServer.guard(meterRegistry), meterRegistry);
+        ReflectionTestUtils.setField(stripePaymentService, "retrieveCacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(stripePaymentService, "retrieveCacheSize", 100);
+        stripePaymentService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void testConcurrentRetrievalsShareOneCall() throws Exception {
+        // Given
+        release = new CountDownLatch(1);
+        List<CompletableFuture<PaymentIntent>> results = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            results.add(CompletableFuture.supplyAsync(this::retrieve, callers));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (coalesced() < 7 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        // Then
+        for (CompletableFuture<PaymentIntent> result : results) {
+            assertEquals("pi_123", result.get(5, TimeUnit.SECONDS).getId());
+        }
+        assertEquals(1, hits.get());
+        assertEquals(7, coalesced());
+    }
+
+    @Test
+    void testRepeatedRetrievalIsServedFromCache() throws Exception {
+        // Given
+        stripePaymentService.retrievePaymentIntent("pi_123");
+
+        // When
+        PaymentIntent again = stripePaymentService.retrievePaymentIntent("pi_123");
+
+        // Then
+        assertEquals("processing", again.getStatus());
+        assertEquals(1, hits.get());
+        assertEquals(1, meterRegistry.get("stripe.retrieve.requests").tag("result", "cached").counter().count());
+    }
+
+    @Test
+    void testInvalidateForcesFreshRetrieval() throws Exception {
+        // Given
+        stripePaymentService.retrievePaymentIntent("pi_123");
+        status = "succeeded";
+
+        // When
+        stripePaymentService.invalidate("pi_123");
+        PaymentIntent fresh = stripePaymentService.retrievePaymentIntent("pi_123");
+
+        // Then
+        assertEquals("succeeded", fresh.getStatus());
+        assertEquals(2, hits.get());
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("stripe.retrieve.requests").tag("result", "coalesced").counter().count();
+    }
+
+    private PaymentIntent retrieve() {
+        try {
+            return stripePaymentService.retrievePaymentIntent("pi_123");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        StripeStubServer.respond(exchange, 200, "{\"id\":\"pi_123\",\"object\":\"payment_intent\",\"status\":\"" + status + "\"}");
+    }
+}
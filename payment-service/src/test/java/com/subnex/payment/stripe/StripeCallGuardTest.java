@@ -0,0 +1,191 @@
+package com.subnex.payment.stripe;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.subnex.payment.service.StripePaymentService;
+import com.sun.net.httpserver.HttpExchange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.subnex.payment.stripe.StripeStubServer.respond;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives StripePaymentService against a local HTTP stub standing in for api.stripe.com.
+ */
+@ResourceLock(StripeStubServer.STRIPE_GLOBALS)
+class StripeCallGuardTest {
+
+    private static final String INTENT = "{\"id\":\"pi_123\",\"object\":\"payment_intent\",\"status\":\"requires_payment_method\",\"client_secret\":\"pi_123_secret\"}";
+    private static final String SERVER_ERROR = "{\"error\":{\"type\":\"api_error\",\"message\":\"Something went wrong\"}}";
+    private static final String CARD_DECLINED = "{\"error\":{\"type\":\"card_error\",\"code\":\"card_declined\",\"message\":\"Your card was declined.\"}}";
+
+    private enum Mode { OK, SLOW, SERVER_ERROR, DECLINED, BLOCK }
+
+    @RegisterExtension
+    final StripeStubServer stripe = new StripeStubServer().route("/v1/payment_intents", this::handle);
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private volatile Mode mode = Mode.OK;
+    private volatile long delayMs;
+
+    private SimpleMeterRegistry meterRegistry;
+    private StripeCallGuard guard;
+    private StripePaymentService stripePaymentService;
+
+    @BeforeEach
+    void setUp() {
+        Stripe.setConnectTimeout(1000);
+        Stripe.setReadTimeout(300);
+
+        meterRegistry = new SimpleMeterRegistry();
+        // Window of 10, opens at 50% failures or 50% slow calls (>= 100ms) after 4 calls, stays open for a minute
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, 4, 0.5, 0.5, 100, 60_000, 1, System::currentTimeMillis);
+        guard = new StripeCallGuard(2, 0, circuitBreaker, meterRegistry);
+        stripePaymentService = new StripePaymentService(guard, meterRegistry);
+        stripePaymentService.init(); // retrieve cache TTL stays 0, every call reaches the stub
+    }
+
+    @AfterEach
+    void tearDown() {
+        unblock.countDown();
+    }
+
+    @Test
+    void testCreatesIntentAndRecordsTimer() throws Exception {
+        // When
+        PaymentIntent intent = stripePaymentService.createPaymentIntent(9999L, "USD", "sub1", "test@example.com");
+
+        // Then
+        assertEquals("pi_123", intent.getId());
+        assertEquals(1, meterRegistry.get("stripe.requests")
+            .tag("operation", "create_payment_intent").tag("outcome", "success").timer().count());
+        assertEquals(CircuitBreaker.State.CLOSED, guard.circuitState());
+    }
+
+    @Test
+    void testServerErrorsOpenCircuitAndFailFast() {
+        // Given
+        mode = Mode.SERVER_ERROR;
+        for (int i = 0; i < 4; i++) {
+            assertThrows(StripeException.class, () -> stripePaymentService.retrievePaymentIntent("pi_123"));
+        }
+
+        // When
+        long started = System.nanoTime();
+        assertThrows(StripeUnavailableException.class, () -> stripePaymentService.retrievePaymentIntent("pi_123"));
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+        assertEquals(4, hits.get());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 50);
+        assertEquals(1, meterRegistry.get("stripe.rejected").tag("reason", "circuit_open").counter().count());
+    }
+
+    @Test
+    void testReadTimeoutsCountAsFailures() {
+        // Given
+        mode = Mode.SLOW;
+        delayMs = 1000;
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertThrows(StripeException.class, () -> stripePaymentService.retrievePaymentIntent("pi_123"));
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+        assertThrows(StripeUnavailableException.class, () -> stripePaymentService.retrievePaymentIntent("pi_123"));
+    }
+
+    @Test
+    void testSlowSuccessesOpenCircuit() throws Exception {
+        // Given
+        mode = Mode.SLOW;
+        delayMs = 150;
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            assertEquals("pi_123", stripePaymentService.retrievePaymentIntent("pi_123").getId());
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+    }
+
+    @Test
+    void testCardDeclinesDoNotOpenCircuit() {
+        // Given
+        mode = Mode.DECLINED;
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            assertThrows(StripeException.class, () -> stripePaymentService.retrievePaymentIntent("pi_123"));
+        }
+
+        // Then
+        assertEquals(CircuitBreaker.State.CLOSED, guard.circuitState());
+        assertEquals(6, meterRegistry.get("stripe.requests").tag("outcome", "client_error").timer().count());
+    }
+
+    @Test
+    void testBulkheadRejectsWhenSaturated() throws Exception {
+        // Given
+        mode = Mode.BLOCK;
+        Stripe.setReadTimeout(5000);
+        CompletableFuture<PaymentIntent> first = CompletableFuture.supplyAsync(() -> retrieveUnchecked("pi_1"));
+        CompletableFuture<PaymentIntent> second = CompletableFuture.supplyAsync(() -> retrieveUnchecked("pi_2"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (hits.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // When
+        assertThrows(StripeUnavailableException.class, () -> stripePaymentService.retrievePaymentIntent("pi_3"));
+        unblock.countDown();
+
+        // Then
+        assertEquals("pi_123", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("pi_123", second.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(2, hits.get());
+        assertEquals(1, meterRegistry.get("stripe.rejected").tag("reason", "bulkhead").counter().count());
+    }
+
+    private PaymentIntent retrieveUnchecked(String paymentIntentId) {
+        try {
+            return stripePaymentService.retrievePaymentIntent(paymentIntentId);
+        } catch (StripeException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        hits.incrementAndGet();
+        try {
+            switch (mode) {
+                case SLOW -> Thread.sleep(delayMs);
+                case BLOCK -> unblock.await(5, TimeUnit.SECONDS);
+                default -> { }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        switch (mode) {
+            case SERVER_ERROR -> respond(exchange, 500, SERVER_ERROR);
+            case DECLINED -> respond(exchange, 402, CARD_DECLINED);
+            default -> respond(exchange, 200, INTENT);
+        }
+    }
+}
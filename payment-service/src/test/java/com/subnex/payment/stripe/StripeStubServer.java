@@ -0,0 +1,92 @@
+package com.subnex.payment.stripe;
+
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A local HTTP stub standing in for api.stripe.com, started before each test and stopped after it.
+ * The Stripe SDK is configured through static globals, so the extension points them at the stub and
+ * puts back what was there before; classes using it hold {@link #STRIPE_GLOBALS} so they never run
+ * in parallel with each other.
+ */
+public class StripeStubServer implements BeforeEachCallback, AfterEachCallback {
+
+    public static final String STRIPE_GLOBALS = "com.stripe.Stripe";
+
+    private final Map<String, HttpHandler> routes = new LinkedHashMap<>();
+    private HttpServer server;
+    private ExecutorService serverThreads;
+
+    private String previousApiKey;
+    private String previousApiBase;
+    private int previousConnectTimeout;
+    private int previousReadTimeout;
+    private int previousMaxNetworkRetries;
+
+    public StripeStubServer route(String path, HttpHandler handler) {
+        routes.put(path, handler);
+        return this;
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) throws IOException {
+        serverThreads = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        routes.forEach(server::createContext);
+        server.setExecutor(serverThreads);
+        server.start();
+
+        previousApiKey = Stripe.apiKey;
+        previousApiBase = Stripe.getApiBase();
+        previousConnectTimeout = Stripe.getConnectTimeout();
+        previousReadTimeout = Stripe.getReadTimeout();
+        previousMaxNetworkRetries = Stripe.getMaxNetworkRetries();
+
+        Stripe.apiKey = "sk_test_stub";
+        Stripe.overrideApiBase("http://localhost:" + server.getAddress().getPort());
+        Stripe.setMaxNetworkRetries(0);
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        server.stop(0);
+        serverThreads.shutdownNow();
+
+        Stripe.apiKey = previousApiKey;
+        Stripe.overrideApiBase(previousApiBase);
+        Stripe.setConnectTimeout(previousConnectTimeout);
+        Stripe.setReadTimeout(previousReadTimeout);
+        Stripe.setMaxNetworkRetries(previousMaxNetworkRetries);
+    }
+
+    // A guard that lets every call through: 16 permits and a breaker that needs 50 calls to judge
+    public static StripeCallGuard guard(MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(50, 50, 0.5, 1.0, 5_000, 60_000, 1, System::currentTimeMillis);
+        return new StripeCallGuard(16, 1_000, circuitBreaker, meterRegistry);
+    }
+
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        } finally {
+            exchange.close();
+        }
+    }
+}
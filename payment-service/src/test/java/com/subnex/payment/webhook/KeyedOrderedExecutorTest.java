@@ -0,0 +1,100 @@
+package com.subnex.payment.webhook;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyedOrderedExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private KeyedOrderedExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testTasksForSameKeyRunInSubmissionOrder() throws InterruptedException {
+        // Given
+        executor = new KeyedOrderedExecutor("test", 4, 1024, meterRegistry);
+        Map<String, List<Integer>> applied = new ConcurrentHashMap<>();
+        CountDownLatch finished = new CountDownLatch(20 * 100);
+
+        // When
+        for (int seq = 0; seq < 100; seq++) {
+            for (int k = 0; k < 20; k++) {
+                String key = "pi_" + k;
+                int value = seq;
+                executor.execute(key, () -> {
+                    applied.computeIfAbsent(key, x -> Collections.synchronizedList(new ArrayList<>())).add(value);
+                    finished.countDown();
+                });
+            }
+        }
+
+        // Then
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        applied.values().forEach(values -> {
+            for (int i = 0; i < values.size(); i++) {
+                assertEquals(i, values.get(i));
+            }
+        });
+    }
+
+    @Test
+    void testFullLaneRejectsWithTimeout() throws InterruptedException {
+        // Given
+        executor = new KeyedOrderedExecutor("test", 1, 1, meterRegistry);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute("pi_1", () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute("pi_2", () -> { });
+
+        // When
+        boolean accepted = executor.tryExecute("pi_3", () -> { }, 50, TimeUnit.MILLISECONDS);
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(1.0, meterRegistry.get("test.lane.depth").tag("lane", "0").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopLane() throws InterruptedException {
+        // Given
+        executor = new KeyedOrderedExecutor("test", 1, 16, meterRegistry);
+        CountDownLatch ran = new CountDownLatch(1);
+
+        // When
+        executor.execute("pi_1", () -> {
+            throw new IllegalStateException("boom");
+        });
+        executor.execute("pi_1", ran::countDown);
+
+        // Then
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.subnex.payment.webhook;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookEventDeduplicatorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private WebhookEventDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deduplicator = new WebhookEventDeduplicator(meterRegistry);
+        ReflectionTestUtils.setField(deduplicator, "recentCapacity", 2);
+        deduplicator.init();
+    }
+
+    @Test
+    void testRecentDuplicateSkipsStore() {
+        // Given
+        AtomicInteger stores = new AtomicInteger();
+        deduplicator.accept("evt_1", () -> stores.incrementAndGet() > 0);
+
+        // When
+        boolean accepted = deduplicator.accept("evt_1", () -> stores.incrementAndGet() > 0);
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(1, stores.get());
+        assertEquals(1.0, meterRegistry.get("webhook.events.duplicate").tag("tier", "memory").counter().count());
+    }
+
+    @Test
+    void testEvictedIdFallsThroughToStore() {
+        // Given
+        deduplicator.accept("evt_1", () -> true);
+        deduplicator.accept("evt_2", () -> true);
+        deduplicator.accept("evt_3", () -> true);
+
+        // When: evt_1 was evicted, the store reports it as already present
+        boolean accepted = deduplicator.accept("evt_1", () -> false);
+
+        // Then
+        assertFalse(accepted);
+        assertEquals(1.0, meterRegistry.get("webhook.events.duplicate").tag("tier", "store").counter().count());
+        assertEquals(4.0, meterRegistry.get("webhook.events.received").counter().count());
+    }
+}
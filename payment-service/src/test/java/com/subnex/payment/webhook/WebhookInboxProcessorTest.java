@@ -0,0 +1,105 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.model.WebhookInboxEntry;
+import com.subnex.payment.service.StripeWebhookHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WebhookInboxProcessorTest {
+
+    @Mock
+    private WebhookInbox inbox;
+
+    @Mock
+    private StripeWebhookHandler webhookHandler;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private KeyedOrderedExecutor executor;
+    private WebhookInboxProcessor processor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (processor != null) {
+            processor.shutdown();
+        }
+        executor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testProcess_SkipsEntryReclaimedWhileQueued() {
+        // Given
+        executor = new KeyedOrderedExecutor("test", 1, 1, meterRegistry);
+        WebhookInboxProcessor queued = new WebhookInboxProcessor(inbox, webhookHandler, meterRegistry, executor);
+        WebhookInboxEntry entry = entry("evt_1", "pi_1");
+        when(inbox.extendLock(entry)).thenReturn(false);
+
+        // When
+        queued.process(entry);
+
+        // Then
+        verifyNoInteractions(webhookHandler);
+        verify(inbox, never()).complete(entry);
+        verify(inbox, never()).fail(eq(entry), anyString());
+    }
+
+    @Test
+    void testDrain_HandsEntryBackWhenLaneStaysFull() throws Exception {
+        // Given: the only lane is busy and its one queue slot is taken
+        executor = new KeyedOrderedExecutor("test", 1, 1, meterRegistry);
+        CountDownLatch blocker = new CountDownLatch(1);
+        executor.execute("busy", () -> awaitQuietly(blocker));
+        Thread.sleep(200);
+        executor.execute("busy", () -> { });
+
+        WebhookInboxEntry entry = entry("evt_1", "pi_1");
+        when(inbox.claimNext()).thenReturn(entry).thenReturn(null);
+        lenient().doAnswer(invocation -> {
+            Thread.sleep(10);
+            return null;
+        }).when(inbox).awaitArrival(anyLong());
+
+        processor = new WebhookInboxProcessor(inbox, webhookHandler, meterRegistry, executor);
+        ReflectionTestUtils.setField(processor, "pollMs", 10L);
+        ReflectionTestUtils.setField(processor, "handoffTimeoutMs", 100L);
+
+        // When
+        processor.init();
+
+        // Then
+        verify(inbox, timeout(2000)).release(entry);
+        blocker.countDown();
+        verifyNoInteractions(webhookHandler);
+    }
+
+    private static WebhookInboxEntry entry(String eventId, String orderingKey) {
+        return WebhookInboxEntry.builder()
+                .id(eventId)
+                .eventId(eventId)
+                .orderingKey(orderingKey)
+                .payload("{}")
+                .attempts(1)
+                .receivedAt(Instant.now())
+                .build();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
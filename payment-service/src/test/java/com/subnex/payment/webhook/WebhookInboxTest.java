@@ -0,0 +1,204 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.enums.WebhookInboxStatus;
+import com.subnex.payment.model.WebhookInboxEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import({WebhookInbox.class, MongoIndexVerifier.class})
+@TestPropertySource(properties = "webhook.inbox.max-attempts=2")
+class WebhookInboxTest {
+
+    @Autowired
+    private WebhookInbox webhookInbox;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.remove(new Query(), WebhookInboxEntry.class);
+    }
+
+    @Test
+    void testClaimLocksEntryForOneWorker() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+
+        // When
+        WebhookInboxEntry claimed = webhookInbox.claimNext();
+
+        // Then
+        assertNotNull(claimed);
+        assertEquals(WebhookInboxStatus.PROCESSING, claimed.getStatus());
+        assertEquals(1, claimed.getAttempts());
+        assertNull(webhookInbox.claimNext());
+        assertEquals(1, webhookInbox.depth());
+    }
+
+    @Test
+    void testExtendLockFailsOnceExpiredEntryWasReclaimed() {
+        // Given: the first claim's lock ran out while the entry waited in a lane queue
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry queued = webhookInbox.claimNext();
+        mongoTemplate.updateFirst(new Query(), new Update().set("availableAt", Instant.now().minusSeconds(1)), WebhookInboxEntry.class);
+        WebhookInboxEntry reclaimed = webhookInbox.claimNext();
+        assertNotNull(reclaimed);
+
+        // When / Then
+        assertFalse(webhookInbox.extendLock(queued));
+        assertTrue(webhookInbox.extendLock(reclaimed));
+    }
+
+    @Test
+    void testExtendLockKeepsQueuedEntryFromBeingReclaimed() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry queued = webhookInbox.claimNext();
+        mongoTemplate.updateFirst(new Query(), new Update().set("availableAt", Instant.now().minusSeconds(1)), WebhookInboxEntry.class);
+
+        // When
+        assertTrue(webhookInbox.extendLock(queued));
+
+        // Then
+        assertNull(webhookInbox.claimNext());
+    }
+
+    @Test
+    void testReleasedEntryIsClaimableWithoutUsingAnAttempt() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry claimed = webhookInbox.claimNext();
+
+        // When
+        webhookInbox.release(claimed);
+
+        // Then
+        WebhookInboxEntry reclaimed = webhookInbox.claimNext();
+        assertNotNull(reclaimed);
+        assertEquals(1, reclaimed.getAttempts());
+    }
+
+    @Test
+    void testCompletedEntryLeavesTheQueue() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry claimed = webhookInbox.claimNext();
+
+        // When
+        webhookInbox.complete(claimed);
+
+        // Then
+        WebhookInboxEntry stored = mongoTemplate.findById(claimed.getId(), WebhookInboxEntry.class);
+        assertEquals(WebhookInboxStatus.DONE, stored.getStatus());
+        assertNotNull(stored.getExpireAt());
+        assertEquals(0, webhookInbox.depth());
+        assertNull(webhookInbox.oldestPendingReceivedAt());
+    }
+
+    @Test
+    void testFailedEntryIsRetriedThenParked() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry first = webhookInbox.claimNext();
+
+        // When
+        assertTrue(webhookInbox.fail(first, "Payment not found"));
+
+        // Then: backed off, so not claimable yet
+        WebhookInboxEntry retrying = mongoTemplate.findById(first.getId(), WebhookInboxEntry.class);
+        assertEquals(WebhookInboxStatus.PENDING, retrying.getStatus());
+        assertTrue(retrying.getAvailableAt().isAfter(Instant.now()));
+        assertNull(webhookInbox.claimNext());
+
+        // When
+        mongoTemplate.save(retrying.toBuilder().availableAt(Instant.now()).build());
+        WebhookInboxEntry second = webhookInbox.claimNext();
+
+        // Then
+        assertEquals(2, second.getAttempts());
+        assertFalse(webhookInbox.fail(second, "Payment not found"));
+        assertEquals(WebhookInboxStatus.DEAD, mongoTemplate.findById(first.getId(), WebhookInboxEntry.class).getStatus());
+    }
+
+    @Test
+    void testLaterEventWaitsForEarlierOneBackingOff() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.processing", "pi_1", "{}");
+        webhookInbox.append("evt_2", "payment_intent.succeeded", "pi_1", "{}");
+        webhookInbox.append("evt_3", "payment_intent.succeeded", "pi_2", "{}");
+        assertTrue(webhookInbox.fail(webhookInbox.claimNext(), "Payment not found"));
+
+        // When
+        WebhookInboxEntry next = webhookInbox.claimNext();
+
+        // Then
+        assertEquals("evt_3", next.getEventId());
+        assertNull(webhookInbox.claimNext());
+    }
+
+    @Test
+    void testEarlierEventOfIntentIsClaimedFirstOnceDue() {
+        // Given: the retried first event comes due after the second one
+        webhookInbox.append("evt_1", "payment_intent.processing", "pi_1", "{}");
+        webhookInbox.append("evt_2", "payment_intent.succeeded", "pi_1", "{}");
+        Instant now = Instant.now();
+        WebhookInboxEntry first = mongoTemplate.findOne(new Query(Criteria.where("eventId").is("evt_1")), WebhookInboxEntry.class);
+        mongoTemplate.save(first.toBuilder().availableAt(now.minusSeconds(1)).build());
+        WebhookInboxEntry second = mongoTemplate.findOne(new Query(Criteria.where("eventId").is("evt_2")), WebhookInboxEntry.class);
+        mongoTemplate.save(second.toBuilder().availableAt(now.minusSeconds(5)).build());
+
+        // When
+        WebhookInboxEntry claimed = webhookInbox.claimNext();
+
+        // Then: the second waits while the first is held
+        assertEquals("evt_1", claimed.getEventId());
+        assertNull(webhookInbox.claimNext());
+        webhookInbox.complete(claimed);
+        assertEquals("evt_2", webhookInbox.claimNext().getEventId());
+    }
+
+    @Test
+    void testRedeliveredEventIsNotQueuedTwice() {
+        // Given
+        assertTrue(webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}"));
+
+        // When
+        boolean queuedAgain = webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+
+        // Then
+        assertFalse(queuedAgain);
+        assertEquals(1, webhookInbox.depth());
+    }
+
+    @Test
+    void testStaleWorkerCannotCompleteReclaimedEntry() {
+        // Given
+        webhookInbox.append("evt_1", "payment_intent.succeeded", "pi_1", "{}");
+        WebhookInboxEntry stale = webhookInbox.claimNext();
+        mongoTemplate.save(mongoTemplate.findById(stale.getId(), WebhookInboxEntry.class)
+                .toBuilder().availableAt(Instant.now()).build());
+        WebhookInboxEntry reclaimed = webhookInbox.claimNext();
+
+        // When
+        webhookInbox.complete(stale);
+
+        // Then
+        assertEquals(2, reclaimed.getAttempts());
+        assertEquals(WebhookInboxStatus.PROCESSING, mongoTemplate.findById(stale.getId(), WebhookInboxEntry.class).getStatus());
+    }
+}
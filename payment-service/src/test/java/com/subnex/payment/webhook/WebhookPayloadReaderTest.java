@@ -0,0 +1,78 @@
+package com.subnex.payment.webhook;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebhookPayloadReaderTest {
+
+    private final WebhookPayloadReader reader = new WebhookPayloadReader();
+
+    @Test
+    void testChargeEventResolvesReferencedIntent() {
+        // Given
+        String payload = """
+                {"id": "evt_1", "object": "event",
+                 "data": {"object": {"id": "ch_1", "object": "charge", "metadata": {"id": "not_this"},
+                                     "refunds": {"data": [{"id": "re_1"}]}, "payment_intent": "pi_1"},
+                          "previous_attributes": {"id": "nor_this"}},
+                 "type": "charge.succeeded"}
+                """;
+
+        // When
+        WebhookEnvelope envelope = reader.read(payload);
+
+        // Then
+        assertEquals("evt_1", envelope.eventId());
+        assertEquals("charge.succeeded", envelope.type());
+        assertEquals("ch_1", envelope.objectId());
+        assertEquals("pi_1", envelope.paymentIntentId());
+    }
+
+    @Test
+    void testPaymentIntentEventUsesObjectId() {
+        // Given
+        String payload = """
+                {"type": "payment_intent.succeeded",
+                 "data": {"object": {"id": "pi_2", "object": "payment_intent", "latest_charge": "ch_2"}},
+                 "id": "evt_2"}
+                """;
+
+        // When
+        WebhookEnvelope envelope = reader.read(payload);
+
+        // Then
+        assertEquals("evt_2", envelope.eventId());
+        assertEquals("pi_2", envelope.paymentIntentId());
+    }
+
+    @Test
+    void testExpandedPaymentIntentOnCharge() {
+        // Given
+        String payload = """
+                {"id": "evt_3", "type": "charge.failed",
+                 "data": {"object": {"id": "ch_3", "payment_intent": {"id": "pi_3", "amount": 100}}}}
+                """;
+
+        // When & Then
+        assertEquals("pi_3", reader.read(payload).paymentIntentId());
+    }
+
+    @Test
+    void testChargeWithoutIntent() {
+        // Given
+        String payload = """
+                {"id": "evt_4", "type": "charge.succeeded", "data": {"object": {"id": "ch_4", "payment_intent": null}}}
+                """;
+
+        // When & Then
+        assertNull(reader.read(payload).paymentIntentId());
+    }
+
+    @Test
+    void testMalformedPayloadRejected() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> reader.read("{\"id\": "));
+        assertThrows(IllegalArgumentException.class, () -> reader.read("[]"));
+    }
+}
@@ -0,0 +1,32 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.kafka.BulkPaymentRequestConsumer;
+import com.subnex.payment.kafka.OutboxRelay;
+import com.subnex.payment.kafka.PaymentStatusEventConsumer;
+import com.subnex.payment.service.PaymentReconciler;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebhookReplayRunnerTest {
+
+    // None of the workers' dependencies are registered, so creating any of them would fail the context
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withUserConfiguration(WebhookInboxProcessor.class, OutboxRelay.class, PaymentReconciler.class,
+            BulkPaymentRequestConsumer.class, PaymentStatusEventConsumer.class);
+
+    @Test
+    void testReplayLeavesBackgroundWorkersOff() {
+        contextRunner
+            .withPropertyValues(WebhookReplayRunner.FILE_PROPERTY + "=/tmp/events.ndjson")
+            .run(context -> {
+                assertThat(context).hasNotFailed();
+                assertThat(context).doesNotHaveBean(WebhookInboxProcessor.class);
+                assertThat(context).doesNotHaveBean(OutboxRelay.class);
+                assertThat(context).doesNotHaveBean(PaymentReconciler.class);
+                assertThat(context).doesNotHaveBean(BulkPaymentRequestConsumer.class);
+                assertThat(context).doesNotHaveBean(PaymentStatusEventConsumer.class);
+            });
+    }
+}
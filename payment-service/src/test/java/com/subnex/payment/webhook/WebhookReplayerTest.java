@@ -0,0 +1,196 @@
+package com.subnex.payment.webhook;
+
+import com.subnex.payment.config.MongoIndexVerifier;
+import com.subnex.payment.model.WebhookInboxEntry;
+import com.subnex.payment.model.WebhookReplayCheckpoint;
+import com.subnex.payment.service.PaymentProcessorService;
+import com.subnex.payment.service.StripeWebhookHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@DataMongoTest
+@Import({WebhookReplayer.class, WebhookInbox.class, WebhookPayloadReader.class, StripeWebhookHandler.class,
+    MongoIndexVerifier.class, WebhookReplayerTest.Lanes.class})
+@TestPropertySource(properties = "webhook.replay.checkpoint-every=50")
+class WebhookReplayerTest {
+
+    private static final List<String> LIFECYCLE = List.of("processing", "failed", "succeeded");
+
+    @TestConfiguration
+    static class Lanes {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        KeyedOrderedExecutor webhookExecutor(MeterRegistry meterRegistry) {
+            return new KeyedOrderedExecutor("webhook", 4, 16, meterRegistry);
+        }
+    }
+
+    @Autowired
+    private WebhookReplayer webhookReplayer;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @MockBean
+    private PaymentProcessorService paymentProcessorService;
+
+    @TempDir
+    private Path dir;
+
+    // Statuses applied per PaymentIntent, in application order
+    private final Map<String, List<String>> applied = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            applied.computeIfAbsent(invocation.getArgument(0), id -> Collections.synchronizedList(new ArrayList<>()))
+                .add(invocation.getArgument(1));
+            return null;
+        }).when(paymentProcessorService).processPaymentWebhook(anyString(), anyString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.remove(new Query(), WebhookInboxEntry.class);
+        mongoTemplate.remove(new Query(), WebhookReplayCheckpoint.class);
+    }
+
+    @Test
+    void testAppliesEventsOfEachIntentInFileOrder() throws Exception {
+        // Given
+        List<String> lines = events(0, 100);
+        lines.add(5, lines.get(0)); // redelivered event
+        lines.add(10, "not json");
+        lines.add(20, "");
+        Path file = write("events.ndjson", lines);
+
+        // When
+        WebhookReplayReport report = webhookReplayer.replay(file, true);
+
+        // Then
+        assertEquals(303, report.lines());
+        assertEquals(300, report.applied());
+        assertEquals(1, report.duplicates());
+        assertEquals(1, report.unreadable());
+        assertEquals(0, report.failed());
+        assertEquals(Files.size(file), report.endOffset());
+        assertEquals(100, applied.size());
+        applied.values().forEach(statuses -> assertEquals(LIFECYCLE, statuses));
+        assertEquals(300, mongoTemplate.count(new Query(), WebhookInboxEntry.class));
+        assertEquals(Files.size(file), checkpoint(file).getOffset());
+    }
+
+    @Test
+    void testResumesAfterCheckpointedOffset() throws Exception {
+        // Given
+        Path file = write("events.ndjson", events(0, 20));
+        webhookReplayer.replay(file, true);
+        long firstPart = Files.size(file);
+        Files.write(file, events(20, 30), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        applied.clear();
+
+        // When
+        WebhookReplayReport report = webhookReplayer.replay(file, true);
+
+        // Then
+        assertEquals(firstPart, report.startOffset());
+        assertEquals(30, report.lines());
+        assertEquals(30, report.applied());
+        assertEquals(0, report.duplicates());
+        assertEquals(10, applied.size());
+        assertTrue(applied.keySet().stream().allMatch(id -> Integer.parseInt(id.substring(3)) >= 20));
+    }
+
+    @Test
+    void testFreshReplayRetriesOnlyFailedEvents() throws Exception {
+        // Given
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            String paymentIntentId = invocation.getArgument(0);
+            if (paymentIntentId.equals("pi_7") && invocation.getArgument(1).equals("succeeded") && failOnce.getAndSet(false)) {
+                throw new IllegalStateException("Mongo unavailable");
+            }
+            applied.computeIfAbsent(paymentIntentId, id -> Collections.synchronizedList(new ArrayList<>()))
+                .add(invocation.getArgument(1));
+            return null;
+        }).when(paymentProcessorService).processPaymentWebhook(anyString(), anyString());
+        Path file = write("events.ndjson", events(0, 10));
+        WebhookReplayReport first = webhookReplayer.replay(file, true);
+
+        // When
+        WebhookReplayReport second = webhookReplayer.replay(file, false);
+
+        // Then
+        assertEquals(1, first.failed());
+        assertEquals(29, first.applied());
+        assertEquals(0, second.startOffset());
+        assertEquals(1, second.applied());
+        assertEquals(29, second.duplicates());
+        assertEquals(LIFECYCLE, applied.get("pi_7"));
+    }
+
+    // Three lifecycle events per intent, interleaved across intents the way a Stripe export is
+    private static List<String> events(int fromIntent, int toIntent) {
+        List<String> lines = new ArrayList<>();
+        for (int step = 0; step < LIFECYCLE.size(); step++) {
+            for (int i = fromIntent; i < toIntent; i++) {
+                String eventId = "evt_" + i + "_" + step;
+                String paymentIntentId = "pi_" + i;
+                lines.add(switch (LIFECYCLE.get(step)) {
+                    case "processing" -> intentEvent(eventId, "payment_intent.processing", paymentIntentId);
+                    case "failed" -> "{\"id\":\"" + eventId + "\",\"object\":\"event\",\"type\":\"charge.failed\","
+                        + "\"data\":{\"object\":{\"id\":\"ch_" + i + "\",\"object\":\"charge\",\"amount\":49900,"
+                        + "\"payment_intent\":\"" + paymentIntentId + "\"}}}";
+                    default -> intentEvent(eventId, "payment_intent.succeeded", paymentIntentId);
+                });
+            }
+        }
+        return lines;
+    }
+
+    private static String intentEvent(String eventId, String type, String paymentIntentId) {
+        return "{\"id\":\"" + eventId + "\",\"object\":\"event\",\"type\":\"" + type + "\","
+            + "\"data\":{\"object\":{\"id\":\"" + paymentIntentId + "\",\"object\":\"payment_intent\","
+            + "\"amount\":49900,\"metadata\":{\"subscriptionId\":\"sub_1\"}}}}";
+    }
+
+    private Path write(String name, List<String> lines) throws Exception {
+        return Files.write(dir.resolve(name), lines, StandardCharsets.UTF_8);
+    }
+
+    private WebhookReplayCheckpoint checkpoint(Path file) {
+        return mongoTemplate.findById(file.toAbsolutePath().normalize().toString(), WebhookReplayCheckpoint.class);
+    }
+}
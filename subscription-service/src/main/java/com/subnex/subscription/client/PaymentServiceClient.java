@@ -0,0 +1,40 @@
+package com.subnex.subscription.client;
+
+import com.subnex.subscription.dto.RenewalPaymentRequest;
+import com.subnex.subscription.dto.RenewalPaymentResponse;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.Subscription;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+@Component
+public class PaymentServiceClient {
+
+    private final RestClient restClient;
+
+    public PaymentServiceClient(RestClient.Builder builder,
+                                @Value("${payment-service.url:http://localhost:8085}") String baseUrl) {
+        this.restClient = builder.baseUrl(baseUrl).build();
+    }
+
+    public RenewalPaymentResponse initiateRenewalPayment(Subscription subscription, Plan plan) {
+        RenewalPaymentRequest request = RenewalPaymentRequest.builder()
+                .subscriptionId(subscription.getId())
+                .userId(subscription.getUserId())
+                .amount(Math.round(plan.getPrice() * 100)) // plan prices are stored in major units
+                .currency(plan.getCurrency())
+                .type("RENEWAL")
+                .build();
+
+        return restClient.post()
+                .uri("/api/payments/initiate")
+                // Stable per billing period, so a retried renewal never opens a second charge
+                .header("Idempotency-Key", "renewal:" + subscription.getId() + ":" + subscription.getNextBillingDate())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(request)
+                .retrieve()
+                .body(RenewalPaymentResponse.class);
+    }
+}
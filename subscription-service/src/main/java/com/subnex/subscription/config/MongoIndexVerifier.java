@@ -0,0 +1,101 @@
+package com.subnex.subscription.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Creates the indexes declared on every mapped document class and verifies they exist before
+ * the service starts serving. An index that is missing, or could not be created (e.g. a unique
+ * index over duplicate data), either fails startup or is logged, depending on
+ * mongo.indexes.fail-on-missing.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexVerifier {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${mongo.indexes.create-missing:true}")
+    private boolean createMissing;
+
+    @Value("${mongo.indexes.fail-on-missing:false}")
+    private boolean failOnMissing;
+
+    @PostConstruct
+    public void verify() {
+        IndexResolver resolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        List<Class<?>> documents = indexedDocuments();
+        List<String> missing = new ArrayList<>();
+
+        for (Class<?> document : documents) {
+            String collection = mongoTemplate.getCollectionName(document);
+            IndexOperations indexOps = mongoTemplate.indexOps(document);
+            for (IndexDefinition expected : resolver.resolveIndexFor(document)) {
+                String index = collection + " " + expected.getIndexKeys().toJson();
+                if (exists(indexOps, expected)) {
+                    continue;
+                }
+                String failure = null;
+                if (createMissing) {
+                    try {
+                        indexOps.ensureIndex(expected);
+                        log.info("Created index {}", index);
+                    } catch (DataAccessException e) {
+                        failure = e.getMostSpecificCause().getMessage();
+                    }
+                }
+                if (!exists(indexOps, expected)) {
+                    missing.add(failure == null ? index : index + " (" + failure + ")");
+                }
+            }
+        }
+
+        if (missing.isEmpty()) {
+            log.info("Verified Mongo indexes for {} collections", documents.size());
+        } else if (failOnMissing) {
+            throw new IllegalStateException("Missing Mongo indexes: " + missing);
+        } else {
+            missing.forEach(index -> log.warn("Missing Mongo index: {}", index));
+        }
+    }
+
+    private List<Class<?>> indexedDocuments() {
+        List<Class<?>> documents = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : List.copyOf(mongoTemplate.getConverter().getMappingContext().getPersistentEntities())) {
+            if (entity.isAnnotationPresent(Document.class)) {
+                documents.add(entity.getType());
+            }
+        }
+        documents.sort(Comparator.comparing(Class::getName));
+        return documents;
+    }
+
+    private static boolean exists(IndexOperations indexOps, IndexDefinition expected) {
+        List<String> keys = new ArrayList<>(expected.getIndexKeys().keySet());
+        boolean unique = expected.getIndexOptions().getBoolean("unique", false);
+        for (IndexInfo info : indexOps.getIndexInfo()) {
+            List<String> actual = info.getIndexFields().stream().map(IndexField::getKey).toList();
+            if (actual.equals(keys) && (!unique || info.isUnique())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.subnex.subscription.controller;
+
+import com.subnex.subscription.dto.EntitlementCheckRequest;
+import com.subnex.subscription.dto.EntitlementResponse;
+import com.subnex.subscription.entitlement.EntitlementService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/entitlements")
+@RequiredArgsConstructor
+public class EntitlementController {
+
+    private final EntitlementService entitlementService;
+
+    @GetMapping
+    public EntitlementResponse check(@RequestParam String userId, @RequestParam String feature) {
+        return new EntitlementResponse(userId, feature, entitlementService.isAllowed(userId, feature));
+    }
+
+    // userId -> feature -> allowed for every combination in the request
+    @PostMapping("/check")
+    public Map<String, Map<String, Boolean>> checkBatch(@RequestBody EntitlementCheckRequest request) {
+        return entitlementService.check(
+                request.getUserIds() == null ? List.of() : request.getUserIds(),
+                request.getFeatures() == null ? List.of() : request.getFeatures());
+    }
+}
@@ -2,12 +2,15 @@ package com.subnex.subscription.controller;
 
 import com.subnex.subscription.dto.CreatePlanRequest;
 import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.service.PlanCatalog;
 import com.subnex.subscription.service.PlanService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/admin/plans")
 @RequiredArgsConstructor
@@ -20,9 +23,30 @@ public class PlanController {
         return planService.createPlan(request);
     }
 
+    // Serves the catalog bytes serialized once per version; unchanged catalogs are answered with 304
     @GetMapping
-    public List<Plan> getAllPlans() {
-        return planService.getAllPlans();
+    public ResponseEntity<byte[]> getAllPlans(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        PlanCatalog.Representation catalog = planService.getCatalogRepresentation();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? catalog.gzipEtag() : catalog.etag();
+
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(catalog.gzip());
+        }
+        return response.body(catalog.json());
     }
 
     @GetMapping("/{id}")
@@ -34,4 +58,37 @@ public class PlanController {
     public Plan deactivatePlan(@PathVariable String id) {
         return planService.deactivatePlan(id);
     }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").equals("q=0");
+            }
+        }
+        return false;
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix added by a proxy still matches
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,36 @@
+package com.subnex.subscription.controller;
+
+import com.subnex.subscription.dto.UsageEvent;
+import com.subnex.subscription.dto.UsageIngestResponse;
+import com.subnex.subscription.dto.UsageSummaryResponse;
+import com.subnex.subscription.usage.UsageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/usage")
+@RequiredArgsConstructor
+public class UsageController {
+
+    private final UsageService usageService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public UsageIngestResponse ingest(@RequestBody List<UsageEvent> events) {
+        return usageService.ingest(events);
+    }
+
+    @GetMapping("/{subscriptionId}")
+    public UsageSummaryResponse getUsage(
+            @PathVariable String subscriptionId,
+            @RequestParam(required = false) String meter,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return usageService.getUsage(subscriptionId, meter, from, to);
+    }
+}
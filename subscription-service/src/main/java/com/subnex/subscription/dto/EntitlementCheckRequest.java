@@ -0,0 +1,11 @@
+package com.subnex.subscription.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class EntitlementCheckRequest {
+    private List<String> userIds;
+    private List<String> features;
+}
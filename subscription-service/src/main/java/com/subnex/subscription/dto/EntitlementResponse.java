@@ -0,0 +1,14 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntitlementResponse {
+    private String userId;
+    private String feature;
+    private boolean allowed;
+}
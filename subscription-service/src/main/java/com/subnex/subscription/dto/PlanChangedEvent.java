@@ -0,0 +1,18 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlanChangedEvent {
+    private String planId;
+    private String changeType; // CREATED, DEACTIVATED
+    private Instant timestamp;
+}
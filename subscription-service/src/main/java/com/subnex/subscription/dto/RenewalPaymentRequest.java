@@ -0,0 +1,20 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Mirrors payment-service's PaymentRequest for POST /api/payments/initiate
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RenewalPaymentRequest {
+    private String subscriptionId;
+    private String userId;
+    private String userEmail;
+    private Long amount; // smallest currency unit
+    private String currency;
+    private String type; // RENEWAL
+}
@@ -0,0 +1,10 @@
+package com.subnex.subscription.dto;
+
+import lombok.Data;
+
+@Data
+public class RenewalPaymentResponse {
+    private String id;
+    private String stripePaymentIntentId;
+    private String status;
+}
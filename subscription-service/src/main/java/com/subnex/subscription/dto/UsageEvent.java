@@ -0,0 +1,19 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageEvent {
+    private String subscriptionId;
+    private String meter;      // e.g. api_calls, storage_gb_hours
+    private Long quantity;
+    private Instant timestamp; // defaults to the time of ingestion
+}
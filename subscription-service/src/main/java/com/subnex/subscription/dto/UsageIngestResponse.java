@@ -0,0 +1,13 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageIngestResponse {
+    private int accepted;
+    private int rejected;
+}
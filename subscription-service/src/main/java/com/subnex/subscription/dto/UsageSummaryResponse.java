@@ -0,0 +1,20 @@
+package com.subnex.subscription.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UsageSummaryResponse {
+    private String subscriptionId;
+    private Instant from;
+    private Instant to;
+    private Map<String, Long> totals; // meter -> quantity
+}
@@ -0,0 +1,208 @@
+package com.subnex.subscription.entitlement;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.Subscription;
+import com.subnex.subscription.repository.SubscriptionRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers "may this user use this feature" from a per-user bitset cached in process. A user's
+ * entry keeps the plans of their entitled subscriptions so subscribe, cancel and plan changes
+ * only recompute bits locally; Mongo is read on first use and after the TTL, which also picks
+ * up changes made by other replicas. Entries live in a Caffeine cache, so lookups never share a
+ * lock, and rarely used users are evicted beyond entitlements.cache.max-users.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EntitlementService {
+
+    // PAST_DUE keeps access while renewal retries run
+    private static final Set<String> ENTITLED_STATUSES = Set.of("ACTIVE", "TRIAL", "PAST_DUE");
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final PlanCatalog planCatalog;
+    private final FeatureDictionary featureDictionary;
+
+    @Value("${entitlements.cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${entitlements.cache.max-users:500000}")
+    private int maxUsers;
+
+    private Cache<String, UserEntitlements> users;
+    private volatile PlanBits planBits = new PlanBits(-1, Map.of());
+
+    @PostConstruct
+    public void init() {
+        users = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .build();
+    }
+
+    public boolean isAllowed(String userId, String feature) {
+        int featureId = featureDictionary.idOf(feature);
+        if (featureId < 0) {
+            planBits(); // the feature may belong to a plan added since the last rebuild
+            featureId = featureDictionary.idOf(feature);
+            if (featureId < 0) {
+                return false;
+            }
+        }
+        return entitlements(userId).bits().has(featureId);
+    }
+
+    // Allowed flags for every (user, feature) pair, keyed by user then feature
+    public Map<String, Map<String, Boolean>> check(List<String> userIds, List<String> features) {
+        int[] featureIds = new int[features.size()];
+        planBits();
+        for (int i = 0; i < featureIds.length; i++) {
+            featureIds[i] = featureDictionary.idOf(features.get(i));
+        }
+
+        Map<String, UserEntitlements> entries = entitlements(userIds);
+        Map<String, Map<String, Boolean>> result = new HashMap<>(userIds.size() * 2);
+        for (String userId : userIds) {
+            FeatureBits bits = entries.get(userId).bits();
+            Map<String, Boolean> allowed = new HashMap<>(features.size() * 2);
+            for (int i = 0; i < featureIds.length; i++) {
+                allowed.put(features.get(i), bits.has(featureIds[i]));
+            }
+            result.put(userId, allowed);
+        }
+        return result;
+    }
+
+    public void onSubscriptionChanged(Subscription subscription) {
+        users.asMap().computeIfPresent(subscription.getUserId(), (userId, entry) -> {
+            Map<String, String> plans = new HashMap<>(entry.subscriptionPlans());
+            if (ENTITLED_STATUSES.contains(subscription.getStatus())) {
+                plans.put(subscription.getId(), subscription.getPlanId());
+            } else {
+                plans.remove(subscription.getId());
+            }
+            return build(plans, entry.loadedAt());
+        });
+    }
+
+    public void invalidate(String userId) {
+        users.invalidate(userId);
+    }
+
+    private UserEntitlements entitlements(String userId) {
+        long now = System.currentTimeMillis();
+        UserEntitlements entry = cached(userId, now);
+        if (entry == null) {
+            entry = build(entitledPlans(subscriptionRepository.findByUserId(userId)).getOrDefault(userId, Map.of()), now);
+            cache(userId, entry);
+        }
+        return entry;
+    }
+
+    // Users missing from the cache are loaded together with a single $in query
+    private Map<String, UserEntitlements> entitlements(List<String> userIds) {
+        long now = System.currentTimeMillis();
+        Map<String, UserEntitlements> entries = new HashMap<>(userIds.size() * 2);
+        Set<String> missing = new LinkedHashSet<>();
+        for (String userId : userIds) {
+            UserEntitlements entry = cached(userId, now);
+            if (entry == null) {
+                missing.add(userId);
+            } else {
+                entries.put(userId, entry);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Map<String, String>> plansByUser = entitledPlans(subscriptionRepository.findByUserIdIn(missing));
+            for (String userId : missing) {
+                UserEntitlements entry = build(plansByUser.getOrDefault(userId, Map.of()), now);
+                cache(userId, entry);
+                entries.put(userId, entry);
+            }
+        }
+        return entries;
+    }
+
+    // Null when the user has to be read from Mongo again
+    private UserEntitlements cached(String userId, long now) {
+        UserEntitlements entry = users.getIfPresent(userId);
+        if (entry == null || now - entry.loadedAt() > ttlMs) {
+            return null;
+        }
+        if (entry.catalogVersion() != planCatalog.version()) {
+            // A plan changed: recompute from the cached plan ids without going back to Mongo
+            entry = build(entry.subscriptionPlans(), entry.loadedAt());
+            cache(userId, entry);
+        }
+        return entry;
+    }
+
+    private void cache(String userId, UserEntitlements entry) {
+        users.put(userId, entry);
+    }
+
+    private static Map<String, Map<String, String>> entitledPlans(List<Subscription> subscriptions) {
+        Map<String, Map<String, String>> plansByUser = new HashMap<>();
+        for (Subscription subscription : subscriptions) {
+            if (ENTITLED_STATUSES.contains(subscription.getStatus())) {
+                plansByUser.computeIfAbsent(subscription.getUserId(), userId -> new HashMap<>())
+                        .put(subscription.getId(), subscription.getPlanId());
+            }
+        }
+        return plansByUser;
+    }
+
+    private UserEntitlements build(Map<String, String> subscriptionPlans, long loadedAt) {
+        PlanBits current = planBits();
+        FeatureBits bits = FeatureBits.EMPTY;
+        for (String planId : subscriptionPlans.values()) {
+            bits = bits.or(current.byPlan().getOrDefault(planId, FeatureBits.EMPTY));
+        }
+        return new UserEntitlements(Map.copyOf(subscriptionPlans), bits, current.catalogVersion(), loadedAt);
+    }
+
+    private PlanBits planBits() {
+        PlanBits current = planBits;
+        long version = planCatalog.version();
+        if (current.catalogVersion() == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (planBits.catalogVersion() != version) {
+                Map<String, FeatureBits> byPlan = new HashMap<>();
+                for (Plan plan : planCatalog.getAll()) {
+                    List<String> features = plan.getFeatures() == null ? List.of() : plan.getFeatures();
+                    int[] ids = new int[features.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = featureDictionary.register(features.get(i));
+                    }
+                    byPlan.put(plan.getId(), FeatureBits.of(ids));
+                }
+                planBits = new PlanBits(version, Map.copyOf(byPlan));
+                log.info("Rebuilt entitlement bits for {} plans over {} features at catalog version {}",
+                        byPlan.size(), featureDictionary.size(), version);
+            }
+            return planBits;
+        }
+    }
+
+    private record PlanBits(long catalogVersion, Map<String, FeatureBits> byPlan) {
+    }
+
+    private record UserEntitlements(Map<String, String> subscriptionPlans, FeatureBits bits,
+                                    long catalogVersion, long loadedAt) {
+    }
+}
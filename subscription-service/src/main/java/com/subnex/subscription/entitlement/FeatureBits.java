@@ -0,0 +1,48 @@
+package com.subnex.subscription.entitlement;
+
+import java.util.Arrays;
+
+/**
+ * Immutable bitset over {@link FeatureDictionary} ids.
+ */
+public final class FeatureBits {
+
+    public static final FeatureBits EMPTY = new FeatureBits(new long[0]);
+
+    private final long[] words;
+
+    private FeatureBits(long[] words) {
+        this.words = words;
+    }
+
+    public static FeatureBits of(int... featureIds) {
+        int max = -1;
+        for (int id : featureIds) {
+            max = Math.max(max, id);
+        }
+        long[] words = new long[(max >> 6) + 1];
+        for (int id : featureIds) {
+            words[id >> 6] |= 1L << id;
+        }
+        return new FeatureBits(words);
+    }
+
+    public boolean has(int featureId) {
+        int word = featureId >> 6;
+        return featureId >= 0 && word < words.length && (words[word] & (1L << featureId)) != 0;
+    }
+
+    public FeatureBits or(FeatureBits other) {
+        if (other.words.length == 0) {
+            return this;
+        }
+        if (words.length == 0) {
+            return other;
+        }
+        long[] merged = Arrays.copyOf(words, Math.max(words.length, other.words.length));
+        for (int i = 0; i < other.words.length; i++) {
+            merged[i] |= other.words[i];
+        }
+        return new FeatureBits(merged);
+    }
+}
@@ -0,0 +1,31 @@
+package com.subnex.subscription.entitlement;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only mapping from feature names to dense integer ids, which index the bits of the
+ * per-plan and per-user entitlement sets. Ids are never reused, so a bitset built against an
+ * older dictionary stays valid.
+ */
+@Component
+public class FeatureDictionary {
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // -1 for a feature no plan has ever offered
+    public int idOf(String feature) {
+        Integer id = feature == null ? null : ids.get(feature);
+        return id == null ? -1 : id;
+    }
+
+    public synchronized int register(String feature) {
+        return ids.computeIfAbsent(feature, f -> ids.size());
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,32 @@
+package com.subnex.subscription.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.dto.PlanChangedEvent;
+import com.subnex.subscription.service.PlanCatalog;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PlanEventConsumer {
+
+    private final PlanCatalog planCatalog;
+    private final ObjectMapper objectMapper;
+
+    // A group per instance so every replica sees every change and refreshes its own catalog
+    @KafkaListener(topics = PlanEventProducer.TOPIC,
+            groupId = "#{'subscription-service-plans-' + T(java.util.UUID).randomUUID()}")
+    public void consumePlanEvent(@Payload String message) {
+        try {
+            PlanChangedEvent event = objectMapper.readValue(message, PlanChangedEvent.class);
+            log.info("Received plan event: {} for plan: {}", event.getChangeType(), event.getPlanId());
+            planCatalog.refresh(event.getPlanId());
+        } catch (Exception e) {
+            log.error("Failed to process plan event: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.subnex.subscription.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.dto.PlanChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PlanEventProducer {
+
+    public static final String TOPIC = "plan-events";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void publishPlanChanged(String planId, String changeType) {
+        try {
+            PlanChangedEvent event = PlanChangedEvent.builder()
+                    .planId(planId)
+                    .changeType(changeType)
+                    .timestamp(Instant.now())
+                    .build();
+            kafkaTemplate.send(TOPIC, planId, objectMapper.writeValueAsString(event));
+            log.info("Published plan event: {} for plan: {}", changeType, planId);
+        } catch (Exception e) {
+            log.error("Failed to publish plan event for plan {}: {}", planId, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.subnex.subscription.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.dto.UsageEvent;
+import com.subnex.subscription.usage.UsageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UsageEventConsumer {
+
+    public static final String TOPIC = "usage-events";
+
+    private final UsageService usageService;
+    private final ObjectMapper objectMapper;
+
+    // Shared group so partitions are spread over replicas; batches keep per-record overhead low
+    @KafkaListener(topics = TOPIC, groupId = "subscription-service-usage", batch = "true")
+    public void consumeUsageEvents(@Payload List<String> messages) {
+        Instant receivedAt = Instant.now();
+        int rejected = 0;
+        for (String message : messages) {
+            try {
+                if (!usageService.record(objectMapper.readValue(message, UsageEvent.class), receivedAt)) {
+                    rejected++;
+                }
+            } catch (Exception e) {
+                rejected++;
+            }
+        }
+        if (rejected > 0) {
+            log.warn("Rejected {} of {} usage events", rejected, messages.size());
+        }
+    }
+}
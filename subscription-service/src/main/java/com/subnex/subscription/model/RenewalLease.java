@@ -0,0 +1,23 @@
+package com.subnex.subscription.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+@Document(collection = "renewal_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RenewalLease {
+
+    @Id
+    private String id;
+
+    private int slotFrom; // inclusive
+    private int slotTo;   // exclusive
+    private String owner;
+    private Instant expiresAt;
+}
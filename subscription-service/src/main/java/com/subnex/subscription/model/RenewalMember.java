@@ -0,0 +1,21 @@
+package com.subnex.subscription.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// Heartbeat of a live subscription-service replica taking part in renewal sharding
+@Document(collection = "renewal_members")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RenewalMember {
+
+    @Id
+    private String id;
+
+    private Instant expiresAt;
+}
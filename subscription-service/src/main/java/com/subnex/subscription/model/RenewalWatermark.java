@@ -0,0 +1,26 @@
+package com.subnex.subscription.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+// Highest (nextBillingDate, _id) swept so far for one renewal slot range
+@Document(collection = "renewal_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RenewalWatermark {
+
+    @Id
+    private String id;
+
+    private LocalDate nextBillingDate;
+    private String subscriptionId;
+    private long processed;
+    private long failed;
+    private Instant updatedAt;
+}
@@ -2,11 +2,16 @@ package com.subnex.subscription.model;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
 
 @Document(collection = "subscriptions")
+@CompoundIndex(name = "renewal_sweep", def = "{'status': 1, 'autoRenew': 1, 'nextBillingDate': 1, '_id': 1}")
+@CompoundIndex(name = "trial_end", def = "{'status': 1, 'trialEndDate': 1}")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,10 +21,17 @@ public class Subscription {
     @Id
     private String id;
 
+    @Indexed
     private String userId;
     private String planId;
-    private String status; // ACTIVE, TRIAL, PAST_DUE
+    private String status; // ACTIVE, TRIAL, PAST_DUE, EXPIRED
     private LocalDate startDate;
+    private LocalDate trialEndDate;
     private LocalDate nextBillingDate;
     private boolean autoRenew;
+    private Integer renewalSlot; // hash slot of id, see RenewalSlots
+    private Integer renewalAttempts; // failed charges for the current nextBillingDate, cleared once it is renewed
+
+    @Version
+    private Long version; // bumped by every save and MongoTemplate update
 }
@@ -0,0 +1,29 @@
+package com.subnex.subscription.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+// Usage of one meter by one subscription within one time bucket; the id is derived from all three
+@Document(collection = "usage_buckets")
+@CompoundIndex(name = "usage_period", def = "{'subscriptionId': 1, 'meter': 1, 'bucketStart': 1}")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UsageBucket {
+
+    @Id
+    private String id;
+
+    private String subscriptionId;
+    private String meter;
+    private Instant bucketStart;
+    private long quantity;
+    private Instant updatedAt;
+    private List<String> appliedFlushes; // most recent UsageAggregator flush ids, so a re-sent flush is not counted twice
+}
@@ -0,0 +1,156 @@
+package com.subnex.subscription.renewal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel with O(1) schedule and cancel. Level 0 buckets are one tick wide,
+ * each higher level is {@code wheelSize} times coarser; entries cascade down a level when the
+ * lower wheel wraps. Callers drive time with {@link #advanceTo(long)}.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<List<Bucket<T>>> levels;
+    private final long[] levelSpanTicks;
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, int levelCount, long startMs) {
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.levels = new ArrayList<>(levelCount);
+        this.levelSpanTicks = new long[levelCount];
+
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            levelSpanTicks[level] = span; // ticks per bucket at this level
+            span *= wheelSize;
+            List<Bucket<T>> buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new Bucket<>());
+            }
+            levels.add(buckets);
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    // Returns null when the deadline is not after the current tick; the caller should fire it directly
+    public synchronized Timeout<T> schedule(T payload, long deadlineMs) {
+        Timeout<T> timeout = new Timeout<>(payload, (deadlineMs + tickMs - 1) / tickMs);
+        if (!place(timeout)) {
+            return null;
+        }
+        size++;
+        return timeout;
+    }
+
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.bucket == null) {
+            return false;
+        }
+        timeout.unlink();
+        size--;
+        return true;
+    }
+
+    public synchronized List<T> advanceTo(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMs / tickMs;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade from the coarsest wrapped level down so entries land in the right finer bucket
+            for (int level = levels.size() - 1; level > 0; level--) {
+                if (currentTick % levelSpanTicks[level] == 0) {
+                    Bucket<T> bucket = levels.get(level).get((int) ((currentTick / levelSpanTicks[level]) % wheelSize));
+                    for (Timeout<T> timeout : bucket.drain()) {
+                        if (!place(timeout)) {
+                            expired.add(timeout.payload);
+                            size--;
+                        }
+                    }
+                }
+            }
+            for (Timeout<T> timeout : levels.get(0).get((int) (currentTick % wheelSize)).drain()) {
+                expired.add(timeout.payload);
+                size--;
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public long horizonMs() {
+        return levelSpanTicks[levels.size() - 1] * wheelSize * tickMs;
+    }
+
+    private boolean place(Timeout<T> timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta <= 0) {
+            return false;
+        }
+        for (int level = 0; level < levels.size(); level++) {
+            if (delta < levelSpanTicks[level] * wheelSize) {
+                levels.get(level).get((int) ((timeout.deadlineTick / levelSpanTicks[level]) % wheelSize)).add(timeout);
+                return true;
+            }
+        }
+        throw new IllegalArgumentException("Deadline beyond timing wheel horizon of " + horizonMs() + "ms");
+    }
+
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = next = null;
+            bucket = null;
+        }
+    }
+
+    // Circular doubly linked list with a sentinel so add and unlink never branch on emptiness
+    private static final class Bucket<T> {
+        private final Timeout<T> head = new Timeout<>(null, 0);
+
+        private Bucket() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        private void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            timeout.prev = head.prev;
+            timeout.next = head;
+            head.prev.next = timeout;
+            head.prev = timeout;
+        }
+
+        private List<Timeout<T>> drain() {
+            List<Timeout<T>> drained = new ArrayList<>();
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                timeout.unlink();
+                drained.add(timeout);
+            }
+            return drained;
+        }
+    }
+}
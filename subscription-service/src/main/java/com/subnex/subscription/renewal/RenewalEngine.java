@@ -0,0 +1,387 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.client.PaymentServiceClient;
+import com.subnex.subscription.entitlement.EntitlementService;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.RenewalLease;
+import com.subnex.subscription.model.RenewalWatermark;
+import com.subnex.subscription.model.Subscription;
+import com.subnex.subscription.repository.RenewalWatermarkRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Sweeps every subscription due between the persisted watermark and the sweep date in
+ * (nextBillingDate, _id) order, fans each page out over hash partitions with bounded
+ * parallelism and advances the watermark after every committed page, never past a renewal
+ * that failed and was rolled back until it runs out of retries and is parked as PAST_DUE. A missed or crashed
+ * run is caught up by the next one in a single indexed range scan. Trials ending up to the
+ * sweep date are ended first. Only the slot ranges currently leased by this replica are swept,
+ * each with its own watermark.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalEngine {
+
+    private static final String WATERMARK_PREFIX = "renewal-watermark:";
+
+    private final MongoTemplate mongoTemplate;
+    private final PlanCatalog planCatalog;
+    private final RenewalWatermarkRepository watermarkRepository;
+    private final PaymentServiceClient paymentServiceClient;
+    private final RenewalMetrics metrics;
+    private final RenewalLeaseManager leaseManager;
+    private final EntitlementService entitlementService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${renewal.page-size:500}")
+    private int pageSize;
+
+    @Value("${renewal.partitions:8}")
+    private int partitions;
+
+    @Value("${renewal.parallelism:8}")
+    private int parallelism;
+
+    @Value("${renewal.wheel.enabled:true}")
+    private boolean wheelEnabled;
+
+    @Value("${renewal.retry.max-attempts:3}")
+    private int maxRetryAttempts;
+
+    private final Set<String> runningLeases = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor;
+    private ExecutorService coordinator;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newFixedThreadPool(parallelism);
+        coordinator = Executors.newSingleThreadExecutor();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        coordinator.shutdownNow();
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    public void runDueRenewals(LocalDate upTo) {
+        leaseManager.ownedLeases().forEach(lease -> runLease(upTo, lease));
+    }
+
+    // With the timing wheel firing renewals through the day, the sweep only catches up dates before today
+    public LocalDate sweepDate() {
+        return wheelEnabled ? LocalDate.now().minusDays(1) : LocalDate.now();
+    }
+
+    // A range taken over from another replica may hold renewals that its previous owner never finished
+    @EventListener
+    public void onLeaseAcquired(RenewalLeaseAcquiredEvent event) {
+        coordinator.submit(() -> runLease(sweepDate(), event.getLease()));
+    }
+
+    public void dispatch(Runnable task) {
+        executor.execute(task);
+    }
+
+    public boolean renewNow(String subscriptionId) {
+        Subscription subscription = mongoTemplate.findById(subscriptionId, Subscription.class);
+        if (subscription != null && "TRIAL".equals(subscription.getStatus())) {
+            // A retry of the first charge, which failed when the trial ended
+            return endTrial(subscriptionId);
+        }
+        if (subscription == null
+                || !"ACTIVE".equals(subscription.getStatus())
+                || !subscription.isAutoRenew()
+                || subscription.getNextBillingDate() == null
+                || subscription.getNextBillingDate().isAfter(LocalDate.now())) {
+            return false;
+        }
+        return charge(subscription, "ACTIVE") == Outcome.RENEWED;
+    }
+
+    // Returns whether the trial was converted to a paid subscription
+    public boolean endTrial(String subscriptionId) {
+        Subscription trial = mongoTemplate.findOne(
+                new Query(Criteria.where("_id").is(subscriptionId).and("status").is("TRIAL")), Subscription.class);
+        if (trial == null) {
+            return false;
+        }
+        if (!trial.isAutoRenew()) {
+            Subscription expired = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(subscriptionId).and("status").is("TRIAL").and("autoRenew").is(false)),
+                    new Update().set("status", "EXPIRED"),
+                    FindAndModifyOptions.options().returnNew(true),
+                    Subscription.class);
+            if (expired != null) {
+                entitlementService.invalidate(expired.getUserId());
+            }
+            return false;
+        }
+
+        // nextBillingDate was set to the trial end, so this issues the first charge; the trial only
+        // becomes ACTIVE once it went through, a failed charge leaves it to the retry schedule
+        if (charge(trial, "TRIAL") != Outcome.RENEWED) {
+            return false;
+        }
+        Subscription activated = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(subscriptionId).and("status").is("TRIAL")),
+                new Update().set("status", "ACTIVE"),
+                FindAndModifyOptions.options().returnNew(true),
+                Subscription.class);
+        if (activated == null) {
+            return false;
+        }
+        entitlementService.invalidate(activated.getUserId());
+        return true;
+    }
+
+    private void runLease(LocalDate upTo, RenewalLease lease) {
+        if (!runningLeases.add(lease.getId())) {
+            return;
+        }
+        try {
+            endDueTrials(upTo, lease);
+            sweep(upTo, lease);
+        } catch (Exception e) {
+            log.error("Renewal sweep up to {} on {} aborted: {}", upTo, lease.getId(), e.getMessage(), e);
+        } finally {
+            runningLeases.remove(lease.getId());
+        }
+    }
+
+    // Trials are not on the billing watermark; ending one issues its first charge and, once that went through, makes it ACTIVE
+    private void endDueTrials(LocalDate upTo, RenewalLease lease) {
+        Query query = new Query(Criteria.where("status").is("TRIAL")
+                .and("trialEndDate").lte(upTo)
+                .and("renewalSlot").gte(lease.getSlotFrom()).lt(lease.getSlotTo()));
+        query.fields().include("_id");
+        query.cursorBatchSize(pageSize);
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(pageSize);
+        long ended = 0;
+        try (Stream<Subscription> due = mongoTemplate.stream(query, Subscription.class)) {
+            var cursor = due.iterator();
+            while (cursor.hasNext()) {
+                String subscriptionId = cursor.next().getId();
+                pending.add(CompletableFuture.runAsync(() -> endTrialQuietly(subscriptionId), executor));
+                if (pending.size() == pageSize) {
+                    CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+                    ended += pending.size();
+                    pending.clear();
+                }
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        ended += pending.size();
+
+        if (ended > 0) {
+            log.info("Ended {} trials due up to {} on {}", ended, upTo, lease.getId());
+        }
+    }
+
+    private void endTrialQuietly(String subscriptionId) {
+        try {
+            endTrial(subscriptionId);
+        } catch (Exception e) {
+            log.error("Failed to end trial of subscription {}: {}", subscriptionId, e.getMessage());
+        }
+    }
+
+    private void sweep(LocalDate upTo, RenewalLease lease) {
+        String watermarkId = WATERMARK_PREFIX + lease.getId();
+        RenewalWatermark watermark = watermarkRepository.findById(watermarkId)
+                .orElseGet(() -> RenewalWatermark.builder().id(watermarkId).build());
+
+        Criteria criteria = Criteria.where("status").is("ACTIVE")
+                .and("autoRenew").is(true)
+                .and("renewalSlot").gte(lease.getSlotFrom()).lt(lease.getSlotTo());
+        if (watermark.getNextBillingDate() == null) {
+            criteria = criteria.and("nextBillingDate").lte(upTo);
+        } else {
+            // Keyset on (nextBillingDate, _id): resume strictly after the last committed subscription
+            criteria = criteria.and("nextBillingDate").gte(watermark.getNextBillingDate()).lte(upTo)
+                    .norOperator(Criteria.where("nextBillingDate").is(watermark.getNextBillingDate())
+                            .and("_id").lte(watermark.getSubscriptionId()));
+            log.info("Sweeping renewals on {} from watermark {}/{} up to {}",
+                    lease.getId(), watermark.getNextBillingDate(), watermark.getSubscriptionId(), upTo);
+        }
+
+        Query query = new Query(criteria).with(Sort.by(Sort.Direction.ASC, "nextBillingDate", "_id"));
+        query.fields().include("userId", "planId", "nextBillingDate", "renewalAttempts");
+        query.cursorBatchSize(pageSize);
+
+        List<Subscription> page = new ArrayList<>(pageSize);
+        boolean held = false;
+
+        try (Stream<Subscription> due = mongoTemplate.stream(query, Subscription.class)) {
+            var cursor = due.iterator();
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() == pageSize) {
+                    // Stop at a page boundary once the range has moved to another replica; it resumes from our watermark
+                    if (!leaseManager.owns(lease.getId())) {
+                        log.warn("Lease {} lost during renewal sweep up to {}, stopping", lease.getId(), upTo);
+                        return;
+                    }
+                    held = commitPage(watermark, page, held);
+                    page = new ArrayList<>(pageSize);
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            commitPage(watermark, page, held);
+        }
+
+        log.info("Renewal sweep up to {} on {} completed: {} renewed, {} failed in total",
+                upTo, lease.getId(), watermark.getProcessed(), watermark.getFailed());
+    }
+
+    // Returns whether the watermark is now held before a rolled-back renewal; later pages must not move it past that
+    private boolean commitPage(RenewalWatermark watermark, List<Subscription> page, boolean held) {
+        AtomicLong renewed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Set<String> rolledBack = ConcurrentHashMap.newKeySet();
+
+        metrics.pageStarted(page.size());
+        metrics.pageTimer().record(() -> {
+            List<List<Subscription>> lanes = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                lanes.add(new ArrayList<>());
+            }
+            for (Subscription subscription : page) {
+                lanes.get(partitionOf(subscription.getId())).add(subscription);
+            }
+
+            CompletableFuture.allOf(lanes.stream()
+                    .filter(lane -> !lane.isEmpty())
+                    .map(lane -> CompletableFuture.runAsync(() -> lane.forEach(subscription -> {
+                        Outcome outcome = charge(subscription, "ACTIVE");
+                        if (outcome == Outcome.RENEWED) {
+                            renewed.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        if (outcome == Outcome.FAILED) {
+                            rolledBack.add(subscription.getId());
+                        }
+                    }), executor))
+                    .toArray(CompletableFuture[]::new)).join();
+        });
+        metrics.pageFinished(page.size());
+
+        // A rolled-back renewal is still due at its old date, so the next run has to sweep it again
+        if (!held) {
+            Subscription last = null;
+            for (Subscription subscription : page) {
+                if (rolledBack.contains(subscription.getId())) {
+                    held = true;
+                    log.info("Holding renewal watermark before failed subscription {}", subscription.getId());
+                    break;
+                }
+                last = subscription;
+            }
+            if (last != null) {
+                watermark.setNextBillingDate(last.getNextBillingDate());
+                watermark.setSubscriptionId(last.getId());
+            }
+        }
+        watermark.setProcessed(watermark.getProcessed() + renewed.get());
+        watermark.setFailed(watermark.getFailed() + failed.get());
+        watermark.setUpdatedAt(Instant.now());
+        watermarkRepository.save(watermark);
+        return held;
+    }
+
+    // PARKED failed for the last time and left the sweep, so the watermark may pass it
+    private enum Outcome { RENEWED, SKIPPED, FAILED, PARKED }
+
+    private Outcome charge(Subscription subscription, String status) {
+        Plan plan = planCatalog.find(subscription.getPlanId()).orElse(null);
+        if (plan == null || plan.getPrice() == null) {
+            log.warn("Skipping renewal of subscription {}: plan {} not found", subscription.getId(), subscription.getPlanId());
+            metrics.skipped();
+            return Outcome.SKIPPED;
+        }
+
+        LocalDate dueDate = subscription.getNextBillingDate();
+        LocalDate nextDate = nextBillingDate(dueDate, plan.getBillingCycle());
+
+        // Claim the renewal by advancing nextBillingDate; a concurrent or resumed run loses the race
+        if (!advanceBillingDate(subscription.getId(), status, dueDate, new Update()
+                .set("nextBillingDate", nextDate)
+                .unset("renewalAttempts"))) {
+            metrics.skipped();
+            return Outcome.SKIPPED;
+        }
+
+        try {
+            var payment = paymentServiceClient.initiateRenewalPayment(subscription, plan);
+            log.debug("Initiated renewal payment {} for subscription {}", payment != null ? payment.getId() : null, subscription.getId());
+            metrics.renewed(dueDate);
+            return Outcome.RENEWED;
+        } catch (Exception e) {
+            log.error("Failed to initiate renewal payment for subscription {}: {}", subscription.getId(), e.getMessage());
+            int attempts = (subscription.getRenewalAttempts() != null ? subscription.getRenewalAttempts() : 0) + 1;
+            Update rollBack = new Update()
+                    .set("nextBillingDate", dueDate)
+                    .set("renewalAttempts", attempts);
+            boolean park = attempts > maxRetryAttempts;
+            if (park) {
+                rollBack.set("status", "PAST_DUE");
+            }
+            advanceBillingDate(subscription.getId(), status, nextDate, rollBack);
+            metrics.failed();
+            eventPublisher.publishEvent(new RenewalFailedEvent(subscription.getId(), attempts));
+            if (park) {
+                log.warn("Parked subscription {} as PAST_DUE after {} failed charges for {}", subscription.getId(), attempts, dueDate);
+                entitlementService.invalidate(subscription.getUserId());
+                return Outcome.PARKED;
+            }
+            return Outcome.FAILED;
+        }
+    }
+
+    private boolean advanceBillingDate(String subscriptionId, String status, LocalDate from, Update update) {
+        Query claim = new Query(Criteria.where("_id").is(subscriptionId)
+                .and("status").is(status)
+                .and("nextBillingDate").is(from));
+        return mongoTemplate.updateFirst(claim, update, Subscription.class).getModifiedCount() == 1;
+    }
+
+    private int partitionOf(String subscriptionId) {
+        return Math.floorMod(subscriptionId.hashCode(), partitions);
+    }
+
+    static LocalDate nextBillingDate(LocalDate from, String billingCycle) {
+        return "YEARLY".equalsIgnoreCase(billingCycle) ? from.plusYears(1) : from.plusMonths(1);
+    }
+}
@@ -0,0 +1,11 @@
+package com.subnex.subscription.renewal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RenewalFailedEvent {
+    private final String subscriptionId;
+    private final int attempts; // failed charges so far for the same billing date
+}
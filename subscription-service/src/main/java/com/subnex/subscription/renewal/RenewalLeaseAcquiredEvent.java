@@ -0,0 +1,11 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.RenewalLease;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class RenewalLeaseAcquiredEvent {
+    private final RenewalLease lease;
+}
@@ -0,0 +1,170 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.RenewalLease;
+import com.subnex.subscription.model.RenewalMember;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits the renewal slot ring into a fixed number of ranges and keeps this replica's fair share
+ * of them leased in Mongo. Leases of a dead replica expire after the TTL and are claimed by the
+ * survivors on their next heartbeat.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalLeaseManager {
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${renewal.lease.count:16}")
+    private int leaseCount;
+
+    @Value("${renewal.lease.ttl-seconds:15}")
+    private long ttlSeconds;
+
+    private final Map<String, RenewalLease> owned = new ConcurrentHashMap<>();
+    private String instanceId;
+
+    @PostConstruct
+    public void init() {
+        instanceId = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+        int width = RenewalSlots.SLOT_COUNT / leaseCount;
+        for (int i = 0; i < leaseCount; i++) {
+            int from = i * width;
+            int to = i == leaseCount - 1 ? RenewalSlots.SLOT_COUNT : from + width;
+            mongoTemplate.upsert(
+                    new Query(Criteria.where("_id").is(leaseId(i))),
+                    new Update().setOnInsert("slotFrom", from).setOnInsert("slotTo", to),
+                    RenewalLease.class);
+        }
+
+        Gauge.builder("renewal.leases.owned", owned, Map::size).register(meterRegistry);
+        log.info("Renewal lease manager started as {} over {} slot ranges", instanceId, leaseCount);
+    }
+
+    @Scheduled(fixedDelayString = "${renewal.lease.heartbeat-ms:5000}")
+    public void heartbeat() {
+        Instant now = Instant.now();
+        Instant expiry = now.plusSeconds(ttlSeconds);
+
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(instanceId)),
+                new Update().set("expiresAt", expiry), RenewalMember.class);
+        mongoTemplate.remove(new Query(Criteria.where("expiresAt").lt(now.minusSeconds(ttlSeconds))), RenewalMember.class);
+
+        // Extend what we hold; anything we failed to extend was taken over after we stalled
+        for (String id : new ArrayList<>(owned.keySet())) {
+            boolean extended = mongoTemplate.updateFirst(
+                    new Query(Criteria.where("_id").is(id).and("owner").is(instanceId)),
+                    new Update().set("expiresAt", expiry), RenewalLease.class).getModifiedCount() == 1;
+            if (!extended) {
+                owned.remove(id);
+                log.warn("Lost renewal lease {}", id);
+            }
+        }
+
+        long members = Math.max(1, mongoTemplate.count(
+                new Query(Criteria.where("expiresAt").gt(now)), RenewalMember.class));
+        int fairShare = (int) Math.ceil((double) leaseCount / members);
+
+        // Hand surplus ranges back so newly joined replicas can pick them up
+        for (String id : new ArrayList<>(owned.keySet())) {
+            if (owned.size() <= fairShare) {
+                break;
+            }
+            release(id);
+        }
+
+        if (owned.size() < fairShare) {
+            claimExpired(now, expiry, fairShare);
+        }
+    }
+
+    public List<RenewalLease> ownedLeases() {
+        return new ArrayList<>(owned.values());
+    }
+
+    public boolean owns(String leaseId) {
+        return owned.containsKey(leaseId);
+    }
+
+    public boolean ownsSlot(int slot) {
+        return owned.values().stream().anyMatch(lease -> slot >= lease.getSlotFrom() && slot < lease.getSlotTo());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        new ArrayList<>(owned.keySet()).forEach(this::release);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(instanceId)), RenewalMember.class);
+    }
+
+    private void claimExpired(Instant now, Instant expiry, int fairShare) {
+        List<RenewalLease> candidates = mongoTemplate.find(new Query(claimable(new Criteria(), now)), RenewalLease.class);
+        for (RenewalLease candidate : candidates) {
+            if (owned.size() >= fairShare) {
+                return;
+            }
+            RenewalLease claimed = mongoTemplate.findAndModify(
+                    new Query(claimable(Criteria.where("_id").is(candidate.getId()), now)),
+                    new Update().set("owner", instanceId).set("expiresAt", expiry),
+                    FindAndModifyOptions.options().returnNew(true),
+                    RenewalLease.class);
+            if (claimed != null) {
+                owned.put(claimed.getId(), claimed);
+                log.info("Acquired renewal lease {} (slots {}-{})", claimed.getId(), claimed.getSlotFrom(), claimed.getSlotTo());
+                eventPublisher.publishEvent(new RenewalLeaseAcquiredEvent(claimed));
+            }
+        }
+    }
+
+    private static Criteria claimable(Criteria criteria, Instant now) {
+        return criteria.orOperator(
+                Criteria.where("owner").is(null),
+                Criteria.where("expiresAt").lt(now));
+    }
+
+    private void release(String id) {
+        owned.remove(id);
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(id).and("owner").is(instanceId)),
+                new Update().set("owner", null).set("expiresAt", Instant.EPOCH),
+                RenewalLease.class);
+        log.info("Released renewal lease {}", id);
+    }
+
+    private static String leaseId(int index) {
+        return "renewal-range-" + index;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "subscription-service";
+        }
+    }
+}
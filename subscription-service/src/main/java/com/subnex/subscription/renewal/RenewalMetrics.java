@@ -0,0 +1,59 @@
+package com.subnex.subscription.renewal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class RenewalMetrics {
+
+    private final Counter renewed;
+    private final Counter failed;
+    private final Counter skipped;
+    private final Timer pageTimer;
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+
+    public RenewalMetrics(MeterRegistry registry) {
+        this.renewed = Counter.builder("renewal.processed").tag("outcome", "renewed").register(registry);
+        this.failed = Counter.builder("renewal.processed").tag("outcome", "failed").register(registry);
+        this.skipped = Counter.builder("renewal.processed").tag("outcome", "skipped").register(registry);
+        this.pageTimer = Timer.builder("renewal.page.duration").register(registry);
+        Gauge.builder("renewal.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("How far behind its due date the most recently renewed subscription was")
+                .register(registry);
+        Gauge.builder("renewal.inflight", inFlight, AtomicLong::get).register(registry);
+    }
+
+    public void renewed(LocalDate dueDate) {
+        renewed.increment();
+        lagSeconds.set(Math.max(0, Duration.between(dueDate.atStartOfDay(), LocalDateTime.now()).getSeconds()));
+    }
+
+    public void failed() {
+        failed.increment();
+    }
+
+    public void skipped() {
+        skipped.increment();
+    }
+
+    public Timer pageTimer() {
+        return pageTimer;
+    }
+
+    public void pageStarted(int size) {
+        inFlight.addAndGet(size);
+    }
+
+    public void pageFinished(int size) {
+        inFlight.addAndGet(-size);
+    }
+}
@@ -0,0 +1,48 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.Subscription;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Assigns renewal slots to subscriptions created before sharding existed; idempotent across replicas
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalSlotBackfill {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        long updated = 0;
+        while (true) {
+            Query missing = new Query(Criteria.where("renewalSlot").exists(false)).limit(BATCH_SIZE);
+            missing.fields().include("_id");
+            List<Subscription> batch = mongoTemplate.find(missing, Subscription.class);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Subscription.class);
+            batch.forEach(sub -> ops.updateOne(
+                    new Query(Criteria.where("_id").is(sub.getId())),
+                    new Update().set("renewalSlot", RenewalSlots.slotOf(sub.getId()))));
+            updated += ops.execute().getModifiedCount();
+        }
+        if (updated > 0) {
+            log.info("Assigned renewal slots to {} subscriptions", updated);
+        }
+    }
+}
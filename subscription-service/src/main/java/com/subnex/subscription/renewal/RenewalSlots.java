@@ -0,0 +1,14 @@
+package com.subnex.subscription.renewal;
+
+// Subscriptions are hashed onto a fixed ring of slots; renewal leases claim contiguous slot ranges
+public final class RenewalSlots {
+
+    public static final int SLOT_COUNT = 1024;
+
+    private RenewalSlots() {
+    }
+
+    public static int slotOf(String subscriptionId) {
+        return Math.floorMod(subscriptionId.hashCode(), SLOT_COUNT);
+    }
+}
@@ -0,0 +1,232 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.RenewalLease;
+import com.subnex.subscription.model.Subscription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every renewal, trial end and retry due within the next few hours in a timing wheel
+ * and fires each one near its due time instead of in a single nightly batch. The wheel only
+ * holds subscriptions in slot ranges leased by this replica and is rebuilt from Mongo
+ * whenever a range is acquired.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RenewalTimer {
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_LEVELS = 4;
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    public enum Kind { RENEWAL, TRIAL_END, RETRY }
+
+    record Task(String subscriptionId, Kind kind) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final RenewalEngine renewalEngine;
+    private final RenewalLeaseManager leaseManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${renewal.wheel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${renewal.wheel.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${renewal.wheel.horizon-hours:24}")
+    private long horizonHours;
+
+    @Value("${renewal.retry.max-attempts:3}")
+    private int maxRetryAttempts;
+
+    @Value("${renewal.retry.backoff-minutes:15}")
+    private long retryBackoffMinutes;
+
+    private final Map<String, HierarchicalTimingWheel.Timeout<Task>> scheduled = new ConcurrentHashMap<>();
+    private final Map<Kind, Counter> fired = new ConcurrentHashMap<>();
+    private HierarchicalTimingWheel<Task> wheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        wheel = new HierarchicalTimingWheel<>(tickMs, WHEEL_SIZE, WHEEL_LEVELS, System.currentTimeMillis());
+        for (Kind kind : Kind.values()) {
+            fired.put(kind, Counter.builder("renewal.wheel.fired").tag("kind", kind.name()).register(meterRegistry));
+        }
+        Gauge.builder("renewal.wheel.size", wheel, HierarchicalTimingWheel::size).register(meterRegistry);
+
+        ticker = Executors.newSingleThreadScheduledExecutor();
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    public void schedule(Subscription subscription) {
+        if (!enabled) {
+            return;
+        }
+        int slot = subscription.getRenewalSlot() != null
+                ? subscription.getRenewalSlot()
+                : RenewalSlots.slotOf(subscription.getId());
+        if (!leaseManager.ownsSlot(slot)) {
+            return;
+        }
+
+        boolean trial = "TRIAL".equals(subscription.getStatus()) && subscription.getTrialEndDate() != null;
+        boolean renewing = "ACTIVE".equals(subscription.getStatus()) && subscription.isAutoRenew()
+                && subscription.getNextBillingDate() != null;
+        int attempts = subscription.getRenewalAttempts() != null ? subscription.getRenewalAttempts() : 0;
+        if ((trial || renewing) && attempts > 0) {
+            // Already failed for this date: keep to the retry schedule, or stay given up
+            scheduleRetry(subscription.getId(), attempts);
+        } else if (trial) {
+            scheduleWithinHorizon(new Task(subscription.getId(), Kind.TRIAL_END),
+                    dueAt(subscription.getId(), subscription.getTrialEndDate()));
+        } else if (renewing) {
+            scheduleWithinHorizon(new Task(subscription.getId(), Kind.RENEWAL),
+                    dueAt(subscription.getId(), subscription.getNextBillingDate()));
+        }
+    }
+
+    public void unschedule(String subscriptionId) {
+        if (!enabled) {
+            return;
+        }
+        wheel.cancel(scheduled.remove(subscriptionId));
+    }
+
+    @EventListener
+    public void onRenewalFailed(RenewalFailedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (!scheduleRetry(event.getSubscriptionId(), event.getAttempts())) {
+            log.warn("Giving up renewal retries for subscription {} after {} attempts", event.getSubscriptionId(), maxRetryAttempts);
+        }
+    }
+
+    // The attempt count lives on the subscription, so reloads and other replicas honour the same limit
+    private boolean scheduleRetry(String subscriptionId, int attempts) {
+        if (attempts > maxRetryAttempts) {
+            return false;
+        }
+        long dueAt = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(retryBackoffMinutes * attempts);
+        put(new Task(subscriptionId, Kind.RETRY), dueAt);
+        return true;
+    }
+
+    @EventListener
+    public void onLeaseAcquired(RenewalLeaseAcquiredEvent event) {
+        if (enabled) {
+            renewalEngine.dispatch(() -> load(event.getLease()));
+        }
+    }
+
+    // Pulls subscriptions that have drifted into the horizon since the last load
+    @Scheduled(fixedDelayString = "${renewal.wheel.reload-ms:900000}", initialDelayString = "${renewal.wheel.reload-ms:900000}")
+    public void reload() {
+        if (enabled) {
+            leaseManager.ownedLeases().forEach(this::load);
+        }
+    }
+
+    private void load(RenewalLease lease) {
+        LocalDate today = LocalDate.now();
+        LocalDate horizonEnd = today.plusDays(TimeUnit.HOURS.toDays(horizonHours) + 1);
+
+        Criteria inRange = Criteria.where("renewalSlot").gte(lease.getSlotFrom()).lt(lease.getSlotTo());
+        Query query = new Query(new Criteria().andOperator(inRange, new Criteria().orOperator(
+                Criteria.where("status").is("ACTIVE").and("autoRenew").is(true)
+                        .and("nextBillingDate").gte(today).lte(horizonEnd),
+                Criteria.where("status").is("TRIAL").and("trialEndDate").lte(horizonEnd))));
+        query.fields().include("status", "autoRenew", "nextBillingDate", "trialEndDate", "renewalSlot", "renewalAttempts");
+
+        int loaded = 0;
+        try (Stream<Subscription> due = mongoTemplate.stream(query, Subscription.class)) {
+            for (var cursor = due.iterator(); cursor.hasNext(); ) {
+                Subscription subscription = cursor.next();
+                if (!scheduled.containsKey(subscription.getId())) {
+                    schedule(subscription);
+                    loaded++;
+                }
+            }
+        }
+        log.info("Loaded {} upcoming renewals and trial ends for {}", loaded, lease.getId());
+    }
+
+    private void scheduleWithinHorizon(Task task, long dueAt) {
+        if (dueAt - System.currentTimeMillis() <= TimeUnit.HOURS.toMillis(horizonHours)) {
+            put(task, dueAt);
+        }
+    }
+
+    private void put(Task task, long dueAt) {
+        HierarchicalTimingWheel.Timeout<Task> timeout = wheel.schedule(task, dueAt);
+        if (timeout == null) {
+            fire(task);
+            return;
+        }
+        wheel.cancel(scheduled.put(task.subscriptionId(), timeout));
+    }
+
+    private void tick() {
+        try {
+            wheel.advanceTo(System.currentTimeMillis()).forEach(task -> {
+                scheduled.computeIfPresent(task.subscriptionId(),
+                        (id, timeout) -> timeout.getPayload() == task ? null : timeout);
+                fire(task);
+            });
+        } catch (Exception e) {
+            log.error("Renewal timer tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void fire(Task task) {
+        fired.get(task.kind()).increment();
+        renewalEngine.dispatch(() -> {
+            if (task.kind() == Kind.TRIAL_END) {
+                renewalEngine.endTrial(task.subscriptionId());
+            } else {
+                renewalEngine.renewNow(task.subscriptionId());
+            }
+        });
+    }
+
+    // Spread each day's renewals over the whole day by a stable per-subscription offset
+    static long dueAt(String subscriptionId, LocalDate date) {
+        long startOfDay = date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return startOfDay + TimeUnit.SECONDS.toMillis(Math.floorMod(subscriptionId.hashCode(), SECONDS_PER_DAY));
+    }
+}
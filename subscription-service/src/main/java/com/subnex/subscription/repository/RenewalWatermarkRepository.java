@@ -0,0 +1,7 @@
+package com.subnex.subscription.repository;
+
+import com.subnex.subscription.model.RenewalWatermark;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface RenewalWatermarkRepository extends MongoRepository<RenewalWatermark, String> {
+}
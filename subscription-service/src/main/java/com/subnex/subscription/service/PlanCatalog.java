@@ -0,0 +1,141 @@
+package com.subnex.subscription.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.repository.PlanRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process copy of the plan catalog. Reads are served from an immutable snapshot that is
+ * swapped whenever a plan changes, so the hot catalog and subscribe paths never touch Mongo.
+ * Each snapshot also carries the catalog pre-serialized to JSON (plain and gzip) with a
+ * content-derived ETag, so polling clients cost neither serialization nor bandwidth.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PlanCatalog {
+
+    private final PlanRepository planRepository;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    // Safety net for change events lost while a replica was disconnected from Kafka
+    @Scheduled(fixedDelayString = "${plans.catalog.refresh-ms:600000}", initialDelayString = "${plans.catalog.refresh-ms:600000}")
+    public synchronized void reload() {
+        Map<String, Plan> plans = new LinkedHashMap<>();
+        planRepository.findAll().forEach(plan -> plans.put(plan.getId(), plan));
+        snapshot = snapshot(plans);
+        log.info("Loaded plan catalog version {} with {} plans", snapshot.version, plans.size());
+    }
+
+    // Re-reads one plan after it changed on this or another replica
+    public void refresh(String planId) {
+        planRepository.findById(planId).ifPresentOrElse(this::put, () -> remove(planId));
+    }
+
+    public synchronized void put(Plan plan) {
+        Map<String, Plan> plans = new LinkedHashMap<>(snapshot.plans);
+        plans.put(plan.getId(), plan);
+        snapshot = snapshot(plans);
+    }
+
+    public List<Plan> getAll() {
+        return snapshot.all;
+    }
+
+    // Read-through: a plan created on another replica may not have reached us yet
+    public Optional<Plan> find(String planId) {
+        Plan plan = snapshot.plans.get(planId);
+        if (plan != null) {
+            return Optional.of(plan);
+        }
+        Optional<Plan> loaded = planRepository.findById(planId);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    public long version() {
+        return snapshot.version;
+    }
+
+    private synchronized void remove(String planId) {
+        Map<String, Plan> plans = new LinkedHashMap<>(snapshot.plans);
+        if (plans.remove(planId) != null) {
+            snapshot = snapshot(plans);
+        }
+    }
+
+    public Representation representation() {
+        return snapshot.representation;
+    }
+
+    private Snapshot snapshot(Map<String, Plan> plans) {
+        long version = snapshot == null ? 1 : snapshot.version + 1;
+        List<Plan> all = List.copyOf(plans.values());
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(all);
+            // Derived from content rather than version so every replica hands out the same tag
+            String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json), 0, 16);
+            Representation representation = new Representation(
+                    json, gzip(json), "\"" + hash + "\"", "\"" + hash + "-gzip\"");
+            return new Snapshot(version, plans, all, representation);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize plan catalog", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Callers must not modify the arrays
+    public record Representation(byte[] json, byte[] gzip, String etag, String gzipEtag) {
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final Map<String, Plan> plans;
+        private final List<Plan> all;
+        private final Representation representation;
+
+        private Snapshot(long version, Map<String, Plan> plans, List<Plan> all, Representation representation) {
+            this.version = version;
+            this.plans = Collections.unmodifiableMap(plans);
+            this.all = all;
+            this.representation = representation;
+        }
+    }
+}
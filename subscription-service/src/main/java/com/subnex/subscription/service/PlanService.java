@@ -1,6 +1,7 @@
 package com.subnex.subscription.service;
 
 import com.subnex.subscription.dto.CreatePlanRequest;
+import com.subnex.subscription.kafka.PlanEventProducer;
 import com.subnex.subscription.model.Plan;
 import com.subnex.subscription.repository.PlanRepository;
 import lombok.RequiredArgsConstructor;
@@ -13,6 +14,8 @@ import java.util.List;
 public class PlanService {
 
     private final PlanRepository planRepository;
+    private final PlanCatalog planCatalog;
+    private final PlanEventProducer planEventProducer;
 
     public Plan createPlan(CreatePlanRequest request) {
         Plan plan = Plan.builder()
@@ -25,21 +28,34 @@ public class PlanService {
                 .active(true)
                 .build();
 
-        return planRepository.save(plan);
+        Plan saved = planRepository.save(plan);
+        planCatalog.put(saved);
+        planEventProducer.publishPlanChanged(saved.getId(), "CREATED");
+        return saved;
     }
 
     public List<Plan> getAllPlans() {
-        return planRepository.findAll();
+        return planCatalog.getAll();
+    }
+
+    public PlanCatalog.Representation getCatalogRepresentation() {
+        return planCatalog.representation();
     }
 
     public Plan getPlanById(String id) {
-        return planRepository.findById(id)
+        return planCatalog.find(id)
                 .orElseThrow(() -> new RuntimeException("Plan not found"));
     }
 
     public Plan deactivatePlan(String id) {
-        Plan plan = getPlanById(id);
+        // Mutate a fresh copy, cached plans are shared with concurrent readers
+        Plan plan = planRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Plan not found"));
         plan.setActive(false);
-        return planRepository.save(plan);
+
+        Plan saved = planRepository.save(plan);
+        planCatalog.put(saved);
+        planEventProducer.publishPlanChanged(saved.getId(), "DEACTIVATED");
+        return saved;
     }
 }
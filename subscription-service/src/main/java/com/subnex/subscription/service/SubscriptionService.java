@@ -1,11 +1,19 @@
 package com.subnex.subscription.service;
 
 import com.subnex.subscription.dto.SubscribeRequest;
+import com.subnex.subscription.entitlement.EntitlementService;
 import com.subnex.subscription.model.Plan;
 import com.subnex.subscription.model.Subscription;
-import com.subnex.subscription.repository.PlanRepository;
+import com.subnex.subscription.renewal.RenewalSlots;
+import com.subnex.subscription.renewal.RenewalTimer;
 import com.subnex.subscription.repository.SubscriptionRepository;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -15,8 +23,13 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SubscriptionService {
 
+    private static final List<String> CANCELLABLE_STATUSES = List.of("ACTIVE", "TRIAL", "PAST_DUE");
+
     private final SubscriptionRepository subscriptionRepository;
-    private final PlanRepository planRepository;
+    private final MongoTemplate mongoTemplate;
+    private final PlanCatalog planCatalog;
+    private final RenewalTimer renewalTimer;
+    private final EntitlementService entitlementService;
 
     public Subscription getSubscriptionById(String id) {
         return subscriptionRepository.findById(id)
@@ -25,30 +38,56 @@ public class SubscriptionService {
 
     public Subscription subscribe(SubscribeRequest request) {
 
-        Plan plan = planRepository.findById(request.getPlanId())
+        Plan plan = planCatalog.find(request.getPlanId())
                 .orElseThrow(() -> new RuntimeException("Plan not found"));
 
         LocalDate startDate = LocalDate.now();
-        LocalDate nextBillingDate = startDate.plusMonths(1);
+        boolean trial = plan.getTrialDays() != null && plan.getTrialDays() > 0;
+        LocalDate trialEndDate = trial ? startDate.plusDays(plan.getTrialDays()) : null;
+        // A trial defers the first charge to the day it ends
+        LocalDate nextBillingDate = trial ? trialEndDate : startDate.plusMonths(1);
+
+        // Assign the id up front so the renewal slot can be derived from it
+        String id = new ObjectId().toHexString();
 
         Subscription subscription = Subscription.builder()
+                .id(id)
                 .userId(request.getUserId())
                 .planId(plan.getId())
-                .status("ACTIVE")
+                .status(trial ? "TRIAL" : "ACTIVE")
                 .startDate(startDate)
+                .trialEndDate(trialEndDate)
                 .nextBillingDate(nextBillingDate)
                 .autoRenew(request.isAutoRenew())
+                .renewalSlot(RenewalSlots.slotOf(id))
                 .build();
 
-        return subscriptionRepository.save(subscription);
+        Subscription saved = subscriptionRepository.save(subscription);
+        renewalTimer.schedule(saved);
+        entitlementService.onSubscriptionChanged(saved);
+        return saved;
     }
 
+    // Single guarded update, so a concurrent renewal or trial end cannot revive a cancelled subscription
     public Subscription cancelSubscription(String id) {
-        Subscription subscription = subscriptionRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Subscription not found"));
+        Subscription saved = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id).and("status").in(CANCELLABLE_STATUSES)),
+                new Update().set("status", "CANCELLED"),
+                FindAndModifyOptions.options().returnNew(true),
+                Subscription.class);
+
+        if (saved == null) {
+            Subscription current = subscriptionRepository.findById(id)
+                    .orElseThrow(() -> new RuntimeException("Subscription not found"));
+            if (!"CANCELLED".equals(current.getStatus())) {
+                throw new RuntimeException("Subscription cannot be cancelled from status " + current.getStatus());
+            }
+            return current;
+        }
 
-        subscription.setStatus("CANCELLED");
-        return subscriptionRepository.save(subscription);
+        renewalTimer.unschedule(id);
+        entitlementService.onSubscriptionChanged(saved);
+        return saved;
     }
 
     public List<Subscription> getSubscriptionsByUserId(String userId) {
@@ -0,0 +1,190 @@
+package com.subnex.subscription.usage;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.subnex.subscription.model.UsageBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-aggregates usage per (subscription, meter, time bucket) in striped {@link LongAdder}s and
+ * periodically flushes the deltas as {@code $inc} upserts in unordered bulk writes, so Mongo sees
+ * one write per active bucket per flush instead of one per event. Every batch carries a flush id
+ * that the bucket records when the increment is applied; a batch whose outcome is unknown is
+ * re-sent unchanged on the next flush, and the bucket skips it if that id is already recorded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UsageAggregator {
+
+    // Enough to cover every flush that can still be retried; older ids are trimmed from the bucket
+    private static final int APPLIED_FLUSHES_KEPT = 32;
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${usage.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${usage.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    private final Map<BucketKey, Tally> counters = new ConcurrentHashMap<>();
+    private final Queue<Batch> unconfirmed = new ConcurrentLinkedQueue<>();
+    private long bucketMs;
+    private Counter ingested;
+    private Counter written;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        bucketMs = TimeUnit.MINUTES.toMillis(bucketMinutes);
+        ingested = Counter.builder("usage.events.ingested").register(meterRegistry);
+        written = Counter.builder("usage.buckets.written").register(meterRegistry);
+        flushTimer = Timer.builder("usage.flush.duration").register(meterRegistry);
+        Gauge.builder("usage.buckets.pending", counters, Map::size).register(meterRegistry);
+        Gauge.builder("usage.batches.unconfirmed", unconfirmed, Queue::size).register(meterRegistry);
+    }
+
+    public void record(String subscriptionId, String meter, long quantity, Instant timestamp) {
+        long epochMs = timestamp.toEpochMilli();
+        add(new BucketKey(subscriptionId, meter, epochMs - Math.floorMod(epochMs, bucketMs)), quantity);
+        ingested.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${usage.flush-ms:5000}")
+    public synchronized void flush() {
+        flushTimer.record(() -> {
+            for (int i = unconfirmed.size(); i > 0; i--) {
+                write(unconfirmed.poll());
+            }
+
+            // Buckets closed for a while with nothing pending are dropped so the map tracks only live buckets
+            long idleBefore = System.currentTimeMillis() - 2 * bucketMs;
+            List<Delta> deltas = new ArrayList<>();
+            for (Map.Entry<BucketKey, Tally> entry : counters.entrySet()) {
+                Tally tally = entry.getValue();
+                long quantity = tally.sumThenReset();
+                if (quantity == 0 && entry.getKey().bucketStart() < idleBefore) {
+                    counters.computeIfPresent(entry.getKey(), (key, current) -> {
+                        if (current != tally) {
+                            return current;
+                        }
+                        tally.retired = true;
+                        return null;
+                    });
+                    quantity = tally.sumThenReset(); // adds that landed before the tally was retired
+                }
+                if (quantity != 0) {
+                    deltas.add(new Delta(entry.getKey(), quantity));
+                }
+            }
+
+            for (int from = 0; from < deltas.size(); from += flushBatchSize) {
+                write(new Batch(UUID.randomUUID().toString(),
+                        List.copyOf(deltas.subList(from, Math.min(from + flushBatchSize, deltas.size())))));
+            }
+            if (!deltas.isEmpty()) {
+                log.debug("Flushed {} usage buckets", deltas.size());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void write(Batch batch) {
+        Instant now = Instant.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UsageBucket.class);
+        for (Delta delta : batch.deltas()) {
+            BucketKey key = delta.key();
+            // A bucket that already applied this flush does not match, and the upsert then fails with a duplicate key
+            ops.upsert(new Query(Criteria.where("_id").is(key.id()).and("appliedFlushes").ne(batch.flushId())),
+                    new Update().inc("quantity", delta.quantity())
+                            .setOnInsert("subscriptionId", key.subscriptionId())
+                            .setOnInsert("meter", key.meter())
+                            .setOnInsert("bucketStart", Instant.ofEpochMilli(key.bucketStart()))
+                            .set("updatedAt", now)
+                            .push("appliedFlushes").slice(-APPLIED_FLUSHES_KEPT).each(batch.flushId()));
+        }
+        try {
+            ops.execute();
+            written.increment(batch.deltas().size());
+        } catch (BulkOperationException e) {
+            // Unordered: only the reported writes failed; a duplicate key means an earlier attempt was applied
+            List<Delta> failed = new ArrayList<>();
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    failed.add(batch.deltas().get(error.getIndex()));
+                }
+            }
+            written.increment(batch.deltas().size() - failed.size());
+            if (!failed.isEmpty()) {
+                unconfirmed.add(new Batch(batch.flushId(), failed));
+                log.error("Failed to flush {} of {} usage buckets: {}", failed.size(), batch.deltas().size(), e.getMessage());
+            }
+        } catch (Exception e) {
+            // Some writes may have been applied; re-sending under the same flush id cannot count them twice
+            unconfirmed.add(batch);
+            log.error("Failed to flush {} usage buckets: {}", batch.deltas().size(), e.getMessage());
+        }
+    }
+
+    private void add(BucketKey key, long quantity) {
+        while (quantity != 0) {
+            Tally tally = counters.get(key);
+            if (tally == null) {
+                tally = counters.computeIfAbsent(key, k -> new Tally());
+            }
+            tally.add(quantity);
+            // A flush retired the tally meanwhile: whatever it has not drained moves to a fresh one
+            quantity = tally.retired ? tally.sumThenReset() : 0;
+        }
+    }
+
+    // Retired once removed from the map, so writers still holding it know to move their adds
+    private static final class Tally extends LongAdder {
+        private volatile boolean retired;
+    }
+
+    record BucketKey(String subscriptionId, String meter, long bucketStart) {
+        String id() {
+            return subscriptionId + ":" + meter + ":" + bucketStart;
+        }
+    }
+
+    private record Delta(BucketKey key, long quantity) {
+    }
+
+    private record Batch(String flushId, List<Delta> deltas) {
+    }
+}
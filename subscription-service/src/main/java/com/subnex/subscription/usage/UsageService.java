@@ -0,0 +1,94 @@
+package com.subnex.subscription.usage;
+
+import com.subnex.subscription.dto.UsageEvent;
+import com.subnex.subscription.dto.UsageIngestResponse;
+import com.subnex.subscription.dto.UsageSummaryResponse;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.Subscription;
+import com.subnex.subscription.model.UsageBucket;
+import com.subnex.subscription.repository.SubscriptionRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+@RequiredArgsConstructor
+public class UsageService {
+
+    private final UsageAggregator usageAggregator;
+    private final MongoTemplate mongoTemplate;
+    private final SubscriptionRepository subscriptionRepository;
+    private final PlanCatalog planCatalog;
+
+    public UsageIngestResponse ingest(List<UsageEvent> events) {
+        int accepted = 0;
+        Instant now = Instant.now();
+        for (UsageEvent event : events) {
+            if (record(event, now)) {
+                accepted++;
+            }
+        }
+        return new UsageIngestResponse(accepted, events.size() - accepted);
+    }
+
+    public boolean record(UsageEvent event, Instant receivedAt) {
+        if (event == null || event.getSubscriptionId() == null || event.getMeter() == null
+                || event.getQuantity() == null || event.getQuantity() <= 0) {
+            return false;
+        }
+        usageAggregator.record(event.getSubscriptionId(), event.getMeter(), event.getQuantity(),
+                event.getTimestamp() != null ? event.getTimestamp() : receivedAt);
+        return true;
+    }
+
+    // Flushed totals per meter; without an explicit range this is the current billing period
+    public UsageSummaryResponse getUsage(String subscriptionId, String meter, Instant from, Instant to) {
+        if (from == null || to == null) {
+            Subscription subscription = subscriptionRepository.findById(subscriptionId)
+                    .orElseThrow(() -> new RuntimeException("Subscription not found"));
+            Plan plan = planCatalog.find(subscription.getPlanId())
+                    .orElseThrow(() -> new RuntimeException("Plan not found"));
+            LocalDate periodEnd = subscription.getNextBillingDate() != null
+                    ? subscription.getNextBillingDate()
+                    : LocalDate.now().plusDays(1);
+            LocalDate periodStart = "YEARLY".equalsIgnoreCase(plan.getBillingCycle())
+                    ? periodEnd.minusYears(1)
+                    : periodEnd.minusMonths(1);
+            from = from != null ? from : periodStart.atStartOfDay(ZoneId.systemDefault()).toInstant();
+            to = to != null ? to : periodEnd.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        }
+
+        Criteria criteria = Criteria.where("subscriptionId").is(subscriptionId);
+        if (meter != null) {
+            criteria = criteria.and("meter").is(meter);
+        }
+        criteria = criteria.and("bucketStart").gte(from).lt(to);
+
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                Aggregation.group("meter").sum("quantity").as("total"));
+
+        Map<String, Long> totals = new TreeMap<>();
+        for (Document result : mongoTemplate.aggregate(aggregation, UsageBucket.class, Document.class)) {
+            totals.put(result.getString("_id"), ((Number) result.get("total")).longValue());
+        }
+
+        return UsageSummaryResponse.builder()
+                .subscriptionId(subscriptionId)
+                .from(from)
+                .to(to)
+                .totals(totals)
+                .build();
+    }
+}
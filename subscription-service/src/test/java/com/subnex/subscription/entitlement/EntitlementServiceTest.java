@@ -0,0 +1,176 @@
+package com.subnex.subscription.entitlement;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.Subscription;
+import com.subnex.subscription.repository.SubscriptionRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EntitlementServiceTest {
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+
+    @Mock
+    private PlanCatalog planCatalog;
+
+    private EntitlementService entitlementService;
+
+    private List<Plan> plans;
+
+    @BeforeEach
+    void setUp() {
+        plans = new ArrayList<>(List.of(
+                Plan.builder().id("basic").features(List.of("reports")).active(true).build(),
+                Plan.builder().id("pro").features(List.of("reports", "api", "sso")).active(true).build()));
+        lenient().when(planCatalog.getAll()).thenAnswer(invocation -> plans);
+        lenient().when(planCatalog.version()).thenReturn(1L);
+
+        entitlementService = new EntitlementService(subscriptionRepository, planCatalog, new FeatureDictionary());
+        ReflectionTestUtils.setField(entitlementService, "ttlMs", 60_000L);
+        ReflectionTestUtils.setField(entitlementService, "maxUsers", 1000);
+        entitlementService.init();
+    }
+
+    @Test
+    void testIsAllowed_ReflectsActiveSubscriptionPlan() {
+        // Given
+        when(subscriptionRepository.findByUserId("user1")).thenReturn(List.of(subscription("sub1", "basic", "ACTIVE")));
+
+        // When / Then
+        assertTrue(entitlementService.isAllowed("user1", "reports"));
+        assertFalse(entitlementService.isAllowed("user1", "api"));
+        assertFalse(entitlementService.isAllowed("user1", "unknown"));
+    }
+
+    @Test
+    void testIsAllowed_IgnoresCancelledSubscriptions() {
+        // Given
+        when(subscriptionRepository.findByUserId("user1")).thenReturn(List.of(subscription("sub1", "pro", "CANCELLED")));
+
+        // When / Then
+        assertFalse(entitlementService.isAllowed("user1", "api"));
+    }
+
+    @Test
+    void testOnSubscriptionChanged_UpdatesCachedUserWithoutReload() {
+        // Given
+        when(subscriptionRepository.findByUserId("user1")).thenReturn(List.of(subscription("sub1", "basic", "ACTIVE")));
+        assertFalse(entitlementService.isAllowed("user1", "sso"));
+
+        // When
+        entitlementService.onSubscriptionChanged(subscription("sub2", "pro", "ACTIVE"));
+
+        // Then
+        assertTrue(entitlementService.isAllowed("user1", "sso"));
+
+        // When
+        entitlementService.onSubscriptionChanged(subscription("sub2", "pro", "CANCELLED"));
+
+        // Then
+        assertFalse(entitlementService.isAllowed("user1", "sso"));
+        verify(subscriptionRepository, times(1)).findByUserId("user1");
+    }
+
+    @Test
+    void testIsAllowed_PicksUpPlanFeatureChanges() {
+        // Given
+        when(subscriptionRepository.findByUserId("user1")).thenReturn(List.of(subscription("sub1", "basic", "ACTIVE")));
+        assertFalse(entitlementService.isAllowed("user1", "exports"));
+
+        // When
+        plans.set(0, Plan.builder().id("basic").features(List.of("reports", "exports")).active(true).build());
+        when(planCatalog.version()).thenReturn(2L);
+
+        // Then
+        assertTrue(entitlementService.isAllowed("user1", "exports"));
+        verify(subscriptionRepository, times(1)).findByUserId("user1");
+    }
+
+    @Test
+    void testCheck_ReturnsEveryUserFeatureCombination() {
+        // Given
+        when(subscriptionRepository.findByUserIdIn(Set.of("user1", "user2"))).thenReturn(List.of(
+                subscription("user1", "sub1", "basic", "ACTIVE"),
+                subscription("user2", "sub2", "pro", "TRIAL")));
+
+        // When
+        Map<String, Map<String, Boolean>> result = entitlementService.check(List.of("user1", "user2"), List.of("reports", "api"));
+
+        // Then
+        assertEquals(Map.of("reports", true, "api", false), result.get("user1"));
+        assertEquals(Map.of("reports", true, "api", true), result.get("user2"));
+    }
+
+    @Test
+    void testCheck_LoadsOnlyUncachedUsersInOneQuery() {
+        // Given
+        when(subscriptionRepository.findByUserId("user1")).thenReturn(List.of(subscription("sub1", "pro", "ACTIVE")));
+        assertTrue(entitlementService.isAllowed("user1", "api"));
+        when(subscriptionRepository.findByUserIdIn(Set.of("user2", "user3"))).thenReturn(List.of(
+                subscription("user2", "sub2", "basic", "ACTIVE"),
+                subscription("user3", "sub3", "pro", "CANCELLED")));
+
+        // When
+        Map<String, Map<String, Boolean>> result = entitlementService.check(
+                List.of("user1", "user2", "user3", "user2"), List.of("api"));
+
+        // Then
+        assertEquals(Map.of("api", true), result.get("user1"));
+        assertEquals(Map.of("api", false), result.get("user2"));
+        assertEquals(Map.of("api", false), result.get("user3"));
+        verify(subscriptionRepository, times(1)).findByUserIdIn(anyCollection());
+        verify(subscriptionRepository, times(1)).findByUserId(anyString());
+
+        // When: every user is cached now
+        entitlementService.check(List.of("user1", "user2", "user3"), List.of("api"));
+
+        // Then
+        verifyNoMoreInteractions(subscriptionRepository);
+    }
+
+    @Test
+    void testIsAllowed_KeepsAtMostMaxUsersCached() {
+        // Given
+        ReflectionTestUtils.setField(entitlementService, "maxUsers", 2);
+        entitlementService.init();
+        for (String userId : List.of("user1", "user2", "user3", "user4")) {
+            when(subscriptionRepository.findByUserId(userId)).thenReturn(List.of(subscription(userId, "sub-" + userId, "basic", "ACTIVE")));
+        }
+
+        // When
+        for (String userId : List.of("user1", "user2", "user3", "user4")) {
+            assertTrue(entitlementService.isAllowed(userId, "reports"));
+        }
+
+        // Then
+        Cache<?, ?> users = (Cache<?, ?>) ReflectionTestUtils.getField(entitlementService, "users");
+        users.cleanUp();
+        assertEquals(2, users.estimatedSize());
+    }
+
+    private static Subscription subscription(String id, String planId, String status) {
+        return subscription("user1", id, planId, status);
+    }
+
+    private static Subscription subscription(String userId, String id, String planId, String status) {
+        return Subscription.builder().id(id).userId(userId).planId(planId).status(status).build();
+    }
+}
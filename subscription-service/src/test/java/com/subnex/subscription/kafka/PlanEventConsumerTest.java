@@ -0,0 +1,121 @@
+package com.subnex.subscription.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.dto.PlanChangedEvent;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.repository.PlanRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlanEventConsumerTest {
+
+    @Mock
+    private PlanRepository planRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private PlanCatalog planCatalog;
+
+    private PlanEventConsumer planEventConsumer;
+
+    private Plan basicPlan;
+
+    @BeforeEach
+    void setUp() {
+        basicPlan = plan("plan1", 9.99, true);
+        when(planRepository.findAll()).thenReturn(List.of(basicPlan));
+        planCatalog = new PlanCatalog(planRepository, objectMapper);
+        planCatalog.init();
+        planEventConsumer = new PlanEventConsumer(planCatalog, objectMapper);
+    }
+
+    @Test
+    void testConsumePlanEvent_RefreshesChangedPlan() throws Exception {
+        // Given
+        long version = planCatalog.version();
+        String etag = planCatalog.representation().etag();
+        when(planRepository.findById("plan1")).thenReturn(Optional.of(plan("plan1", 12.99, false)));
+
+        // When
+        planEventConsumer.consumePlanEvent(event("plan1", "DEACTIVATED"));
+
+        // Then
+        Plan cached = planCatalog.find("plan1").orElseThrow();
+        assertEquals(12.99, cached.getPrice());
+        assertFalse(cached.isActive());
+        assertTrue(planCatalog.version() > version);
+        assertNotEquals(etag, planCatalog.representation().etag());
+        verify(planRepository, times(1)).findById("plan1");
+    }
+
+    @Test
+    void testConsumePlanEvent_AddsPlanCreatedOnAnotherReplica() throws Exception {
+        // Given
+        when(planRepository.findById("plan2")).thenReturn(Optional.of(plan("plan2", 29.99, true)));
+
+        // When
+        planEventConsumer.consumePlanEvent(event("plan2", "CREATED"));
+
+        // Then
+        assertEquals(List.of("plan1", "plan2"), planCatalog.getAll().stream().map(Plan::getId).toList());
+        assertTrue(planCatalog.find("plan2").isPresent());
+        verify(planRepository, times(1)).findById("plan2");
+    }
+
+    @Test
+    void testConsumePlanEvent_InvalidatesDeletedPlan() throws Exception {
+        // Given
+        when(planRepository.findById("plan1")).thenReturn(Optional.empty());
+
+        // When
+        planEventConsumer.consumePlanEvent(event("plan1", "DEACTIVATED"));
+
+        // Then
+        assertTrue(planCatalog.getAll().isEmpty());
+    }
+
+    @Test
+    void testConsumePlanEvent_IgnoresMalformedMessage() {
+        // Given
+        long version = planCatalog.version();
+
+        // When
+        planEventConsumer.consumePlanEvent("not-json");
+
+        // Then
+        assertEquals(version, planCatalog.version());
+        assertEquals(List.of(basicPlan), planCatalog.getAll());
+        verify(planRepository, never()).findById(anyString());
+    }
+
+    private String event(String planId, String changeType) throws Exception {
+        return objectMapper.writeValueAsString(PlanChangedEvent.builder()
+                .planId(planId)
+                .changeType(changeType)
+                .timestamp(Instant.now())
+                .build());
+    }
+
+    private static Plan plan(String id, double price, boolean active) {
+        return Plan.builder()
+                .id(id)
+                .name("BASIC")
+                .price(price)
+                .currency("USD")
+                .billingCycle("MONTHLY")
+                .active(active)
+                .build();
+    }
+}
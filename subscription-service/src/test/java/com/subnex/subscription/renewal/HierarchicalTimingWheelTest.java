@@ -0,0 +1,92 @@
+package com.subnex.subscription.renewal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 1000;
+
+    private HierarchicalTimingWheel<String> wheel;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 3, 0);
+    }
+
+    @Test
+    void testFiresEntryInFirstLevelAtDeadline() {
+        // Given
+        wheel.schedule("sub1", 5_000);
+
+        // When
+        List<String> early = wheel.advanceTo(4_000);
+        List<String> due = wheel.advanceTo(5_000);
+
+        // Then
+        assertTrue(early.isEmpty());
+        assertEquals(List.of("sub1"), due);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testCascadesEntriesFromHigherLevels() {
+        // Given - 8 ticks per level-0 rotation, 64 per level-1 rotation
+        wheel.schedule("level1", 20_000);
+        wheel.schedule("level2", 150_000);
+
+        // When
+        List<String> fired = new ArrayList<>();
+        long firstFireAt = -1;
+        for (long now = 1_000; now <= 150_000; now += 1_000) {
+            List<String> due = wheel.advanceTo(now);
+            if (due.contains("level1")) {
+                firstFireAt = now;
+            }
+            fired.addAll(due);
+        }
+
+        // Then
+        assertEquals(List.of("level1", "level2"), fired);
+        assertEquals(20_000, firstFireAt);
+    }
+
+    @Test
+    void testCancelRemovesEntry() {
+        // Given
+        HierarchicalTimingWheel.Timeout<String> timeout = wheel.schedule("sub1", 30_000);
+
+        // When
+        boolean cancelled = wheel.cancel(timeout);
+        List<String> fired = wheel.advanceTo(60_000);
+
+        // Then
+        assertTrue(cancelled);
+        assertFalse(wheel.cancel(timeout));
+        assertTrue(fired.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testScheduleReturnsNullForPastDeadline() {
+        // Given
+        wheel.advanceTo(10_000);
+
+        // When
+        HierarchicalTimingWheel.Timeout<String> timeout = wheel.schedule("late", 9_000);
+
+        // Then
+        assertNull(timeout);
+    }
+
+    @Test
+    void testRejectsDeadlineBeyondHorizon() {
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule("far", wheel.horizonMs() + 1_000));
+    }
+}
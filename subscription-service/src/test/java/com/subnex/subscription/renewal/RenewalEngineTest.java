@@ -0,0 +1,444 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.client.PaymentServiceClient;
+import com.subnex.subscription.entitlement.EntitlementService;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.model.RenewalLease;
+import com.subnex.subscription.model.RenewalWatermark;
+import com.subnex.subscription.model.Subscription;
+import com.subnex.subscription.repository.RenewalWatermarkRepository;
+import com.subnex.subscription.repository.SubscriptionRepository;
+import com.subnex.subscription.service.PlanCatalog;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@DataMongoTest(properties = {
+        "renewal.page-size=3",
+        "renewal.partitions=4",
+        "renewal.parallelism=4",
+        "renewal.wheel.enabled=false",
+        "renewal.retry.max-attempts=1"
+})
+@Import({RenewalEngine.class, RenewalMetrics.class, RenewalEngineTest.Config.class})
+class RenewalEngineTest {
+
+    private static final int PARTITIONS = 4;
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        FailedRenewals failedRenewals() {
+            return new FailedRenewals();
+        }
+    }
+
+    static class FailedRenewals {
+        final Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        @EventListener
+        void on(RenewalFailedEvent event) {
+            ids.add(event.getSubscriptionId());
+        }
+    }
+
+    @Autowired
+    private RenewalEngine renewalEngine;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @Autowired
+    private RenewalWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private FailedRenewals failedRenewals;
+
+    @MockBean
+    private PaymentServiceClient paymentServiceClient;
+
+    @MockBean
+    private PlanCatalog planCatalog;
+
+    @MockBean
+    private RenewalLeaseManager leaseManager;
+
+    @MockBean
+    private EntitlementService entitlementService;
+
+    private final RenewalLease lease = RenewalLease.builder().id("renewal-range-0").slotFrom(0).slotTo(RenewalSlots.SLOT_COUNT).build();
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        when(planCatalog.find("monthly")).thenReturn(Optional.of(Plan.builder()
+                .id("monthly").price(9.99).currency("USD").billingCycle("MONTHLY").active(true).build()));
+        when(leaseManager.ownedLeases()).thenReturn(List.of(lease));
+        when(leaseManager.owns(anyString())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriptionRepository.deleteAll();
+        watermarkRepository.deleteAll();
+        failedRenewals.ids.clear();
+    }
+
+    @Test
+    void testRunDueRenewals_ChargesEveryDueSubscriptionOnceAcrossPages() {
+        // Given
+        List<Subscription> due = saveDue(8);
+        subscriptionRepository.save(subscription("sub-future", "ACTIVE", today.plusDays(1)));
+        subscriptionRepository.save(subscription("sub-cancelled", "CANCELLED", today.minusDays(3)));
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        verify(paymentServiceClient, times(8)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        for (Subscription subscription : due) {
+            verify(paymentServiceClient).initiateRenewalPayment(
+                    argThat(charged -> charged.getId().equals(subscription.getId())), any(Plan.class));
+            assertEquals(subscription.getNextBillingDate().plusMonths(1),
+                    subscriptionRepository.findById(subscription.getId()).orElseThrow().getNextBillingDate());
+        }
+        assertEquals(today.plusDays(1), subscriptionRepository.findById("sub-future").orElseThrow().getNextBillingDate());
+    }
+
+    @Test
+    void testRunDueRenewals_CheckpointsWatermarkAfterEveryPage() {
+        // Given
+        List<Subscription> due = saveDue(7);
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        RenewalWatermark watermark = watermarkRepository.findById("renewal-watermark:" + lease.getId()).orElseThrow();
+        Subscription last = due.get(due.size() - 1);
+        assertEquals(last.getId(), watermark.getSubscriptionId());
+        assertEquals(last.getNextBillingDate(), watermark.getNextBillingDate());
+        assertEquals(7, watermark.getProcessed());
+        assertEquals(0, watermark.getFailed());
+    }
+
+    @Test
+    void testRunDueRenewals_RunsEachPartitionSequentially() {
+        // Given
+        saveDue(12);
+        Map<Integer, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        when(paymentServiceClient.initiateRenewalPayment(any(Subscription.class), any(Plan.class))).thenAnswer(invocation -> {
+            Subscription subscription = invocation.getArgument(0);
+            AtomicInteger lane = inFlight.computeIfAbsent(Math.floorMod(subscription.getId().hashCode(), PARTITIONS),
+                    partition -> new AtomicInteger());
+            if (lane.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.sleep(5);
+            lane.decrementAndGet();
+            return null;
+        });
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        verify(paymentServiceClient, times(12)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        assertEquals(0, overlaps.get(), "subscriptions of one partition must be renewed one at a time");
+    }
+
+    @Test
+    void testRenewNow_LosesClaimOnceBillingDateAdvanced() {
+        // Given
+        Subscription subscription = saveDue(1).get(0);
+        assertTrue(renewalEngine.renewNow(subscription.getId()));
+
+        // When
+        boolean renewedAgain = renewalEngine.renewNow(subscription.getId());
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        assertFalse(renewedAgain);
+        verify(paymentServiceClient, times(1)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+    }
+
+    @Test
+    void testRunDueRenewals_ConcurrentRunsChargeEachSubscriptionOnce() throws Exception {
+        // Given
+        saveDue(10);
+        RenewalLease other = RenewalLease.builder().id("renewal-range-other").slotFrom(0).slotTo(RenewalSlots.SLOT_COUNT).build();
+        when(leaseManager.ownedLeases()).thenReturn(List.of(lease), List.of(other));
+        ExecutorService runners = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        for (int i = 0; i < 2; i++) {
+            runners.submit(() -> {
+                start.await();
+                renewalEngine.runDueRenewals(today);
+                return null;
+            });
+        }
+        start.countDown();
+        runners.shutdown();
+        assertTrue(runners.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Then
+        verify(paymentServiceClient, times(10)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+    }
+
+    @Test
+    void testRunDueRenewals_FailedPaymentRollsBillingDateBack() {
+        // Given
+        List<Subscription> due = saveDue(3);
+        Subscription failing = due.get(1);
+        when(paymentServiceClient.initiateRenewalPayment(argThat(s -> s != null && s.getId().equals(failing.getId())), any(Plan.class)))
+                .thenThrow(new IllegalStateException("payment-service unavailable"));
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        assertEquals(failing.getNextBillingDate(),
+                subscriptionRepository.findById(failing.getId()).orElseThrow().getNextBillingDate());
+        assertEquals(due.get(0).getNextBillingDate().plusMonths(1),
+                subscriptionRepository.findById(due.get(0).getId()).orElseThrow().getNextBillingDate());
+        assertEquals(Set.of(failing.getId()), failedRenewals.ids);
+    }
+
+    @Test
+    void testRunDueRenewals_PicksUpFailedRenewalOnNextRun() {
+        // Given
+        List<Subscription> due = saveDue(7);
+        Subscription failing = due.get(4);
+        when(paymentServiceClient.initiateRenewalPayment(argThat(s -> s != null && s.getId().equals(failing.getId())), any(Plan.class)))
+                .thenThrow(new IllegalStateException("payment-service unavailable"))
+                .thenReturn(null);
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then: the watermark stays before the failed subscription even though later ones were renewed
+        RenewalWatermark watermark = watermarkRepository.findById("renewal-watermark:" + lease.getId()).orElseThrow();
+        assertEquals(due.get(3).getId(), watermark.getSubscriptionId());
+        assertEquals(1, watermark.getFailed());
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        assertEquals(failing.getNextBillingDate().plusMonths(1),
+                subscriptionRepository.findById(failing.getId()).orElseThrow().getNextBillingDate());
+        verify(paymentServiceClient, times(2)).initiateRenewalPayment(
+                argThat(charged -> charged.getId().equals(failing.getId())), any(Plan.class));
+        verify(paymentServiceClient, times(8)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        assertEquals(failing.getId(),
+                watermarkRepository.findById("renewal-watermark:" + lease.getId()).orElseThrow().getSubscriptionId());
+    }
+
+    @Test
+    void testRunDueRenewals_ParksSubscriptionOutOfRetriesAndMovesWatermarkPast() {
+        // Given
+        List<Subscription> due = saveDue(5);
+        Subscription failing = due.get(2);
+        when(paymentServiceClient.initiateRenewalPayment(argThat(s -> s != null && s.getId().equals(failing.getId())), any(Plan.class)))
+                .thenThrow(new IllegalStateException("card declined"));
+        renewalEngine.runDueRenewals(today);
+
+        // When: the retry fails too
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        Subscription parked = subscriptionRepository.findById(failing.getId()).orElseThrow();
+        assertEquals("PAST_DUE", parked.getStatus());
+        assertEquals(2, parked.getRenewalAttempts());
+        assertEquals(failing.getNextBillingDate(), parked.getNextBillingDate());
+        verify(entitlementService).invalidate(failing.getUserId());
+        assertEquals(failing.getId(),
+                watermarkRepository.findById("renewal-watermark:" + lease.getId()).orElseThrow().getSubscriptionId());
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        verify(paymentServiceClient, times(2)).initiateRenewalPayment(
+                argThat(charged -> charged.getId().equals(failing.getId())), any(Plan.class));
+    }
+
+    @Test
+    void testRunDueRenewals_ResumesAfterLostLeaseWithoutChargingTwice() {
+        // Given
+        List<Subscription> due = saveDue(7);
+        // Owned for the first page, lost before the second one is committed
+        when(leaseManager.owns(lease.getId())).thenReturn(true, false);
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        verify(paymentServiceClient, times(3)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        assertEquals(due.get(2).getId(),
+                watermarkRepository.findById("renewal-watermark:" + lease.getId()).orElseThrow().getSubscriptionId());
+
+        // When
+        when(leaseManager.owns(lease.getId())).thenReturn(true);
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        verify(paymentServiceClient, times(7)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        for (Subscription subscription : due) {
+            verify(paymentServiceClient).initiateRenewalPayment(
+                    argThat(charged -> charged.getId().equals(subscription.getId())), any(Plan.class));
+        }
+    }
+
+    @Test
+    void testRunDueRenewals_EndsDueTrialsWhenWheelDisabled() {
+        // Given
+        subscriptionRepository.save(trial("trial-renewing", today.minusDays(1), true));
+        subscriptionRepository.save(trial("trial-lapsing", today, false));
+        subscriptionRepository.save(trial("trial-running", today.plusDays(3), true));
+
+        // When
+        renewalEngine.runDueRenewals(today);
+
+        // Then
+        Subscription renewing = subscriptionRepository.findById("trial-renewing").orElseThrow();
+        assertEquals("ACTIVE", renewing.getStatus());
+        assertEquals(today.minusDays(1).plusMonths(1), renewing.getNextBillingDate());
+        assertEquals("EXPIRED", subscriptionRepository.findById("trial-lapsing").orElseThrow().getStatus());
+        assertEquals("TRIAL", subscriptionRepository.findById("trial-running").orElseThrow().getStatus());
+        verify(paymentServiceClient, times(1)).initiateRenewalPayment(
+                argThat(charged -> charged.getId().equals("trial-renewing")), any(Plan.class));
+        verifyNoMoreInteractions(paymentServiceClient);
+    }
+
+    @Test
+    void testEndTrial_ActivatesAutoRenewingTrialAndChargesOnce() {
+        // Given
+        subscriptionRepository.save(trial("trial-renewing", today, true));
+
+        // When
+        renewalEngine.endTrial("trial-renewing");
+        renewalEngine.endTrial("trial-renewing");
+
+        // Then
+        assertEquals("ACTIVE", subscriptionRepository.findById("trial-renewing").orElseThrow().getStatus());
+        verify(paymentServiceClient, times(1)).initiateRenewalPayment(any(Subscription.class), any(Plan.class));
+        verify(entitlementService, times(1)).invalidate("user-trial-renewing");
+    }
+
+    @Test
+    void testEndTrial_FailedFirstChargeKeepsTrialUntilRetrySucceeds() {
+        // Given
+        subscriptionRepository.save(trial("trial-renewing", today, true));
+        when(paymentServiceClient.initiateRenewalPayment(any(Subscription.class), any(Plan.class)))
+                .thenThrow(new IllegalStateException("payment-service unavailable"))
+                .thenReturn(null);
+
+        // When
+        assertFalse(renewalEngine.endTrial("trial-renewing"));
+
+        // Then
+        Subscription unpaid = subscriptionRepository.findById("trial-renewing").orElseThrow();
+        assertEquals("TRIAL", unpaid.getStatus());
+        assertEquals(today, unpaid.getNextBillingDate());
+        assertEquals(1, unpaid.getRenewalAttempts());
+        verify(entitlementService, never()).invalidate(anyString());
+        assertEquals(Set.of("trial-renewing"), failedRenewals.ids);
+
+        // When
+        assertTrue(renewalEngine.renewNow("trial-renewing"));
+
+        // Then
+        Subscription paid = subscriptionRepository.findById("trial-renewing").orElseThrow();
+        assertEquals("ACTIVE", paid.getStatus());
+        assertEquals(today.plusMonths(1), paid.getNextBillingDate());
+        assertNull(paid.getRenewalAttempts());
+        verify(entitlementService).invalidate("user-trial-renewing");
+    }
+
+    @Test
+    void testEndTrial_ExpiresTrialWithoutAutoRenew() {
+        // Given
+        subscriptionRepository.save(trial("trial-lapsing", today, false));
+
+        // When
+        renewalEngine.endTrial("trial-lapsing");
+
+        // Then
+        assertEquals("EXPIRED", subscriptionRepository.findById("trial-lapsing").orElseThrow().getStatus());
+        verifyNoInteractions(paymentServiceClient);
+        verify(entitlementService, times(1)).invalidate("user-trial-lapsing");
+    }
+
+    private List<Subscription> saveDue(int count) {
+        List<Subscription> due = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            due.add(subscriptionRepository.save(
+                    subscription(String.format("sub-%02d", i), "ACTIVE", today.minusDays(count - i))));
+        }
+        return due;
+    }
+
+    private static Subscription subscription(String id, String status, LocalDate nextBillingDate) {
+        return Subscription.builder()
+                .id(id)
+                .userId("user-" + id)
+                .planId("monthly")
+                .status(status)
+                .startDate(nextBillingDate.minusMonths(1))
+                .nextBillingDate(nextBillingDate)
+                .autoRenew(true)
+                .renewalSlot(RenewalSlots.slotOf(id))
+                .build();
+    }
+
+    private static Subscription trial(String id, LocalDate trialEndDate, boolean autoRenew) {
+        return Subscription.builder()
+                .id(id)
+                .userId("user-" + id)
+                .planId("monthly")
+                .status("TRIAL")
+                .startDate(trialEndDate.minusDays(14))
+                .trialEndDate(trialEndDate)
+                .nextBillingDate(trialEndDate)
+                .autoRenew(autoRenew)
+                .renewalSlot(RenewalSlots.slotOf(id))
+                .build();
+    }
+}
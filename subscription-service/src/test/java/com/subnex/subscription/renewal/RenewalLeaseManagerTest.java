@@ -0,0 +1,161 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.RenewalLease;
+import com.subnex.subscription.model.RenewalMember;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+class RenewalLeaseManagerTest {
+
+    private static final int LEASE_COUNT = 16;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private RenewalLeaseManager first;
+    private RenewalLeaseManager second;
+
+    @BeforeEach
+    void setUp() {
+        first = manager();
+        second = manager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(RenewalLease.class);
+        mongoTemplate.dropCollection(RenewalMember.class);
+    }
+
+    @Test
+    void testHeartbeat_SplitsLeasesBetweenReplicasWithoutOverlap() {
+        // When
+        first.heartbeat();
+        assertDisjoint();
+        second.heartbeat();
+        assertDisjoint();
+        first.heartbeat();
+        assertDisjoint();
+        second.heartbeat();
+
+        // Then
+        assertDisjoint();
+        assertEquals(LEASE_COUNT / 2, first.ownedLeases().size());
+        assertEquals(LEASE_COUNT / 2, second.ownedLeases().size());
+        for (int slot = 0; slot < RenewalSlots.SLOT_COUNT; slot++) {
+            assertTrue(first.ownsSlot(slot) ^ second.ownsSlot(slot), "slot " + slot + " must have exactly one owner");
+        }
+    }
+
+    @Test
+    void testHeartbeat_ConcurrentReplicasNeverHoldTheSameLease() throws Exception {
+        // Given
+        ExecutorService replicas = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // When
+        for (RenewalLeaseManager manager : List.of(first, second)) {
+            replicas.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20; i++) {
+                    manager.heartbeat();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        replicas.shutdown();
+        assertTrue(replicas.awaitTermination(30, TimeUnit.SECONDS));
+
+        // Then
+        assertDisjoint();
+        for (RenewalLeaseManager manager : List.of(first, second)) {
+            for (RenewalLease lease : manager.ownedLeases()) {
+                RenewalLease stored = mongoTemplate.findById(lease.getId(), RenewalLease.class);
+                assertEquals(lease.getOwner(), stored.getOwner());
+            }
+        }
+    }
+
+    @Test
+    void testHeartbeat_TakesOverExpiredLeasesOfStalledReplica() {
+        // Given
+        first.heartbeat();
+        assertEquals(LEASE_COUNT, first.ownedLeases().size());
+        // The first replica stalls: neither its membership nor its leases are extended any more
+        Instant past = Instant.now().minusSeconds(60);
+        mongoTemplate.updateMulti(new Query(), new Update().set("expiresAt", past), RenewalLease.class);
+        mongoTemplate.updateMulti(new Query(), new Update().set("expiresAt", past), RenewalMember.class);
+
+        // When
+        second.heartbeat();
+
+        // Then
+        assertEquals(LEASE_COUNT, second.ownedLeases().size());
+        assertTrue(second.ownsSlot(0));
+        assertTrue(second.ownsSlot(RenewalSlots.SLOT_COUNT - 1));
+
+        // When
+        first.heartbeat();
+
+        // Then
+        assertTrue(first.ownedLeases().isEmpty());
+        assertDisjoint();
+    }
+
+    @Test
+    void testShutdown_ReleasesLeasesForTheRemainingReplica() {
+        // Given
+        first.heartbeat();
+        second.heartbeat();
+
+        // When
+        first.shutdown();
+        second.heartbeat();
+
+        // Then
+        assertEquals(LEASE_COUNT, second.ownedLeases().size());
+        assertEquals(0, mongoTemplate.count(new Query(Criteria.where("owner").ne(ownerOf(second))), RenewalLease.class));
+    }
+
+    private RenewalLeaseManager manager() {
+        RenewalLeaseManager manager = new RenewalLeaseManager(mongoTemplate, event -> { }, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(manager, "leaseCount", LEASE_COUNT);
+        ReflectionTestUtils.setField(manager, "ttlSeconds", 15L);
+        manager.init();
+        return manager;
+    }
+
+    private static String ownerOf(RenewalLeaseManager manager) {
+        return (String) ReflectionTestUtils.getField(manager, "instanceId");
+    }
+
+    private void assertDisjoint() {
+        Set<String> firstIds = first.ownedLeases().stream().map(RenewalLease::getId).collect(Collectors.toSet());
+        Set<String> overlap = new HashSet<>(firstIds);
+        overlap.retainAll(second.ownedLeases().stream().map(RenewalLease::getId).collect(Collectors.toSet()));
+        assertTrue(overlap.isEmpty(), "leases held by both replicas: " + overlap);
+    }
+}
@@ -0,0 +1,85 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.Subscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import(RenewalSlotBackfill.class)
+class RenewalSlotBackfillTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RenewalSlotBackfill backfill;
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(Subscription.class);
+    }
+
+    @Test
+    void testBackfill_AssignsSlotOfIdToEveryLegacySubscription() {
+        // Given: more legacy documents than one backfill batch
+        List<Subscription> legacy = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            legacy.add(Subscription.builder()
+                    .userId("user" + i)
+                    .planId("plan123")
+                    .status("ACTIVE")
+                    .nextBillingDate(LocalDate.now().plusDays(i % 30))
+                    .autoRenew(true)
+                    .build());
+        }
+        mongoTemplate.insertAll(legacy);
+
+        // When
+        backfill.backfill();
+
+        // Then
+        assertEquals(0, mongoTemplate.count(new Query(Criteria.where("renewalSlot").exists(false)), Subscription.class));
+        for (Subscription subscription : mongoTemplate.findAll(Subscription.class)) {
+            assertEquals(RenewalSlots.slotOf(subscription.getId()), subscription.getRenewalSlot());
+        }
+    }
+
+    @Test
+    void testBackfill_LeavesAssignedSlotsUntouched() {
+        // Given
+        Subscription assigned = mongoTemplate.insert(Subscription.builder()
+                .id("sub-assigned").userId("user1").planId("plan123").status("ACTIVE")
+                .renewalSlot(RenewalSlots.slotOf("sub-assigned")).build());
+
+        // When
+        backfill.backfill();
+        backfill.backfill();
+
+        // Then
+        Subscription stored = mongoTemplate.findById("sub-assigned", Subscription.class);
+        assertEquals(assigned.getRenewalSlot(), stored.getRenewalSlot());
+        assertEquals(assigned.getVersion(), stored.getVersion());
+    }
+
+    @Test
+    void testSlotOf_IsStableAndStaysOnTheRing() {
+        for (int i = 0; i < 10_000; i++) {
+            String id = "sub-" + i;
+            int slot = RenewalSlots.slotOf(id);
+            assertTrue(slot >= 0 && slot < RenewalSlots.SLOT_COUNT);
+            assertEquals(slot, RenewalSlots.slotOf(id));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.subnex.subscription.renewal;
+
+import com.subnex.subscription.model.Subscription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RenewalTimerTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private RenewalEngine renewalEngine;
+
+    @Mock
+    private RenewalLeaseManager leaseManager;
+
+    private RenewalTimer renewalTimer;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(leaseManager.ownsSlot(anyInt())).thenReturn(true);
+        lenient().doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(renewalEngine).dispatch(any(Runnable.class));
+
+        renewalTimer = new RenewalTimer(mongoTemplate, renewalEngine, leaseManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(renewalTimer, "enabled", true);
+        ReflectionTestUtils.setField(renewalTimer, "tickMs", 1000L);
+        ReflectionTestUtils.setField(renewalTimer, "horizonHours", 72L);
+        ReflectionTestUtils.setField(renewalTimer, "maxRetryAttempts", 3);
+        ReflectionTestUtils.setField(renewalTimer, "retryBackoffMinutes", 15L);
+        renewalTimer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        renewalTimer.shutdown();
+    }
+
+    @Test
+    void testSchedule_PutsUpcomingRenewalOnWheel() {
+        // When
+        renewalTimer.schedule(active("sub1", LocalDate.now().plusDays(1)));
+
+        // Then
+        assertEquals(RenewalTimer.Kind.RENEWAL, scheduled().get("sub1").getPayload().kind());
+        assertEquals(1, wheel().size());
+    }
+
+    @Test
+    void testSchedule_PutsTrialEndOnWheel() {
+        // When
+        renewalTimer.schedule(trial("sub1", LocalDate.now().plusDays(1), true));
+
+        // Then
+        assertEquals(RenewalTimer.Kind.TRIAL_END, scheduled().get("sub1").getPayload().kind());
+    }
+
+    @Test
+    void testSchedule_SkipsSubscriptionsOutsideOwnedSlotsAndHorizon() {
+        // Given
+        when(leaseManager.ownsSlot(RenewalSlots.slotOf("foreign"))).thenReturn(false);
+
+        // When
+        renewalTimer.schedule(active("foreign", LocalDate.now().plusDays(1)));
+        renewalTimer.schedule(active("far", LocalDate.now().plusDays(30)));
+
+        // Then
+        assertTrue(scheduled().isEmpty());
+        assertEquals(0, wheel().size());
+    }
+
+    @Test
+    void testUnschedule_RemovesEntryFromWheel() {
+        // Given
+        renewalTimer.schedule(active("sub1", LocalDate.now().plusDays(1)));
+        renewalTimer.schedule(active("sub2", LocalDate.now().plusDays(1)));
+
+        // When
+        renewalTimer.unschedule("sub1");
+
+        // Then
+        assertFalse(scheduled().containsKey("sub1"));
+        assertTrue(scheduled().containsKey("sub2"));
+        assertEquals(1, wheel().size());
+    }
+
+    @Test
+    void testSchedule_EndsOverdueTrialImmediately() {
+        // When
+        renewalTimer.schedule(trial("sub1", LocalDate.now().minusDays(1), true));
+
+        // Then
+        verify(renewalEngine).endTrial("sub1");
+        verify(renewalEngine, never()).renewNow(any());
+        assertTrue(scheduled().isEmpty());
+    }
+
+    @Test
+    void testSchedule_RenewsOverdueSubscriptionImmediately() {
+        // When
+        renewalTimer.schedule(active("sub1", LocalDate.now().minusDays(1)));
+
+        // Then
+        verify(renewalEngine).renewNow("sub1");
+        verify(renewalEngine, never()).endTrial(any());
+    }
+
+    @Test
+    void testSchedule_KeepsFailedRenewalOnRetrySchedule() {
+        // Given: today's charge already failed once
+        Subscription subscription = active("sub1", LocalDate.now());
+        subscription.setRenewalAttempts(1);
+
+        // When
+        renewalTimer.schedule(subscription);
+
+        // Then
+        assertEquals(RenewalTimer.Kind.RETRY, scheduled().get("sub1").getPayload().kind());
+        verify(renewalEngine, never()).renewNow(any());
+    }
+
+    @Test
+    void testSchedule_SkipsSubscriptionWhoseRetriesRanOut() {
+        // Given
+        Subscription subscription = active("sub1", LocalDate.now());
+        subscription.setRenewalAttempts(4);
+
+        // When
+        renewalTimer.schedule(subscription);
+
+        // Then
+        assertTrue(scheduled().isEmpty());
+        verify(renewalEngine, never()).renewNow(any());
+    }
+
+    @Test
+    void testSchedule_RetriesTrialWhoseFirstChargeFailed() {
+        // Given
+        Subscription subscription = trial("sub1", LocalDate.now(), true);
+        subscription.setRenewalAttempts(1);
+
+        // When
+        renewalTimer.schedule(subscription);
+
+        // Then
+        assertEquals(RenewalTimer.Kind.RETRY, scheduled().get("sub1").getPayload().kind());
+        verify(renewalEngine, never()).endTrial(any());
+    }
+
+    @Test
+    void testOnRenewalFailed_RetriesUntilMaxAttempts() {
+        // When
+        renewalTimer.onRenewalFailed(new RenewalFailedEvent("sub1", 3));
+        renewalTimer.onRenewalFailed(new RenewalFailedEvent("sub2", 4));
+
+        // Then
+        assertEquals(RenewalTimer.Kind.RETRY, scheduled().get("sub1").getPayload().kind());
+        assertFalse(scheduled().containsKey("sub2"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, HierarchicalTimingWheel.Timeout<RenewalTimer.Task>> scheduled() {
+        return (Map<String, HierarchicalTimingWheel.Timeout<RenewalTimer.Task>>) ReflectionTestUtils.getField(renewalTimer, "scheduled");
+    }
+
+    private HierarchicalTimingWheel<?> wheel() {
+        return (HierarchicalTimingWheel<?>) ReflectionTestUtils.getField(renewalTimer, "wheel");
+    }
+
+    private static Subscription active(String id, LocalDate nextBillingDate) {
+        return Subscription.builder()
+                .id(id)
+                .status("ACTIVE")
+                .nextBillingDate(nextBillingDate)
+                .autoRenew(true)
+                .renewalSlot(RenewalSlots.slotOf(id))
+                .build();
+    }
+
+    private static Subscription trial(String id, LocalDate trialEndDate, boolean autoRenew) {
+        return Subscription.builder()
+                .id(id)
+                .status("TRIAL")
+                .trialEndDate(trialEndDate)
+                .nextBillingDate(trialEndDate)
+                .autoRenew(autoRenew)
+                .renewalSlot(RenewalSlots.slotOf(id))
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.subnex.subscription.repository;
+
+import com.subnex.subscription.config.MongoIndexVerifier;
+import com.subnex.subscription.model.Subscription;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataMongoTest
+@Import(MongoIndexVerifier.class)
+class SubscriptionIndexTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private SubscriptionRepository subscriptionRepository;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < 50; i++) {
+            subscriptionRepository.save(Subscription.builder()
+                    .userId("user" + i)
+                    .planId("plan123")
+                    .status(i % 2 == 0 ? "ACTIVE" : "CANCELLED")
+                    .startDate(LocalDate.now())
+                    .nextBillingDate(LocalDate.now().plusDays(i))
+                    .autoRenew(true)
+                    .build());
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        subscriptionRepository.deleteAll();
+    }
+
+    @Test
+    void testRenewalSweepUsesCompoundIndex() {
+        // Given
+        Document filter = new Document("status", "ACTIVE")
+                .append("autoRenew", true)
+                .append("nextBillingDate", new Document("$lte", LocalDate.now().plusDays(10)));
+        Document sort = new Document("nextBillingDate", 1).append("_id", 1);
+
+        // When
+        Document explain = mongoTemplate.getCollection("subscriptions").find(filter).sort(sort).explain();
+
+        // Then
+        List<String> stages = winningPlanStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected index scan but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"));
+        assertFalse(stages.contains("SORT"), "sort should be provided by the index");
+    }
+
+    @Test
+    void testFindByUserIdUsesIndex() {
+        // When
+        Document explain = mongoTemplate.getCollection("subscriptions")
+                .find(new Document("userId", "user7")).explain();
+
+        // Then
+        List<String> stages = winningPlanStages(explain);
+        assertTrue(stages.contains("IXSCAN"), "expected index scan but got " + stages);
+        assertFalse(stages.contains("COLLSCAN"));
+    }
+
+    private static List<String> winningPlanStages(Document explain) {
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan"), stages);
+        return stages;
+    }
+
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (node instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.subnex.subscription.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.subnex.subscription.model.Plan;
+import com.subnex.subscription.repository.PlanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlanCatalogTest {
+
+    @Mock
+    private PlanRepository planRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PlanCatalog planCatalog;
+
+    private Plan basicPlan;
+
+    @BeforeEach
+    void setUp() {
+        basicPlan = Plan.builder()
+                .id("plan1")
+                .name("BASIC")
+                .price(9.99)
+                .currency("USD")
+                .billingCycle("MONTHLY")
+                .active(true)
+                .build();
+
+        when(planRepository.findAll()).thenReturn(List.of(basicPlan));
+        planCatalog = new PlanCatalog(planRepository, objectMapper);
+        planCatalog.init();
+    }
+
+    @Test
+    void testRepresentation_HoldsSerializedPlansAndGzipVariant() throws Exception {
+        // When
+        PlanCatalog.Representation representation = planCatalog.representation();
+
+        // Then
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of(basicPlan)), representation.json());
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(representation.gzip()))) {
+            assertArrayEquals(representation.json(), gzip.readAllBytes());
+        }
+        assertTrue(representation.etag().startsWith("\""));
+        assertNotEquals(representation.etag(), representation.gzipEtag());
+    }
+
+    @Test
+    void testPut_ChangesEtagWhenCatalogChanges() {
+        // Given
+        String before = planCatalog.representation().etag();
+        Plan proPlan = Plan.builder().id("plan2").name("PRO").price(19.99).active(true).build();
+
+        // When
+        planCatalog.put(proPlan);
+
+        // Then
+        assertNotEquals(before, planCatalog.representation().etag());
+        assertEquals(2, planCatalog.getAll().size());
+    }
+
+    @Test
+    void testReload_KeepsEtagForUnchangedContent() {
+        // Given
+        String before = planCatalog.representation().etag();
+
+        // When
+        planCatalog.reload();
+
+        // Then
+        assertEquals(before, planCatalog.representation().etag());
+        assertEquals(2, planCatalog.version());
+    }
+}
@@ -1,6 +1,7 @@
 package com.subnex.subscription.service;
 
 import com.subnex.subscription.dto.CreatePlanRequest;
+import com.subnex.subscription.kafka.PlanEventProducer;
 import com.subnex.subscription.model.Plan;
 import com.subnex.subscription.repository.PlanRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -24,6 +25,12 @@ class PlanServiceTest {
     @Mock
     private PlanRepository planRepository;
 
+    @Mock
+    private PlanCatalog planCatalog;
+
+    @Mock
+    private PlanEventProducer planEventProducer;
+
     @InjectMocks
     private PlanService planService;
 
@@ -62,7 +69,7 @@ class PlanServiceTest {
                 .active(true)
                 .build();
 
-        when(planRepository.findAll()).thenReturn(Arrays.asList(testPlan, plan2));
+        when(planCatalog.getAll()).thenReturn(Arrays.asList(testPlan, plan2));
 
         // When
         List<Plan> result = planService.getAllPlans();
@@ -70,13 +77,13 @@ class PlanServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(planRepository, times(1)).findAll();
+        verify(planRepository, never()).findAll();
     }
 
     @Test
     void testGetAllPlans_EmptyList() {
         // Given
-        when(planRepository.findAll()).thenReturn(Arrays.asList());
+        when(planCatalog.getAll()).thenReturn(Arrays.asList());
 
         // When
         List<Plan> result = planService.getAllPlans();
@@ -84,13 +91,13 @@ class PlanServiceTest {
         // Then
         assertNotNull(result);
         assertTrue(result.isEmpty());
-        verify(planRepository, times(1)).findAll();
+        verify(planRepository, never()).findAll();
     }
 
     @Test
     void testGetPlanById_Success() {
         // Given
-        when(planRepository.findById("plan123")).thenReturn(Optional.of(testPlan));
+        when(planCatalog.find("plan123")).thenReturn(Optional.of(testPlan));
 
         // When
         Plan result = planService.getPlanById("plan123");
@@ -100,13 +107,14 @@ class PlanServiceTest {
         assertEquals("plan123", result.getId());
         assertEquals("Premium Plan", result.getName());
         assertEquals(99.99, result.getPrice());
-        verify(planRepository, times(1)).findById("plan123");
+        verify(planCatalog, times(1)).find("plan123");
+        verify(planRepository, never()).findById(anyString());
     }
 
     @Test
     void testGetPlanById_NotFound() {
         // Given
-        when(planRepository.findById("nonexistent")).thenReturn(Optional.empty());
+        when(planCatalog.find("nonexistent")).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -114,7 +122,7 @@ class PlanServiceTest {
         });
 
         assertEquals("Plan not found", exception.getMessage());
-        verify(planRepository, times(1)).findById("nonexistent");
+        verify(planCatalog, times(1)).find("nonexistent");
     }
 
     @Test
@@ -137,6 +145,8 @@ class PlanServiceTest {
         assertEquals("MONTHLY", result.getBillingCycle());
         assertTrue(result.isActive());
         verify(planRepository, times(1)).save(any(Plan.class));
+        verify(planCatalog, times(1)).put(result);
+        verify(planEventProducer, times(1)).publishPlanChanged("plan125", "CREATED");
     }
 
     @Test
@@ -242,7 +252,7 @@ class PlanServiceTest {
                 .active(false)
                 .build();
 
-        when(planRepository.findAll()).thenReturn(Arrays.asList(testPlan, inactivePlan));
+        when(planCatalog.getAll()).thenReturn(Arrays.asList(testPlan, inactivePlan));
 
         // When
         List<Plan> allPlans = planService.getAllPlans();
@@ -1,9 +1,11 @@
 package com.subnex.subscription.service;
 
 import com.subnex.subscription.dto.SubscribeRequest;
+import com.subnex.subscription.entitlement.EntitlementService;
 import com.subnex.subscription.model.Plan;
 import com.subnex.subscription.model.Subscription;
-import com.subnex.subscription.repository.PlanRepository;
+import com.subnex.subscription.renewal.RenewalSlots;
+import com.subnex.subscription.renewal.RenewalTimer;
 import com.subnex.subscription.repository.SubscriptionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.LocalDate;
 import java.util.Arrays;
@@ -20,6 +26,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,7 +36,16 @@ class SubscriptionServiceTest {
     private SubscriptionRepository subscriptionRepository;
 
     @Mock
-    private PlanRepository planRepository;
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private PlanCatalog planCatalog;
+
+    @Mock
+    private RenewalTimer renewalTimer;
+
+    @Mock
+    private EntitlementService entitlementService;
 
     @InjectMocks
     private SubscriptionService subscriptionService;
@@ -100,7 +116,7 @@ class SubscriptionServiceTest {
     @Test
     void testSubscribe_Success() {
         // Given
-        when(planRepository.findById("plan123")).thenReturn(Optional.of(testPlan));
+        when(planCatalog.find("plan123")).thenReturn(Optional.of(testPlan));
         when(subscriptionRepository.save(any(Subscription.class))).thenReturn(testSubscription);
 
         // When
@@ -112,14 +128,15 @@ class SubscriptionServiceTest {
         assertEquals("plan123", result.getPlanId());
         assertEquals("ACTIVE", result.getStatus());
         assertTrue(result.isAutoRenew());
-        verify(planRepository, times(1)).findById("plan123");
+        verify(planCatalog, times(1)).find("plan123");
         verify(subscriptionRepository, times(1)).save(any(Subscription.class));
+        verify(renewalTimer, times(1)).schedule(testSubscription);
     }
 
     @Test
     void testSubscribe_PlanNotFound() {
         // Given
-        when(planRepository.findById("nonexistent")).thenReturn(Optional.empty());
+        when(planCatalog.find("nonexistent")).thenReturn(Optional.empty());
 
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -128,7 +145,7 @@ class SubscriptionServiceTest {
         });
 
         assertEquals("Plan not found", exception.getMessage());
-        verify(planRepository, times(1)).findById("nonexistent");
+        verify(planCatalog, times(1)).find("nonexistent");
         verify(subscriptionRepository, never()).save(any(Subscription.class));
     }
 
@@ -136,7 +153,7 @@ class SubscriptionServiceTest {
     void testSubscribe_WithAutoRenewFalse() {
         // Given
         subscribeRequest.setAutoRenew(false);
-        when(planRepository.findById("plan123")).thenReturn(Optional.of(testPlan));
+        when(planCatalog.find("plan123")).thenReturn(Optional.of(testPlan));
         when(subscriptionRepository.save(any(Subscription.class))).thenAnswer(invocation -> {
             Subscription saved = invocation.getArgument(0);
             saved.setId("sub124");
@@ -153,19 +170,36 @@ class SubscriptionServiceTest {
     }
 
     @Test
-    void testCancelSubscription_Success() {
+    void testSubscribe_AssignsRenewalSlotOfPreassignedId() {
         // Given
-        when(subscriptionRepository.findById("sub123")).thenReturn(Optional.of(testSubscription));
+        when(planCatalog.find("plan123")).thenReturn(Optional.of(testPlan));
         when(subscriptionRepository.save(any(Subscription.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
+        // When
+        Subscription result = subscriptionService.subscribe(subscribeRequest);
+
+        // Then
+        assertNotNull(result.getId());
+        assertEquals(RenewalSlots.slotOf(result.getId()), result.getRenewalSlot());
+        verify(subscriptionRepository).save(argThat(sub -> sub.getId() != null && sub.getRenewalSlot() != null));
+    }
+
+    @Test
+    void testCancelSubscription_Success() {
+        // Given
+        testSubscription.setStatus("CANCELLED");
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Subscription.class)))
+                .thenReturn(testSubscription);
+
         // When
         Subscription result = subscriptionService.cancelSubscription("sub123");
 
         // Then
         assertNotNull(result);
         assertEquals("CANCELLED", result.getStatus());
-        verify(subscriptionRepository, times(1)).findById("sub123");
-        verify(subscriptionRepository, times(1)).save(any(Subscription.class));
+        verify(renewalTimer, times(1)).unschedule("sub123");
+        verify(subscriptionRepository, never()).findById(anyString());
+        verify(subscriptionRepository, never()).save(any(Subscription.class));
     }
 
     @Test
@@ -183,6 +217,34 @@ class SubscriptionServiceTest {
         verify(subscriptionRepository, never()).save(any(Subscription.class));
     }
 
+    @Test
+    void testCancelSubscription_AlreadyCancelled() {
+        // Given
+        testSubscription.setStatus("CANCELLED");
+        when(subscriptionRepository.findById("sub123")).thenReturn(Optional.of(testSubscription));
+
+        // When
+        Subscription result = subscriptionService.cancelSubscription("sub123");
+
+        // Then
+        assertEquals("CANCELLED", result.getStatus());
+        verify(renewalTimer, never()).unschedule(anyString());
+    }
+
+    @Test
+    void testCancelSubscription_ExpiredRejected() {
+        // Given
+        testSubscription.setStatus("EXPIRED");
+        when(subscriptionRepository.findById("sub123")).thenReturn(Optional.of(testSubscription));
+
+        // When & Then
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            subscriptionService.cancelSubscription("sub123");
+        });
+
+        assertEquals("Subscription cannot be cancelled from status EXPIRED", exception.getMessage());
+    }
+
     @Test
     void testGetSubscriptionsByUserId_Success() {
         // Given
@@ -229,7 +291,7 @@ class SubscriptionServiceTest {
     @Test
     void testSubscribe_BillingDateCalculation() {
         // Given
-        when(planRepository.findById("plan123")).thenReturn(Optional.of(testPlan));
+        when(planCatalog.find("plan123")).thenReturn(Optional.of(testPlan));
         when(subscriptionRepository.save(any(Subscription.class))).thenAnswer(invocation -> {
             Subscription saved = invocation.getArgument(0);
             saved.setId("sub125");
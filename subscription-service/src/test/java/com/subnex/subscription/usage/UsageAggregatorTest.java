@@ -0,0 +1,191 @@
+package com.subnex.subscription.usage;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.subnex.subscription.model.UsageBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.bson.BsonDocument;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UsageAggregatorTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private BulkOperations bulkOperations;
+
+    private UsageAggregator usageAggregator;
+
+    @BeforeEach
+    void setUp() {
+        usageAggregator = new UsageAggregator(mongoTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(usageAggregator, "bucketMinutes", 60L);
+        ReflectionTestUtils.setField(usageAggregator, "flushBatchSize", 1000);
+        usageAggregator.init();
+        lenient().when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UsageBucket.class)).thenReturn(bulkOperations);
+    }
+
+    @Test
+    void testFlush_WritesOneIncrementPerBucket() {
+        // Given
+        Instant hour = Instant.parse("2026-01-01T10:00:00Z");
+        IntStream.range(0, 1000).parallel().forEach(i ->
+                usageAggregator.record("sub1", "api_calls", 1, hour.plusSeconds(i % 3600)));
+        usageAggregator.record("sub1", "api_calls", 5, hour.plusSeconds(3600));
+
+        // When
+        usageAggregator.flush();
+
+        // Then
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(queries.capture(), updates.capture());
+        verify(bulkOperations).execute();
+
+        Map<Object, Object> increments = IntStream.range(0, 2).boxed().collect(Collectors.toMap(
+                i -> queries.getAllValues().get(i).getQueryObject().get("_id"),
+                i -> ((org.bson.Document) updates.getAllValues().get(i).getUpdateObject().get("$inc")).get("quantity")));
+        assertEquals(1000L, increments.get("sub1:api_calls:" + hour.toEpochMilli()));
+        assertEquals(5L, increments.get("sub1:api_calls:" + hour.plusSeconds(3600).toEpochMilli()));
+    }
+
+    @Test
+    void testFlush_DoesNotRewriteAlreadyFlushedUsage() {
+        // Given
+        usageAggregator.record("sub1", "api_calls", 3, Instant.now());
+        usageAggregator.flush();
+
+        // When
+        usageAggregator.flush();
+
+        // Then
+        verify(bulkOperations, times(1)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void testFlush_RetriesUsageWhenWriteFails() {
+        // Given
+        usageAggregator.record("sub1", "api_calls", 7, Instant.now());
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("connection reset")).thenReturn(null);
+        usageAggregator.flush();
+
+        // When
+        usageAggregator.flush();
+
+        // Then: re-sent unchanged under the flush id of the failed attempt
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(queries.capture(), updates.capture());
+        assertEquals(7L, ((org.bson.Document) updates.getValue().getUpdateObject().get("$inc")).get("quantity"));
+        assertEquals(flushId(queries.getAllValues().get(0)), flushId(queries.getAllValues().get(1)));
+        verify(mongoTemplate, times(2)).bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(UsageBucket.class));
+    }
+
+    @Test
+    void testFlush_KeepsUnconfirmedBatchApartFromNewUsage() {
+        // Given
+        usageAggregator.record("sub1", "api_calls", 7, Instant.now());
+        when(bulkOperations.execute()).thenThrow(new RuntimeException("socket timeout")).thenReturn(null);
+        usageAggregator.flush();
+        usageAggregator.record("sub1", "api_calls", 2, Instant.now());
+
+        // When
+        usageAggregator.flush();
+
+        // Then
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(3)).upsert(queries.capture(), updates.capture());
+        assertEquals(7L, ((org.bson.Document) updates.getAllValues().get(1).getUpdateObject().get("$inc")).get("quantity"));
+        assertEquals(2L, ((org.bson.Document) updates.getAllValues().get(2).getUpdateObject().get("$inc")).get("quantity"));
+        assertEquals(flushId(queries.getAllValues().get(0)), flushId(queries.getAllValues().get(1)));
+        assertNotEquals(flushId(queries.getAllValues().get(1)), flushId(queries.getAllValues().get(2)));
+    }
+
+    @Test
+    void testFlush_TreatsDuplicateKeyAsAlreadyApplied() {
+        // Given
+        usageAggregator.record("sub1", "api_calls", 7, Instant.now());
+        when(bulkOperations.execute()).thenThrow(new BulkOperationException("E11000", new MongoBulkWriteException(
+                BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0)),
+                null, new ServerAddress(), Set.of())));
+
+        // When
+        usageAggregator.flush();
+        usageAggregator.flush();
+
+        // Then
+        verify(bulkOperations, times(1)).upsert(any(Query.class), any(Update.class));
+    }
+
+    @Test
+    void testFlush_KeepsUsageAddedToCounterWhileItWasDropped() {
+        // Given: an idle bucket, and a writer that looked its counter up just before the flush dropped it
+        StaleReads<Object, Object> counters = new StaleReads<>();
+        ReflectionTestUtils.setField(usageAggregator, "counters", counters);
+        Instant closed = Instant.now().minus(3, ChronoUnit.HOURS);
+        usageAggregator.record("sub1", "api_calls", 3, closed);
+        usageAggregator.flush();
+        counters.stale = counters.values().iterator().next();
+        usageAggregator.flush();
+        assertTrue(counters.isEmpty());
+
+        // When
+        usageAggregator.record("sub1", "api_calls", 4, closed);
+        usageAggregator.flush();
+
+        // Then
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).upsert(any(Query.class), updates.capture());
+        assertEquals(4L, ((org.bson.Document) updates.getValue().getUpdateObject().get("$inc")).get("quantity"));
+    }
+
+    private static Object flushId(Query query) {
+        return ((org.bson.Document) query.getQueryObject().get("appliedFlushes")).get("$ne");
+    }
+
+    // Hands out a value once more after it was removed, like a writer that read it just before
+    private static class StaleReads<K, V> extends ConcurrentHashMap<K, V> {
+        private V stale;
+
+        @Override
+        public V get(Object key) {
+            V value = stale;
+            if (value != null) {
+                stale = null;
+                return value;
+            }
+            return super.get(key);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.subnex.subscription.usage;
+
+import com.subnex.subscription.model.UsageBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@DataMongoTest
+class UsageBucketFlushTest {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final AtomicBoolean loseNextAck = new AtomicBoolean();
+
+    private UsageAggregator usageAggregator;
+
+    @BeforeEach
+    void setUp() {
+        // Applies the bulk write, then fails as if the acknowledgement was lost on the way back
+        MongoTemplate template = spy(mongoTemplate);
+        doAnswer(invocation -> {
+            BulkOperations ops = spy((BulkOperations) invocation.callRealMethod());
+            doAnswer(execute -> {
+                Object result = execute.callRealMethod();
+                if (loseNextAck.getAndSet(false)) {
+                    throw new DataAccessResourceFailureException("socket read timed out");
+                }
+                return result;
+            }).when(ops).execute();
+            return ops;
+        }).when(template).bulkOps(BulkOperations.BulkMode.UNORDERED, UsageBucket.class);
+
+        usageAggregator = new UsageAggregator(template, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(usageAggregator, "bucketMinutes", 60L);
+        ReflectionTestUtils.setField(usageAggregator, "flushBatchSize", 1000);
+        usageAggregator.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.dropCollection(UsageBucket.class);
+    }
+
+    @Test
+    void testFlush_ResendAfterLostAcknowledgementCountsOnce() {
+        // Given
+        Instant now = Instant.now();
+        usageAggregator.record("sub1", "api_calls", 7, now);
+        loseNextAck.set(true);
+        usageAggregator.flush();
+
+        // When
+        usageAggregator.flush();
+
+        // Then
+        assertEquals(7L, onlyBucket().getQuantity());
+
+        // When
+        usageAggregator.record("sub1", "api_calls", 3, now);
+        usageAggregator.flush();
+
+        // Then
+        UsageBucket bucket = onlyBucket();
+        assertEquals(10L, bucket.getQuantity());
+        assertEquals(2, bucket.getAppliedFlushes().size());
+    }
+
+    private UsageBucket onlyBucket() {
+        var buckets = mongoTemplate.findAll(UsageBucket.class);
+        assertEquals(1, buckets.size());
+        return buckets.get(0);
+    }
+}